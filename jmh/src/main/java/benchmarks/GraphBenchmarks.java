@@ -0,0 +1,299 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of the graph operations, in operations per second. Every benchmark starts each iteration from a
+ * graph of numNodes nodes with numNodes * averageDegree / 2 edges (built by the bulk constructor), whose endpoints
+ * are drawn uniformly or from a power law (so a few nodes have most of the edges). The operations draw their ids
+ * from pre-generated streams with the same skew, so the measurement does not include the random generator.
+ *
+ * Build and run (main adds the GC profiler, which reports the allocation rate per operation):
+ *     mvn -B package
+ *     java -jar jmh/target/benchmarks.jar [JMH options, e.g. GraphBenchmarks.addEdge -p skew=powerlaw]
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class GraphBenchmarks {
+    /**
+     * The length of the pre-generated streams of ids and operations (a power of 2).
+     */
+    public static final int STREAM_LENGTH = 1 << 20;
+
+
+    /**
+     * The graph and the streams of ids of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class GraphState {
+        /**
+         * The number of nodes in the graph.
+         */
+        @Param({"100000", "1000000"})
+        public int numNodes;
+
+        /**
+         * The average degree of the graph at the start of every iteration.
+         */
+        @Param({"8", "32"})
+        public int averageDegree;
+
+        /**
+         * The distribution of the endpoints of the edges: "uniform" or "powerlaw".
+         */
+        @Param({"uniform", "powerlaw"})
+        public String skew;
+
+        /**
+         * The nodes of the graph (Graph.Node[]), where the id of nodes[i] is i.
+         */
+        public Object[] nodes;
+
+        /**
+         * The first endpoints of the initial edges.
+         */
+        public int[] initial1;
+
+        /**
+         * The second endpoints of the initial edges.
+         */
+        public int[] initial2;
+
+        /**
+         * The stream of the first ids that the operations use.
+         */
+        public int[] stream1;
+
+        /**
+         * The stream of the second ids that the operations use.
+         */
+        public int[] stream2;
+
+        /**
+         * The next index in the streams.
+         */
+        public int cursor;
+
+        /**
+         * The graph (Graph).
+         */
+        public Object graph;
+
+
+        /**
+         * Generates the nodes, the initial edges and the streams of ids.
+         */
+        @Setup(Level.Trial)
+        public void generate() throws Throwable {
+            Random random = new Random(1);
+            this.nodes = GraphHandles.newNodeArray(this.numNodes);
+            for (int i = 0; i < this.numNodes; i++) {
+                this.nodes[i] = (Object) GraphHandles.NEW_NODE.invokeExact(i, 1 + random.nextInt(100));
+            }
+            int numEdges = (int) ((long) this.numNodes * this.averageDegree / 2);
+            this.initial1 = new int[numEdges];
+            this.initial2 = new int[numEdges];
+            for (int i = 0; i < numEdges; i++) {
+                this.initial1[i] = this.sample(random);
+                this.initial2[i] = this.sample(random);
+            }
+            this.stream1 = new int[STREAM_LENGTH];
+            this.stream2 = new int[STREAM_LENGTH];
+            for (int i = 0; i < STREAM_LENGTH; i++) {
+                this.stream1[i] = this.sample(random);
+                this.stream2[i] = this.sample(random);
+            }
+        }
+
+
+        /**
+         * Builds the initial graph.
+         */
+        @Setup(Level.Iteration)
+        public void build() throws Throwable {
+            this.graph = (Object) GraphHandles.NEW_GRAPH.invokeExact((Object) this.nodes, this.initial1, this.initial2);
+            this.cursor = 0;
+        }
+
+
+        /**
+         * Draws an id: uniformly, or log-uniformly (a power law with exponent 1) if the skew is "powerlaw".
+         *
+         * @param random - the random generator.
+         * @return an id of a node.
+         */
+        public int sample(Random random) {
+            if (this.skew.equals("powerlaw")) {
+                return (int) Math.pow(this.numNodes, random.nextDouble()) - 1;
+            }
+            return random.nextInt(this.numNodes);
+        }
+
+
+        /**
+         * Returns the next index in the streams.
+         *
+         * @return the next index in the streams.
+         */
+        public int next() {
+            int i = this.cursor;
+            this.cursor = (i + 1) & (STREAM_LENGTH - 1);
+            return i;
+        }
+    }
+
+
+    /**
+     * A graph state with a stream of operations of a given mix.
+     */
+    @State(Scope.Thread)
+    public static class MixState extends GraphState {
+        /**
+         * The operation mix: "write" (90% addEdge, 10% deleteNode and re-adding the node), "read" (90%
+         * getNeighborhoodWeight, 10% maxNeighborhoodWeight) or "balanced" (50% addEdge, 5% deleteNode and re-adding,
+         * 40% getNeighborhoodWeight, 5% maxNeighborhoodWeight).
+         */
+        @Param({"write", "read", "balanced"})
+        public String mix;
+
+        /**
+         * The stream of operations: 0 (addEdge), 1 (deleteNode and re-adding), 2 (getNeighborhoodWeight)
+         * or 3 (maxNeighborhoodWeight).
+         */
+        public byte[] operations;
+
+
+        /**
+         * Generates the stream of operations.
+         */
+        @Setup(Level.Trial)
+        public void generateOperations() {
+            int[] percents;
+            switch (this.mix) {
+                case "write":
+                    percents = new int[]{90, 10, 0, 0};
+                    break;
+                case "read":
+                    percents = new int[]{0, 0, 90, 10};
+                    break;
+                default:
+                    percents = new int[]{50, 5, 40, 5};
+                    break;
+            }
+            Random random = new Random(2);
+            this.operations = new byte[STREAM_LENGTH];
+            for (int i = 0; i < STREAM_LENGTH; i++) {
+                int r = random.nextInt(100);
+                byte operation = 0;
+                while (r >= percents[operation]) {
+                    r -= percents[operation];
+                    operation += 1;
+                }
+                this.operations[i] = operation;
+            }
+        }
+    }
+
+
+    /**
+     * Adds an edge.
+     */
+    @Benchmark
+    public boolean addEdge(GraphState state) throws Throwable {
+        int i = state.next();
+        return (boolean) GraphHandles.ADD_EDGE.invokeExact(state.graph, state.stream1[i], state.stream2[i]);
+    }
+
+
+    /**
+     * Deletes a node with its edges and adds it back without edges, so the number of nodes stays the same.
+     */
+    @Benchmark
+    public boolean deleteNode(GraphState state) throws Throwable {
+        int id = state.stream1[state.next()];
+        boolean deleted = (boolean) GraphHandles.DELETE_NODE.invokeExact(state.graph, id);
+        return deleted & (boolean) GraphHandles.ADD_NODE.invokeExact(state.graph, state.nodes[id]);
+    }
+
+
+    /**
+     * Returns the neighborhood weight of a node.
+     */
+    @Benchmark
+    public int getNeighborhoodWeight(GraphState state) throws Throwable {
+        return (int) GraphHandles.GET_NEIGHBORHOOD_WEIGHT.invokeExact(state.graph, state.stream1[state.next()]);
+    }
+
+
+    /**
+     * Returns the node with the maximal neighborhood weight.
+     */
+    @Benchmark
+    public Object maxNeighborhoodWeight(GraphState state) throws Throwable {
+        return (Object) GraphHandles.MAX_NEIGHBORHOOD_WEIGHT.invokeExact(state.graph);
+    }
+
+
+    /**
+     * Runs the next operation of the mix.
+     */
+    @Benchmark
+    public void mixedOperations(MixState state, Blackhole blackhole) throws Throwable {
+        int i = state.next();
+        switch (state.operations[i]) {
+            case 0:
+                blackhole.consume((boolean) GraphHandles.ADD_EDGE.invokeExact(state.graph, state.stream1[i],
+                        state.stream2[i]));
+                break;
+            case 1:
+                int id = state.stream1[i];
+                blackhole.consume((boolean) GraphHandles.DELETE_NODE.invokeExact(state.graph, id));
+                blackhole.consume((boolean) GraphHandles.ADD_NODE.invokeExact(state.graph, state.nodes[id]));
+                break;
+            case 2:
+                blackhole.consume((int) GraphHandles.GET_NEIGHBORHOOD_WEIGHT.invokeExact(state.graph,
+                        state.stream1[i]));
+                break;
+            default:
+                blackhole.consume((Object) GraphHandles.MAX_NEIGHBORHOOD_WEIGHT.invokeExact(state.graph));
+                break;
+        }
+    }
+
+
+    /**
+     * Runs the benchmarks (all of them, or those selected by the JMH options) with the GC profiler.
+     *
+     * @param args - JMH command line options.
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
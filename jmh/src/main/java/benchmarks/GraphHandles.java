@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+
+/**
+ * This class holds method handles of the graph operations. The graph classes are in the default package, which
+ * a named package (as JMH requires for benchmarks) cannot import, so they are found by name once. The handles are
+ * static final, so the JIT treats them as constants and inlines the calls, as if they were direct calls.
+ * The graph and its nodes are typed as Object in the handles.
+ */
+final class GraphHandles {
+    /**
+     * The class Graph.Node.
+     */
+    static final Class<?> NODE;
+
+    /**
+     * new Graph.Node(int id, int weight): (int, int) -> Object.
+     */
+    static final MethodHandle NEW_NODE;
+
+    /**
+     * new Graph(Node[] nodes, int[] node1_ids, int[] node2_ids): (Object, int[], int[]) -> Object.
+     */
+    static final MethodHandle NEW_GRAPH;
+
+    /**
+     * Graph.addEdge: (Object, int, int) -> boolean.
+     */
+    static final MethodHandle ADD_EDGE;
+
+    /**
+     * Graph.addNode: (Object, Object) -> boolean.
+     */
+    static final MethodHandle ADD_NODE;
+
+    /**
+     * Graph.deleteNode: (Object, int) -> boolean.
+     */
+    static final MethodHandle DELETE_NODE;
+
+    /**
+     * Graph.getNeighborhoodWeight: (Object, int) -> int.
+     */
+    static final MethodHandle GET_NEIGHBORHOOD_WEIGHT;
+
+    /**
+     * Graph.maxNeighborhoodWeight: (Object) -> Object.
+     */
+    static final MethodHandle MAX_NEIGHBORHOOD_WEIGHT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> graph = Class.forName("Graph");
+            NODE = Class.forName("Graph$Node");
+            Class<?> nodeArray = Array.newInstance(NODE, 0).getClass();
+
+            NEW_NODE = lookup.findConstructor(NODE, MethodType.methodType(void.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class));
+            NEW_GRAPH = lookup.findConstructor(graph,
+                            MethodType.methodType(void.class, nodeArray, int[].class, int[].class))
+                    .asType(MethodType.methodType(Object.class, Object.class, int[].class, int[].class));
+            ADD_EDGE = lookup.findVirtual(graph, "addEdge",
+                            MethodType.methodType(boolean.class, int.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class, int.class));
+            ADD_NODE = lookup.findVirtual(graph, "addNode", MethodType.methodType(boolean.class, NODE))
+                    .asType(MethodType.methodType(boolean.class, Object.class, Object.class));
+            DELETE_NODE = lookup.findVirtual(graph, "deleteNode", MethodType.methodType(boolean.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class));
+            GET_NEIGHBORHOOD_WEIGHT = lookup.findVirtual(graph, "getNeighborhoodWeight",
+                            MethodType.methodType(int.class, int.class))
+                    .asType(MethodType.methodType(int.class, Object.class, int.class));
+            MAX_NEIGHBORHOOD_WEIGHT = lookup.findVirtual(graph, "maxNeighborhoodWeight",
+                            MethodType.methodType(NODE))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+
+    private GraphHandles() {
+    }
+
+
+    /**
+     * Creates an array of nodes (Graph.Node[]) of the given length.
+     *
+     * @param length - the length of the array.
+     * @return the array, typed as Object[].
+     */
+    static Object[] newNodeArray(int length) {
+        return (Object[]) Array.newInstance(NODE, length);
+    }
+}
@@ -0,0 +1,501 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class represents a graph that maintains the heaviest neighborhood over edge addition and vertex deletion,
+ * and may be mutated and queried by many threads concurrently.
+ *
+ * The vertices are split into stripes (by their index), and each stripe has its own lock, which guards the
+ * neighbors lists of its vertices. addEdge locks the (at most two) stripes of its vertices in increasing order,
+ * and deleteNode locks all the stripes in increasing order, so there are no deadlocks. The neighborhood weights are
+ * kept in an atomic array, which is updated under the stripe locks and read without locks.
+ *
+ * The max-heap has a single writer: every mutation records the changed vertices in the dirty buffer of their stripe,
+ * and whichever thread acquires the heap lock drains the buffers in a batch and corrects the heap, after which the
+ * heaviest neighborhood is published. Writers only try the heap lock (after enough changes), and readers of
+ * maxNeighborhoodWeight never wait for it, so the heaviest neighborhood they read may miss the changes of
+ * the mutations that are still in the buffers. flush makes it exact.
+ */
+public class ConcurrentGraph {
+    /**
+     * The neighborhood weight of a deleted vertex.
+     */
+    public static final int DELETED = Integer.MIN_VALUE;
+
+    /**
+     * The number of changed vertices in the dirty buffer of a stripe, after which a writer tries to drain the buffers.
+     */
+    public static final int DRAIN_THRESHOLD = 64;
+
+    /**
+     * The node of each vertex, indexed by the index of the vertex.
+     */
+    public final Graph.Node[] vertices;
+
+    /**
+     * The hash table that maps node id to the index of the vertex. It is not changed after the construction,
+     * so it is read without locks.
+     */
+    public final Graph.IdIndex tableIdToRepresentation;
+
+    /**
+     * The neighborhood weight of each vertex, or DELETED.
+     */
+    public final AtomicIntegerArray neighborhoodWeights;
+
+    /**
+     * The neighbors of each vertex (indices of vertices). The list of a vertex is guarded by the lock of its stripe.
+     */
+    public final int[][] neighbors;
+
+    /**
+     * For each neighbor in the list of a vertex, the index of the twin entry (which represents the same edge)
+     * in the list of the neighbor.
+     */
+    public final int[][] twins;
+
+    /**
+     * The length of the neighbors list of each vertex.
+     */
+    public final int[] degrees;
+
+    /**
+     * Whether each vertex is in the dirty buffer of its stripe.
+     */
+    public final boolean[] dirty;
+
+    /**
+     * The stripes of the vertices: the vertex v belongs to the stripe v & (stripes.length - 1).
+     */
+    public final Stripe[] stripes;
+
+    /**
+     * The lock of the max-heap, which is held by the single thread that corrects the heap.
+     */
+    public final ReentrantLock heapLock;
+
+    /**
+     * The max-heap of the neighborhood weights, as of the last drain of the dirty buffers.
+     */
+    public final Graph.DaryMaxHeap neighborhoodWeightHeap;
+
+    /**
+     * The buffer that the dirty vertices are drained to. It is guarded by the heap lock.
+     */
+    public int[] drained;
+
+    /**
+     * The vertex with the heaviest neighborhood as of the last drain of the dirty buffers, or -1 if there is none.
+     */
+    public volatile int publishedMax;
+
+    /**
+     * The number of edges in the graph.
+     */
+    public final LongAdder numEdges;
+
+    /**
+     * The number of vertices in the graph.
+     */
+    public final AtomicInteger numNodes;
+
+
+    /**
+     * Initializes the graph on a given set of nodes. The created graph is empty, i.e. it has no edges.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O(N) expected.
+     *
+     * @param nodes - an array of node objects
+     */
+    public ConcurrentGraph(Graph.Node[] nodes) {
+        this(nodes, Integer.highestOneBit(Math.max(1, 4 * Runtime.getRuntime().availableProcessors()) * 2 - 1));
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes, with the given number of stripes.
+     * The created graph is empty, i.e. it has no edges.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O(N + numStripes) expected.
+     *
+     * @param nodes - an array of node objects
+     * @param numStripes - the number of stripes, which is a power of 2.
+     */
+    public ConcurrentGraph(Graph.Node[] nodes, int numStripes) {
+        if (Integer.bitCount(numStripes) != 1) {
+            throw new IllegalArgumentException("the number of stripes must be a power of 2");
+        }
+        this.vertices = nodes.clone();
+        this.tableIdToRepresentation = new Graph.IdIndex(nodes);
+        this.neighborhoodWeights = new AtomicIntegerArray(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            this.neighborhoodWeights.set(i, nodes[i].getWeight());
+        }
+        this.neighbors = new int[nodes.length][];
+        this.twins = new int[nodes.length][];
+        this.degrees = new int[nodes.length];
+        this.dirty = new boolean[nodes.length];
+
+        this.stripes = new Stripe[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.heapLock = new ReentrantLock();
+        this.neighborhoodWeightHeap = new Graph.DaryMaxHeap(nodes, Graph.DEFAULT_HEAP_ARITY);
+        this.drained = new int[16];
+        this.publishedMax = nodes.length == 0 ? -1 : this.neighborhoodWeightHeap.max();
+
+        this.numEdges = new LongAdder();
+        this.numNodes = new AtomicInteger(nodes.length);
+    }
+
+
+    /**
+     * This method returns the node in the graph with the maximal neighborhood weight, as of the last drain of the
+     * dirty buffers. If the heap lock is free, the buffers are drained first; otherwise the method does not wait.
+     *
+     * time complexity: O(1), or O(k * log(n) + s) if it drains k dirty vertices of s stripes.
+     *
+     * @return a Node object representing the node. If there is no node in the graph, returns 'null'.
+     */
+    public Graph.Node maxNeighborhoodWeight() {
+        if (this.heapLock.tryLock()) {
+            try {
+                this.drain();
+            } finally {
+                this.heapLock.unlock();
+            }
+        }
+        int max = this.publishedMax;
+        return max == -1 ? null : this.vertices[max];
+    }
+
+
+    /**
+     * given a node id of a node in the graph, this method returns the neighborhood weight of that node,
+     * without locks.
+     *
+     * time complexity: O(1) expected.
+     *
+     * @param node_id - an id of a node.
+     * @return the neighborhood weight of the node of id 'node_id' if such a node exists in the graph.
+     * Otherwise, the function returns -1.
+     */
+    public int getNeighborhoodWeight(int node_id) {
+        int vertex = this.tableIdToRepresentation.find(node_id);
+        if (vertex == -1) {
+            return -1;
+        }
+        int neighborhoodWeight = this.neighborhoodWeights.get(vertex);
+        return neighborhoodWeight == DELETED ? -1 : neighborhoodWeight;
+    }
+
+
+    /**
+     * This function adds an edge between the two nodes whose ids are specified.
+     * If one of these nodes is not in the graph, the function does nothing.
+     * The two nodes must be distinct; otherwise, the function does nothing.
+     * Only the stripes of the two nodes are locked, in increasing order.
+     *
+     * time complexity: O(1) amortized expected, and O(k * log(n) + s) if it drains k dirty vertices of s stripes.
+     *
+     * @param node1_id - the id of the first node.
+     * @param node2_id - the id of the second node.
+     * @return returns 'true' if the function added an edge, otherwise returns 'false'.
+     */
+    public boolean addEdge(int node1_id, int node2_id) {
+        if (node1_id == node2_id) {
+            return false;
+        }
+        int vertex1 = this.tableIdToRepresentation.find(node1_id);
+        int vertex2 = this.tableIdToRepresentation.find(node2_id);
+        if (vertex1 == -1 || vertex2 == -1) {
+            return false;
+        }
+
+        int mask = this.stripes.length - 1;
+        Stripe first = this.stripes[Math.min(vertex1 & mask, vertex2 & mask)];
+        Stripe second = this.stripes[Math.max(vertex1 & mask, vertex2 & mask)];
+        boolean drainNeeded;
+        first.lock.lock();
+        if (second != first) {
+            second.lock.lock();
+        }
+        try {
+            int neighborhoodWeight1 = this.neighborhoodWeights.get(vertex1);
+            int neighborhoodWeight2 = this.neighborhoodWeights.get(vertex2);
+            if (neighborhoodWeight1 == DELETED || neighborhoodWeight2 == DELETED) {
+                return false;
+            }
+
+            //Appends the two twin entries of the edge to the neighbors lists.
+            int index1 = this.append(vertex1, vertex2);
+            int index2 = this.append(vertex2, vertex1);
+            this.twins[vertex1][index1] = index2;
+            this.twins[vertex2][index2] = index1;
+
+            //Updates the neighborhood weight of the two nodes.
+            this.neighborhoodWeights.set(vertex1, neighborhoodWeight1 + this.vertices[vertex2].getWeight());
+            this.neighborhoodWeights.set(vertex2, neighborhoodWeight2 + this.vertices[vertex1].getWeight());
+            this.markDirty(vertex1);
+            this.markDirty(vertex2);
+            drainNeeded = first.numDirty >= DRAIN_THRESHOLD || second.numDirty >= DRAIN_THRESHOLD;
+        } finally {
+            if (second != first) {
+                second.lock.unlock();
+            }
+            first.lock.unlock();
+        }
+        this.numEdges.increment();
+
+        if (drainNeeded && this.heapLock.tryLock()) {
+            try {
+                this.drain();
+            } finally {
+                this.heapLock.unlock();
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Given the id of a node in the graph, deletes the node of that id from the graph, if it exists.
+     * All the stripes are locked, in increasing order.
+     *
+     * time complexity: O(d_v + s) expected, while s is the number of stripes.
+     *
+     * @param node_id - the id of the node to delete.
+     * @return returns 'true' if the function deleted a node, otherwise returns 'false'
+     */
+    public boolean deleteNode(int node_id) {
+        int vertex = this.tableIdToRepresentation.find(node_id);
+        if (vertex == -1) {
+            return false;
+        }
+
+        for (Stripe stripe : this.stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            if (this.neighborhoodWeights.get(vertex) == DELETED) {
+                return false;
+            }
+            int weight = this.vertices[vertex].getWeight();
+            for (int i = 0; i < this.degrees[vertex]; i++) { //For each neighbor:
+                int neighbor = this.neighbors[vertex][i];
+
+                //Deletes the twin entry of the edge from the neighbors list of the neighbor.
+                this.removeAt(neighbor, this.twins[vertex][i]);
+
+                //Remove the weight of the vertex to delete from the neighborhood weight of his neighbor.
+                this.neighborhoodWeights.set(neighbor, this.neighborhoodWeights.get(neighbor) - weight);
+                this.markDirty(neighbor);
+            }
+            this.numEdges.add(-this.degrees[vertex]);
+            this.neighbors[vertex] = null;
+            this.twins[vertex] = null;
+            this.degrees[vertex] = 0;
+            this.neighborhoodWeights.set(vertex, DELETED);
+            this.markDirty(vertex);
+        } finally {
+            for (int i = this.stripes.length - 1; i >= 0; i--) {
+                this.stripes[i].lock.unlock();
+            }
+        }
+        this.numNodes.decrementAndGet();
+        return true;
+    }
+
+
+    /**
+     * Drains the dirty buffers and corrects the max-heap, waiting for the heap lock if it is held,
+     * so the following calls to maxNeighborhoodWeight see all the mutations that completed before this call.
+     *
+     * time complexity: O(k * log(n) + s), while k is the number of dirty vertices and s is the number of stripes.
+     */
+    public void flush() {
+        this.heapLock.lock();
+        try {
+            this.drain();
+        } finally {
+            this.heapLock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns the number of nodes currently in the graph.
+     *
+     * time complexity: O(1).
+     *
+     * @return the number of nodes in the graph.
+     */
+    public int getNumNodes() {
+        return this.numNodes.get();
+    }
+
+
+    /**
+     * Returns the number of edges currently in the graph.
+     *
+     * time complexity: O(number of threads that added or deleted edges).
+     *
+     * @return the number of edges currently in the graph.
+     */
+    public int getNumEdges() {
+        return (int) this.numEdges.sum();
+    }
+
+
+    /**
+     * Appends a neighbor to the neighbors list of a vertex, and doubles the list if it is full.
+     * The lock of the stripe of the vertex must be held.
+     *
+     * time complexity: O(1) amortized.
+     *
+     * @param vertex - the index of a vertex.
+     * @param neighbor - the index of its new neighbor.
+     * @return the index of the new entry in the neighbors list of the vertex.
+     */
+    public int append(int vertex, int neighbor) {
+        int degree = this.degrees[vertex];
+        if (this.neighbors[vertex] == null) {
+            this.neighbors[vertex] = new int[4];
+            this.twins[vertex] = new int[4];
+        } else if (degree == this.neighbors[vertex].length) {
+            this.neighbors[vertex] = java.util.Arrays.copyOf(this.neighbors[vertex], 2 * degree);
+            this.twins[vertex] = java.util.Arrays.copyOf(this.twins[vertex], 2 * degree);
+        }
+        this.neighbors[vertex][degree] = neighbor;
+        this.degrees[vertex] = degree + 1;
+        return degree;
+    }
+
+
+    /**
+     * Deletes the entry at index i from the neighbors list of a vertex, by moving the last entry to its place
+     * and updating the twin of the moved entry. The locks of the stripes of the vertex and of the neighbor of
+     * the moved entry must be held.
+     *
+     * time complexity: O(1).
+     *
+     * @param vertex - the index of a vertex.
+     * @param i - an index in the neighbors list of the vertex.
+     */
+    public void removeAt(int vertex, int i) {
+        int last = this.degrees[vertex] - 1;
+        if (i != last) {
+            int movedNeighbor = this.neighbors[vertex][last];
+            int movedTwin = this.twins[vertex][last];
+            this.neighbors[vertex][i] = movedNeighbor;
+            this.twins[vertex][i] = movedTwin;
+            this.twins[movedNeighbor][movedTwin] = i;
+        }
+        this.degrees[vertex] = last;
+    }
+
+
+    /**
+     * Adds a vertex to the dirty buffer of its stripe, if it is not there. The lock of the stripe must be held.
+     *
+     * time complexity: O(1) amortized.
+     *
+     * @param vertex - the index of a vertex.
+     */
+    public void markDirty(int vertex) {
+        if (!this.dirty[vertex]) {
+            this.dirty[vertex] = true;
+            this.stripes[vertex & (this.stripes.length - 1)].push(vertex);
+        }
+    }
+
+
+    /**
+     * Moves the dirty vertices of all the stripes to the drained buffer (locking one stripe at a time),
+     * applies their current neighborhood weights to the max-heap, and publishes the heaviest neighborhood.
+     * The heap lock must be held.
+     *
+     * time complexity: O(k * log(n) + s), while k is the number of dirty vertices and s is the number of stripes.
+     */
+    public void drain() {
+        int numDrained = 0;
+        for (Stripe stripe : this.stripes) {
+            if (stripe.numDirty == 0) {
+                continue;
+            }
+            stripe.lock.lock();
+            try {
+                if (numDrained + stripe.numDirty > this.drained.length) {
+                    this.drained = java.util.Arrays.copyOf(this.drained, 2 * (numDrained + stripe.numDirty));
+                }
+                for (int i = 0; i < stripe.numDirty; i++) {
+                    int vertex = stripe.dirtyVertices[i];
+                    this.dirty[vertex] = false;
+                    this.drained[numDrained++] = vertex;
+                }
+                stripe.numDirty = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        for (int i = 0; i < numDrained; i++) {
+            int vertex = this.drained[i];
+            int neighborhoodWeight = this.neighborhoodWeights.get(vertex);
+            boolean inHeap = this.neighborhoodWeightHeap.positions[vertex] != -1;
+            if (neighborhoodWeight == DELETED) {
+                if (inHeap) {
+                    this.neighborhoodWeightHeap.delete(vertex);
+                }
+            } else {
+                int delta = neighborhoodWeight - this.neighborhoodWeightHeap.getKey(vertex);
+                this.neighborhoodWeightHeap.changeNeighborhoodWeight(vertex, delta);
+            }
+        }
+        this.publishedMax = this.neighborhoodWeightHeap.getSize() == 0 ? -1 : this.neighborhoodWeightHeap.max();
+    }
+
+
+
+    /**
+     * This class represents a stripe of vertices: its lock, and the buffer of its dirty vertices,
+     * which is guarded by the lock.
+     */
+    public static class Stripe {
+        /**
+         * The lock of the stripe.
+         */
+        public final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The dirty vertices of the stripe.
+         */
+        public int[] dirtyVertices = new int[16];
+
+        /**
+         * The number of dirty vertices of the stripe. It is read without the lock only as a hint.
+         */
+        public volatile int numDirty;
+
+
+        /**
+         * Adds a vertex to the buffer of dirty vertices, and doubles the buffer if it is full.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @param vertex - the index of a vertex.
+         */
+        public void push(int vertex) {
+            if (this.numDirty == this.dirtyVertices.length) {
+                this.dirtyVertices = java.util.Arrays.copyOf(this.dirtyVertices, 2 * this.numDirty);
+            }
+            this.dirtyVertices[this.numDirty] = vertex;
+            this.numDirty += 1;
+        }
+    }
+}
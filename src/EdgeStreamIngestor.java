@@ -0,0 +1,492 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class streams edges from files (or any channel) into a graph: text files of "u v" lines, and binary files of
+ * packed int pairs. The input is read through a large direct buffer, the ints are parsed from the bytes without
+ * creating Strings, and the edges are passed to Graph.addEdges in batches of a fixed size, through arrays that are
+ * reused. Self loops are rejected while parsing, and the edges that addEdges rejects are counted by their reason: an
+ * unknown id, or (in the simple-graph mode) a duplicate of an edge that is already in the graph.
+ * A listener, if there is one, is called after every batch with the ingestor, whose counters report the progress.
+ *
+ * In text input, the two ids of an edge are separated by spaces, tabs or a comma, lines that start with '#' or '%'
+ * are comments, and other lines (e.g. with one or three ints, or with other characters) are counted as malformed.
+ */
+public class EdgeStreamIngestor {
+    /**
+     * The number of edges per call of addEdges, if it is not specified.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    /**
+     * The length in bytes of the read buffer, if it is not specified.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 22;
+
+    /**
+     * The graph that the edges are added to.
+     */
+    public final Graph graph;
+
+    /**
+     * The number of edges per call of addEdges.
+     */
+    public final int batchSize;
+
+    /**
+     * The buffer that the input is read to.
+     */
+    public final ByteBuffer buffer;
+
+    /**
+     * The ids of the first nodes of the edges in the current batch.
+     */
+    public final int[] node1_ids;
+
+    /**
+     * The ids of the second nodes of the edges in the current batch.
+     */
+    public final int[] node2_ids;
+
+    /**
+     * The number of edges in the current batch.
+     */
+    public int numBatched;
+
+    /**
+     * The listener that is called after every batch, or 'null'.
+     */
+    public ProgressListener listener;
+
+    /**
+     * The number of bytes that were read.
+     */
+    public long bytesRead;
+
+    /**
+     * The number of edges that were read, including the rejected ones.
+     */
+    public long edgesRead;
+
+    /**
+     * The number of malformed lines of text input that were skipped.
+     */
+    public long malformedLines;
+
+    /**
+     * The number of edges that were added to the graph.
+     */
+    public long edgesAdded;
+
+    /**
+     * The number of edges that were rejected as self loops.
+     */
+    public long rejectedSelfLoops;
+
+    /**
+     * The number of edges that were rejected since one of their ids is not in the graph.
+     */
+    public long rejectedUnknownIds;
+
+    /**
+     * The number of edges that were rejected in the simple-graph mode since they are already in the graph.
+     */
+    public long rejectedDuplicates;
+
+    /**
+     * The time (System.nanoTime) that the ingestor was created at.
+     */
+    public final long startNanos;
+
+    /**
+     * The number of ints that were parsed in the current line of text input (the parser keeps its state
+     * between reads, so a line may be split between two reads).
+     */
+    public int numFields;
+
+    /**
+     * The first int of the current line.
+     */
+    public int field1;
+
+    /**
+     * The second int of the current line.
+     */
+    public int field2;
+
+    /**
+     * Whether a number is parsed.
+     */
+    public boolean inNumber;
+
+    /**
+     * Whether the number that is parsed is negative.
+     */
+    public boolean negative;
+
+    /**
+     * The number of digits of the number that is parsed.
+     */
+    public int numDigits;
+
+    /**
+     * The absolute value of the number that is parsed.
+     */
+    public long value;
+
+    /**
+     * Whether the rest of the current line is skipped (a comment, or a malformed line).
+     */
+    public boolean skipLine;
+
+    /**
+     * Whether the current line is malformed.
+     */
+    public boolean malformedLine;
+
+
+    /**
+     * Creates an ingestor with batches of DEFAULT_BATCH_SIZE edges and a buffer of DEFAULT_BUFFER_SIZE bytes.
+     *
+     * time complexity: O(DEFAULT_BATCH_SIZE + DEFAULT_BUFFER_SIZE).
+     *
+     * @param graph - the graph that the edges are added to.
+     */
+    public EdgeStreamIngestor(Graph graph) {
+        this(graph, DEFAULT_BATCH_SIZE, DEFAULT_BUFFER_SIZE, null);
+    }
+
+
+    /**
+     * Creates an ingestor.
+     *
+     * time complexity: O(batchSize + bufferSize).
+     *
+     * @param graph - the graph that the edges are added to.
+     * @param batchSize - the number of edges per call of addEdges, at least 1.
+     * @param bufferSize - the length in bytes of the read buffer, at least 8.
+     * @param listener - the listener that is called after every batch, or 'null'.
+     */
+    public EdgeStreamIngestor(Graph graph, int batchSize, int bufferSize, ProgressListener listener) {
+        if (batchSize < 1 || bufferSize < 8) {
+            throw new IllegalArgumentException("the batch size must be at least 1 and the buffer size at least 8");
+        }
+        this.graph = graph;
+        this.batchSize = batchSize;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.node1_ids = new int[batchSize];
+        this.node2_ids = new int[batchSize];
+        this.numBatched = 0;
+        this.listener = listener;
+        this.startNanos = System.nanoTime();
+    }
+
+
+    /**
+     * Ingests a text file of "u v" lines.
+     *
+     * time complexity: O(B + M * (cost of addEdges per edge)), while B is the length of the file in bytes.
+     *
+     * @param path - the path of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    public void ingestText(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.ingestText(channel);
+        }
+    }
+
+
+    /**
+     * Ingests a binary file of packed int pairs in the given byte order. A partial pair at the end is ignored.
+     *
+     * time complexity: O(B + M * (cost of addEdges per edge)), while B is the length of the file in bytes.
+     *
+     * @param path - the path of the file.
+     * @param order - the byte order of the ints.
+     * @throws IOException if the file cannot be read.
+     */
+    public void ingestBinary(Path path, ByteOrder order) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.ingestBinary(channel, order);
+        }
+    }
+
+
+    /**
+     * Ingests text "u v" lines from a channel until its end, and flushes the last batch.
+     *
+     * time complexity: O(B + M * (cost of addEdges per edge)), while B is the number of bytes in the channel.
+     *
+     * @param channel - the channel to read from.
+     * @throws IOException if the channel cannot be read.
+     */
+    public void ingestText(ReadableByteChannel channel) throws IOException {
+        this.resetLine();
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            this.bytesRead += read;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                this.parseByte(buffer.get());
+            }
+            buffer.clear();
+        }
+        this.parseByte((byte) '\n');
+        this.flush();
+    }
+
+
+    /**
+     * Ingests packed int pairs in the given byte order from a channel until its end, and flushes the last batch.
+     * A partial pair at the end is ignored.
+     *
+     * time complexity: O(B + M * (cost of addEdges per edge)), while B is the number of bytes in the channel.
+     *
+     * @param channel - the channel to read from.
+     * @param order - the byte order of the ints.
+     * @throws IOException if the channel cannot be read.
+     */
+    public void ingestBinary(ReadableByteChannel channel, ByteOrder order) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        buffer.order(order);
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            this.bytesRead += read;
+            buffer.flip();
+            while (buffer.remaining() >= 8) {
+                this.accept(buffer.getInt(), buffer.getInt());
+            }
+            buffer.compact(); //Keeps a partial pair for the next read.
+        }
+        this.flush();
+    }
+
+
+    /**
+     * Advances the text parser by one byte.
+     *
+     * time complexity: O(1), or the time of a batch when a line completes it.
+     *
+     * @param b - the next byte of the input.
+     */
+    public void parseByte(byte b) {
+        if (b == '\n') {
+            this.endNumber();
+            this.endLine();
+        } else if (this.skipLine) {
+            return;
+        } else if (b >= '0' && b <= '9') {
+            if (!this.inNumber) {
+                this.inNumber = true;
+                this.negative = false;
+                this.numDigits = 0;
+                this.value = 0;
+            }
+            this.value = 10 * this.value + (b - '0');
+            this.numDigits += 1;
+            if (this.value > 1L + Integer.MAX_VALUE) {
+                this.markMalformed();
+            }
+        } else if (b == ' ' || b == '\t' || b == '\r' || b == ',') {
+            this.endNumber();
+        } else if (b == '-' && !this.inNumber) {
+            this.inNumber = true;
+            this.negative = true;
+            this.numDigits = 0;
+            this.value = 0;
+        } else if ((b == '#' || b == '%') && !this.inNumber && this.numFields == 0) {
+            this.skipLine = true;
+        } else {
+            this.markMalformed();
+        }
+    }
+
+
+    /**
+     * Ends the number that is parsed, if there is one, and stores it as the next int of the line.
+     *
+     * time complexity: O(1).
+     */
+    public void endNumber() {
+        if (!this.inNumber) {
+            return;
+        }
+        this.inNumber = false;
+        long number = this.negative ? -this.value : this.value;
+        if (this.numDigits == 0 || number > Integer.MAX_VALUE || number < Integer.MIN_VALUE) {
+            this.markMalformed();
+            return;
+        }
+        if (this.numFields == 0) {
+            this.field1 = (int) number;
+        } else if (this.numFields == 1) {
+            this.field2 = (int) number;
+        }
+        this.numFields += 1;
+    }
+
+
+    /**
+     * Ends the current line: accepts its edge if it has exactly two ints, or counts it as malformed
+     * unless it is empty or a comment.
+     *
+     * time complexity: O(1), or the time of a batch if the line completes it.
+     */
+    public void endLine() {
+        if (this.malformedLine || (!this.skipLine && this.numFields != 0 && this.numFields != 2)) {
+            this.malformedLines += 1;
+        } else if (this.numFields == 2) {
+            this.accept(this.field1, this.field2);
+        }
+        this.resetLine();
+    }
+
+
+    /**
+     * Marks the current line as malformed, and skips the rest of it.
+     *
+     * time complexity: O(1).
+     */
+    public void markMalformed() {
+        this.malformedLine = true;
+        this.skipLine = true;
+        this.inNumber = false;
+    }
+
+
+    /**
+     * Resets the state of the text parser for a new line.
+     *
+     * time complexity: O(1).
+     */
+    public void resetLine() {
+        this.numFields = 0;
+        this.inNumber = false;
+        this.skipLine = false;
+        this.malformedLine = false;
+    }
+
+
+    /**
+     * Adds an edge to the current batch, or rejects it if it is a self loop, and flushes the batch if it is full.
+     *
+     * time complexity: O(1), or the time of addEdges on a batch when the batch is full.
+     *
+     * @param node1_id - the id of the first node.
+     * @param node2_id - the id of the second node.
+     */
+    public void accept(int node1_id, int node2_id) {
+        this.edgesRead += 1;
+        if (node1_id == node2_id) {
+            this.rejectedSelfLoops += 1;
+            return;
+        }
+        this.node1_ids[this.numBatched] = node1_id;
+        this.node2_ids[this.numBatched] = node2_id;
+        this.numBatched += 1;
+        if (this.numBatched == this.batchSize) {
+            this.flush();
+        }
+    }
+
+
+    /**
+     * Adds the edges of the current batch to the graph by addEdges, counts the edges that were rejected
+     * for unknown ids or as duplicates, and calls the listener.
+     * An edge that was rejected although both of its ids are in the graph is a duplicate (in the simple-graph mode).
+     *
+     * time complexity: the time of addEdges on the batch, plus O(1) expected per rejected edge.
+     */
+    public void flush() {
+        if (this.numBatched == 0) {
+            return;
+        }
+        boolean[] added;
+        if (this.numBatched == this.batchSize) {
+            added = this.graph.addEdges(this.node1_ids, this.node2_ids);
+        } else {
+            added = this.graph.addEdges(java.util.Arrays.copyOf(this.node1_ids, this.numBatched),
+                    java.util.Arrays.copyOf(this.node2_ids, this.numBatched));
+        }
+        for (int i = 0; i < this.numBatched; i++) {
+            if (added[i]) {
+                this.edgesAdded += 1;
+            } else if (this.graph.tableIdToRepresentation.find(this.node1_ids[i]) == -1
+                    || this.graph.tableIdToRepresentation.find(this.node2_ids[i]) == -1) {
+                this.rejectedUnknownIds += 1;
+            } else {
+                this.rejectedDuplicates += 1;
+            }
+        }
+        this.numBatched = 0;
+        if (this.listener != null) {
+            this.listener.onBatch(this);
+        }
+    }
+
+
+    /**
+     * Returns the number of edges (including the rejected ones) that were read per second since the ingestor
+     * was created.
+     *
+     * time complexity: O(1).
+     *
+     * @return the throughput in edges per second.
+     */
+    public double edgesPerSecond() {
+        long elapsed = System.nanoTime() - this.startNanos;
+        return elapsed == 0 ? 0 : this.edgesRead * 1e9 / elapsed;
+    }
+
+
+    /**
+     * Returns the number of bytes that were read per second since the ingestor was created.
+     *
+     * time complexity: O(1).
+     *
+     * @return the throughput in bytes per second.
+     */
+    public double bytesPerSecond() {
+        long elapsed = System.nanoTime() - this.startNanos;
+        return elapsed == 0 ? 0 : this.bytesRead * 1e9 / elapsed;
+    }
+
+
+    /**
+     * Returns a line that reports the counters and the throughput.
+     *
+     * time complexity: O(1).
+     *
+     * @return a line that reports the progress.
+     */
+    @Override
+    public String toString() {
+        return String.format("read=%d added=%d selfLoops=%d unknownIds=%d duplicates=%d malformed=%d"
+                        + " %.0f edges/s %.1f MB/s",
+                this.edgesRead, this.edgesAdded, this.rejectedSelfLoops, this.rejectedUnknownIds,
+                this.rejectedDuplicates, this.malformedLines, this.edgesPerSecond(), this.bytesPerSecond() / (1 << 20));
+    }
+
+
+
+    /**
+     * This interface represents a listener that is called after every batch of an ingestor.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after a batch of the ingestor was added to the graph.
+         *
+         * @param ingestor - the ingestor, whose counters report the progress.
+         */
+        void onBatch(EdgeStreamIngestor ingestor);
+    }
+}
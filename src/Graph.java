@@ -4,7 +4,25 @@ You are required to implement the methods of this skeleton file according to the
 You are allowed to add classes, methods, and members as required.
  */
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * This class represents a graph that efficiently maintains the heaviest neighborhood over edge addition and
@@ -12,20 +30,131 @@ import java.util.Random;
  *
  */
 public class Graph {
+    /**
+     * The arity of the max-heap of the neighborhood weights, if it is not specified.
+     */
+    public static final int DEFAULT_HEAP_ARITY = 4;
+
+    /**
+     * The number of elements (pairs, cells or vertices) that a single task handles in the parallel construction.
+     */
+    public static final int PARALLEL_GRAIN = 1 << 14;
+
+    /**
+     * The first int of every snapshot file ("TGRF").
+     */
+    public static final int SNAPSHOT_MAGIC = 0x54475246;
+
+    /**
+     * The version of the layout of the snapshot files that saveSnapshot writes.
+     */
+    public static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * The length in bytes of the header of a snapshot file: 18 ints and a long.
+     */
+    public static final int SNAPSHOT_HEADER_SIZE = 18 * 4 + 8;
+
+    /**
+     * Whether the internal counters (GraphStats) are collected, from the system property "graph.stats".
+     * It is read once, and since it is a static final constant, the JIT removes the counting code when it is false.
+     */
+    public static final boolean STATS_ENABLED = Boolean.getBoolean("graph.stats");
+
+    /**
+     * The ratio between the number of nodes and the capacity of the arrays of the vertices below which a deletion
+     * compacts the graph, if it is not specified.
+     */
+    public static final double DEFAULT_COMPACTION_RATIO = 0.25;
+
+    /**
+     * The minimal capacity of the arrays of the vertices for a deletion to compact the graph, so small graphs are
+     * never compacted automatically.
+     */
+    public static final int MIN_COMPACTION_CAPACITY = 1 << 12;
+
     /**
      * The adjacency list represents the edges in the graph.
      */
     public NeighborhoodsList neighborhoodsList;
 
     /**
-     * The (binary) Max-Heap that maintains the heaviest neighborhood.
+     * The Max-Heap that maintains the heaviest neighborhood.
      */
     public MaxHeap neighborhoodWeightHeap;
 
     /**
-     * The hash table that maps node id to hash node (which contains relevant info about the vertex).
+     * The hash table that maps node id to the fixed index of the vertex in the neighborhoods list.
+     */
+    public IdIndex tableIdToRepresentation;
+
+    /**
+     * The node of each vertex, indexed by the fixed index of the vertex in the neighborhoods list
+     * (the cell of a deleted vertex is 'null').
+     */
+    public Node[] vertices;
+
+    /**
+     * The changes of neighborhood weights that batch operations accumulate before they correct the max-heap,
+     * indexed by the fixed index of the vertex in the neighborhoods list. All the cells are zero between operations.
+     */
+    public int[] pendingWeightDeltas;
+
+    /**
+     * Whether the max-heap is corrected lazily: if 'true', the changes of neighborhood weights are only recorded
+     * in pendingWeightDeltas and in the dirty set, and the heap is corrected when a query needs it.
+     */
+    public boolean lazyHeapCorrection;
+
+    /**
+     * Whether the graph is simple: if 'true', addEdge and addEdges reject an edge between two nodes that already
+     * have an edge between them, so an edge is never counted twice in a neighborhood weight.
+     */
+    public boolean simpleGraph;
+
+    /**
+     * The max-heap of the degrees of the vertices, or 'null' if the vertex of maximal degree is not maintained.
+     */
+    public MaxHeap degreeHeap;
+
+    /**
+     * The max-heap of the negated neighborhood weights of the vertices (so its maximum is the vertex with the
+     * lightest neighborhood), or 'null' if the vertex of minimal neighborhood weight is not maintained.
+     * It is changed together with the max-heap of the neighborhood weights, including the changes of the lazy mode.
+     */
+    public MaxHeap minNeighborhoodWeightHeap;
+
+    /**
+     * The dirty set: the indices in the neighborhoods list of the vertices whose changes of neighborhood weights
+     * were not applied to the max-heap yet (a vertex may appear more than once).
+     */
+    public int[] dirtyNListIndices;
+
+    /**
+     * The number of indices in the dirty set.
      */
-    public HashTable tableIdToRepresentation;
+    public int numDirty;
+
+    /**
+     * The log that every successful mutation is appended to, or 'null' if the mutations are not logged.
+     */
+    public MutationLog mutationLog;
+
+    /**
+     * The internal counters of the graph, or 'null' if STATS_ENABLED is false.
+     */
+    public GraphStats stats;
+
+    /**
+     * The open read snapshots of the graph, or 'null' if there are none.
+     */
+    public SnapshotRegistry snapshotRegistry;
+
+    /**
+     * The ratio between the number of nodes and the capacity of the arrays of the vertices below which deleteNode
+     * and deleteNodes compact the graph, or 0 if the graph is compacted only by explicit calls of compact.
+     */
+    public double compactionRatio = DEFAULT_COMPACTION_RATIO;
 
 
     /**
@@ -37,9 +166,116 @@ public class Graph {
      * @param nodes - an array of node objects
      */
     public Graph(Node[] nodes){
-        this.neighborhoodsList = new NeighborhoodsList(nodes.length);
-        this.neighborhoodWeightHeap = new MaxHeap(nodes);
-        this.tableIdToRepresentation = new HashTable(this.neighborhoodWeightHeap);
+        this(nodes, DEFAULT_HEAP_ARITY);
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes, with a max-heap of the given arity.
+     * The created graph is empty, i.e. it has no edges.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O(N) expected.
+     *
+     * @param nodes - an array of node objects
+     * @param heapArity - the number of children of every (inner) vertex in the max-heap, at least 2.
+     */
+    public Graph(Node[] nodes, int heapArity){
+        this(nodes, heapArity, false);
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes, with a max-heap of the given arity, and with the edges kept
+     * either on the Java heap or off-heap. Off-heap, the edge arrays and the hash table of the edges (almost all
+     * the memory of a graph with many edges) are kept in direct buffers, which the garbage collector does not scan
+     * and which are limited by -XX:MaxDirectMemorySize instead of the maximal heap size.
+     * The created graph is empty, i.e. it has no edges.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O(N) expected.
+     *
+     * @param nodes - an array of node objects
+     * @param heapArity - the number of children of every (inner) vertex in the max-heap, at least 2.
+     * @param offHeapEdges - 'true' to keep the edges off-heap, 'false' to keep them on the heap.
+     */
+    public Graph(Node[] nodes, int heapArity, boolean offHeapEdges){
+        this.stats = STATS_ENABLED ? new GraphStats() : null;
+        this.neighborhoodsList = new NeighborhoodsList(nodes.length, offHeapEdges);
+        DaryMaxHeap heap = new DaryMaxHeap(nodes, heapArity);
+        heap.stats = this.stats;
+        this.neighborhoodWeightHeap = heap;
+        this.vertices = nodes.clone();
+        this.tableIdToRepresentation = new IdIndex(nodes);
+        this.tableIdToRepresentation.stats = this.stats;
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes with the edges (node1_ids[i], node2_ids[i]) for every i,
+     * exactly as if addEdge was called on every pair by order (pairs that addEdge rejects are skipped).
+     * The neighbors lists and the neighborhood weights are built in parallel on the common ForkJoinPool,
+     * and the max-heap is built bottom-up once.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O((N + M) / p + M) expected, while p is the parallelism of the pool
+     * (the hash table of the edges is filled by a single task, alongside the parallel part).
+     *
+     * @param nodes - an array of node objects
+     * @param node1_ids - the ids of the first nodes of the edges.
+     * @param node2_ids - the ids of the second nodes of the edges.
+     */
+    public Graph(Node[] nodes, int[] node1_ids, int[] node2_ids) {
+        this(nodes, node1_ids, node2_ids, DEFAULT_HEAP_ARITY, ForkJoinPool.commonPool());
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes with the edges (node1_ids[i], node2_ids[i]) for every i,
+     * exactly as if addEdge was called on every pair by order (pairs that addEdge rejects are skipped),
+     * with a max-heap of the given arity. The neighbors lists and the neighborhood weights are built in parallel
+     * on the given pool, and the max-heap is built bottom-up once.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O((N + M) / p + M) expected, while p is the parallelism of the pool
+     * (the hash table of the edges is filled by a single task, alongside the parallel part).
+     *
+     * @param nodes - an array of node objects
+     * @param node1_ids - the ids of the first nodes of the edges.
+     * @param node2_ids - the ids of the second nodes of the edges.
+     * @param heapArity - the number of children of every (inner) vertex in the max-heap, at least 2.
+     * @param pool - the pool that runs the parallel parts of the construction.
+     */
+    public Graph(Node[] nodes, int[] node1_ids, int[] node2_ids, int heapArity, ForkJoinPool pool) {
+        this(nodes, node1_ids, node2_ids, heapArity, pool, false);
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes with the edges (node1_ids[i], node2_ids[i]) for every i,
+     * as the constructor above, with the edges kept either on the Java heap or off-heap (see Graph(Node[], int,
+     * boolean)).
+     *
+     * time complexity: O((N + M) / p + M) expected, while p is the parallelism of the pool.
+     *
+     * @param nodes - an array of node objects
+     * @param node1_ids - the ids of the first nodes of the edges.
+     * @param node2_ids - the ids of the second nodes of the edges.
+     * @param heapArity - the number of children of every (inner) vertex in the max-heap, at least 2.
+     * @param pool - the pool that runs the parallel parts of the construction.
+     * @param offHeapEdges - 'true' to keep the edges off-heap, 'false' to keep them on the heap.
+     */
+    public Graph(Node[] nodes, int[] node1_ids, int[] node2_ids, int heapArity, ForkJoinPool pool,
+                 boolean offHeapEdges) {
+        this(nodes, heapArity, offHeapEdges);
+        if (node1_ids.length != node2_ids.length) {
+            throw new IllegalArgumentException("node1_ids and node2_ids must have the same length");
+        }
+        int[] neighborhoodWeights = this.neighborhoodsList.linkEdgesInParallel(node1_ids, node2_ids, pool);
+        for (int i = 0; i < nodes.length; i++) {
+            this.neighborhoodWeightHeap.setKeyWithoutCorrection(i, neighborhoodWeights[i]);
+        }
+        this.neighborhoodWeightHeap.buildHeap();
     }
 
 
@@ -47,15 +283,109 @@ public class Graph {
      * This method returns the node in the graph with the maximal neighborhood weight.
      * Note: nodes that have been removed from the graph using deleteNode are no longer in the graph.
      *
-     * time complexity: O(1).
+     * time complexity: O(1), or O(min(k * log(n), n + k)) if k changes of the lazy mode are not applied yet.
      *
      * @return a Node object representing the correct node. If there is no node in the graph, returns 'null'.
      */
     public Node maxNeighborhoodWeight(){
+        if (STATS_ENABLED) {
+            this.stats.maxQueries += 1;
+        }
+        if (this.getNumNodes() == 0) {
+            return null;
+        }
+        this.correctHeap();
+        return this.vertices[this.neighborhoodWeightHeap.max()];
+    }
+
+
+    /**
+     * This method returns the node in the graph with the maximal degree, which is maintained since
+     * setMaxDegreeTracking(true) was called.
+     *
+     * time complexity: O(1).
+     *
+     * @return the node with the maximal degree. If there is no node in the graph, returns 'null'.
+     * @throws IllegalStateException if the maximal degree is not maintained.
+     */
+    public Node maxDegree() {
+        if (this.degreeHeap == null) {
+            throw new IllegalStateException("the maximal degree is not maintained, call setMaxDegreeTracking(true)");
+        }
+        if (this.getNumNodes() == 0) {
+            return null;
+        }
+        return this.vertices[this.degreeHeap.max()];
+    }
+
+
+    /**
+     * This method returns the node in the graph with the minimal neighborhood weight, which is maintained since
+     * setMinNeighborhoodWeightTracking(true) was called.
+     *
+     * time complexity: O(1), or O(min(k * log(n), n + k)) if k changes of the lazy mode are not applied yet.
+     *
+     * @return the node with the minimal neighborhood weight. If there is no node in the graph, returns 'null'.
+     * @throws IllegalStateException if the minimal neighborhood weight is not maintained.
+     */
+    public Node minNeighborhoodWeight() {
+        if (this.minNeighborhoodWeightHeap == null) {
+            throw new IllegalStateException(
+                    "the minimal neighborhood weight is not maintained, call setMinNeighborhoodWeightTracking(true)");
+        }
         if (this.getNumNodes() == 0) {
             return null;
         }
-        return this.neighborhoodWeightHeap.max();
+        this.correctHeap();
+        return this.vertices[this.minNeighborhoodWeightHeap.max()];
+    }
+
+
+    /**
+     * This method returns the k nodes in the graph with the maximal neighborhood weights, by non-increasing
+     * neighborhood weight (or all the nodes, if there are less than k nodes). The graph is not changed.
+     *
+     * time complexity: O(k * log(k)).
+     *
+     * @param k - the number of nodes to return.
+     * @return an array of the (at most) k nodes with the maximal neighborhood weights.
+     */
+    public Node[] topK(int k) {
+        this.correctHeap();
+        int[] nodeNListIndices = new int[Math.max(0, Math.min(k, this.getNumNodes()))];
+        int count = this.neighborhoodWeightHeap.topK(nodeNListIndices.length, nodeNListIndices);
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = this.vertices[nodeNListIndices[i]];
+        }
+        return nodes;
+    }
+
+
+    /**
+     * This method writes the ids and the neighborhood weights of the k nodes in the graph with the maximal
+     * neighborhood weights, by non-increasing neighborhood weight, to the given arrays (or of all the nodes,
+     * if there are less than k nodes). Apart from the auxiliary heap, no objects are allocated,
+     * and the graph is not changed.
+     *
+     * time complexity: O(k * log(k)).
+     *
+     * @param k - the number of nodes to return, at most the length of the arrays.
+     * @param node_ids - an array to write the ids of the nodes to.
+     * @param neighborhoodWeights - an array to write the neighborhood weights of the nodes to, or 'null'.
+     * @return the number of nodes that were written to the arrays.
+     */
+    public int topK(int k, int[] node_ids, int[] neighborhoodWeights) {
+        this.correctHeap();
+        int count = this.neighborhoodWeightHeap.topK(Math.min(k, this.getNumNodes()), node_ids);
+        for (int i = 0; i < count; i++) {
+            int nodeNListIndex = node_ids[i];
+            node_ids[i] = this.vertices[nodeNListIndex].getId();
+            if (neighborhoodWeights != null) {
+                neighborhoodWeights[i] = this.neighborhoodWeightHeap.getKey(nodeNListIndex);
+            }
+        }
+        return count;
     }
 
 
@@ -69,874 +399,5166 @@ public class Graph {
      * Otherwise, the function returns -1.
      */
     public int getNeighborhoodWeight(int node_id){
-        LinkedList<HashTable.HashTableNode>.ListNode listNode = this.tableIdToRepresentation.find(node_id);
-        if (listNode == null) {
+        if (STATS_ENABLED) {
+            this.stats.weightQueries += 1;
+        }
+        int nodeNListIndex = this.tableIdToRepresentation.find(node_id);
+        if (nodeNListIndex == -1) {
             return -1;
         }
-        return listNode.item.heapNode.key;
+        int neighborhoodWeight = this.neighborhoodWeightHeap.getKey(nodeNListIndex);
+        if (this.numDirty > 0 && nodeNListIndex < this.pendingWeightDeltas.length) {
+            neighborhoodWeight += this.pendingWeightDeltas[nodeNListIndex];
+        }
+        return neighborhoodWeight;
     }
 
 
     /**
-     * This function adds an edge between the two nodes whose ids are specified.
-     * If one of these nodes is not in the graph, the function does nothing.
-     * The two nodes must be distinct; otherwise, the function does nothing.
-     * You may assume that if the two nodes are in the graph, there exists no edge between them prior to the call.
+     * Turns the lazy mode of the max-heap on or off. In the lazy mode, addEdge, deleteEdge and deleteNode only
+     * record the changes of the neighborhood weights of the neighbors in the dirty set, and the max-heap is corrected
+     * once when maxNeighborhoodWeight or topK is called: vertex by vertex if few vertices are dirty, or rebuilt
+     * bottom-up otherwise. getNeighborhoodWeight stays exact, since it adds the pending change to the key.
+     * Turning the lazy mode off corrects the heap. Note that an automatic compaction (see compactIfSparse) after
+     * deleteNode or deleteNodes also corrects the heap, so it flushes the dirty set even in the lazy mode.
      *
-     * time complexity: O(log(n)) expected.
+     * time complexity: O(1), or O(min(k * log(n), n + k)) when the lazy mode is turned off with k dirty vertices.
      *
-     * @param node1_id - the id of the first node.
-     * @param node2_id - the id of the second node.
-     * @return returns 'true' if the function added an edge, otherwise returns 'false'.
+     * @param lazy - 'true' to turn the lazy mode on, 'false' to turn it off.
      */
-    public boolean addEdge(int node1_id, int node2_id){
-        LinkedList<HashTable.HashTableNode>.ListNode listNode1 = this.tableIdToRepresentation.find(node1_id);
-        LinkedList<HashTable.HashTableNode>.ListNode listNode2 = this.tableIdToRepresentation.find(node2_id);
-        if (node1_id == node2_id || listNode1 == null || listNode2 == null) {
-            return false;
+    public void setLazyHeapCorrection(boolean lazy) {
+        this.lazyHeapCorrection = lazy;
+        if (!lazy) {
+            this.correctHeap();
         }
-        this.neighborhoodsList.createEdgeInNeighborList(node1_id, node2_id);
-        return true;
     }
 
 
     /**
-     * Given the id of a node in the graph, deletes the node of that id from the graph, if it exists.
+     * Turns the simple-graph mode on or off. In the simple-graph mode, addEdge and addEdges do nothing for a pair
+     * of nodes that already has an edge, which they find in the hash table of the edges. Turning the mode on
+     * deletes the parallel edges that are already in the graph (for example, of repeated pairs that were passed to
+     * the constructor), except the latest edge of every pair of nodes.
      *
-     * time complexity: O((d_v+1) * log(n)) expected.
+     * time complexity: O(1), or O(N + M + k * log(n)) expected when the mode is turned on, while N and M are the
+     *                  capacities of the arrays of the vertices and of the edges and k is the number of deleted edges.
      *
-     * @param node_id - the id of the node to delete.
-     * @return returns 'true' if the function deleted a node, otherwise returns 'false'
+     * @param simple - 'true' to turn the simple-graph mode on, 'false' to turn it off.
+     * @return the number of parallel edges that were deleted.
      */
-    public boolean deleteNode(int node_id){
-        HashTable.HashTableNode hashTableNode = tableIdToRepresentation.delete(node_id);
-        if (hashTableNode == null) {
-            return false;
+    public int setSimpleGraph(boolean simple) {
+        this.simpleGraph = simple;
+        if (!simple) {
+            return 0;
         }
-        neighborhoodsList.deleteNodeFromNeighborList(hashTableNode);
-        return true;
+        NeighborhoodsList list = this.neighborhoodsList;
+        int numDeleted = 0;
+        for (int nodeNListIndex = 0; nodeNListIndex < this.vertices.length; nodeNListIndex++) {
+            if (this.vertices[nodeNListIndex] == null) {
+                continue;
+            }
+            int edge = list.firstEdges[nodeNListIndex];
+            while (edge != NeighborhoodsList.NIL) {
+                int next = list.nextEdges.get(edge);
+                //Deletes the edge if it is not the latest edge between its vertices in the hash table of the edges.
+                int neighborNListIndex = list.neighbors.get(edge);
+                int latest = list.edgeIndex.find(EdgeIndex.key(nodeNListIndex, neighborNListIndex));
+                if (latest >> 1 != edge >> 1) {
+                    list.deleteEdgeFromNeighborList(edge);
+                    if (this.mutationLog != null) {
+                        this.mutationLog.append(MutationLog.DELETE_EDGE, this.vertices[nodeNListIndex].getId(),
+                                this.vertices[neighborNListIndex].getId());
+                    }
+                    numDeleted += 1;
+                }
+                edge = next;
+            }
+        }
+        return numDeleted;
     }
 
 
     /**
-     * Returns the number of nodes currently in the graph.
+     * Turns the maintenance of the vertex of maximal degree on or off. When it is on, the degrees are the keys of
+     * a second max-heap (degreeHeap), which is updated with every edge that is linked or unlinked, so maxDegree
+     * is O(1) and every edge costs O(log(n)) more. Turning it on builds the heap bottom-up.
      *
-     * time complexity: O(1).
+     * time complexity: O(N) when it is turned on, otherwise O(1).
      *
-     * @return the number of nodes in the graph.
+     * @param track - 'true' to maintain the vertex of maximal degree, 'false' to stop.
      */
-    public int getNumNodes() {
-        return this.neighborhoodWeightHeap.getSize();
+    public void setMaxDegreeTracking(boolean track) {
+        this.degreeHeap = track ? this.buildOrderingHeap(false) : null;
     }
 
 
     /**
-     * Returns the number of edges currently in the graph.
+     * Turns the maintenance of the vertex of minimal neighborhood weight on or off. When it is on, the negated
+     * neighborhood weights are the keys of a second max-heap (minNeighborhoodWeightHeap), which is changed together
+     * with the max-heap of the neighborhood weights, so minNeighborhoodWeight is O(1) and every change of
+     * a neighborhood weight costs O(log(n)) more. Turning it on builds the heap bottom-up.
      *
-     * time complexity: O(1).
+     * time complexity: O(N) when it is turned on, otherwise O(1).
      *
-     * @return the number of edges currently in the graph.
+     * @param track - 'true' to maintain the vertex of minimal neighborhood weight, 'false' to stop.
      */
-    public int getNumEdges() {
-        return this.neighborhoodsList.numEdges;
+    public void setMinNeighborhoodWeightTracking(boolean track) {
+        this.minNeighborhoodWeightHeap = track ? this.buildOrderingHeap(true) : null;
     }
 
 
-
     /**
-     * This class represents a node in the graph.
+     * Sets the ratio between the number of nodes and the capacity of the arrays of the vertices below which
+     * deleteNode and deleteNodes compact the graph (see compact), or turns the automatic compaction off if it is 0.
+     * The ratio is at most 0.5, so the doubling of the arrays by addNode right after a compaction does not trigger
+     * another one. Graphs whose arrays of the vertices have fewer than MIN_COMPACTION_CAPACITY cells are not
+     * compacted automatically. The ratio is not saved in snapshots.
+     *
+     * time complexity: O(1).
+     *
+     * @param ratio - the ratio, between 0 and 0.5.
      */
-    public static class Node{
-        /**
-         * The id of the node
-         */
-        public int id;
+    public void setCompactionRatio(double ratio) {
+        if (!(ratio >= 0 && ratio <= 0.5)) {
+            throw new IllegalArgumentException("the compaction ratio must be between 0 and 0.5");
+        }
+        this.compactionRatio = ratio;
+    }
 
-        /**
-         * The weight of the node
-         */
-        public int weight;
 
+    /**
+     * Builds a max-heap of the vertices of the graph, of the same arity as the max-heap of the neighborhood weights,
+     * whose keys are the degrees of the vertices or their negated neighborhood weights. The heap of the neighborhood
+     * weights is corrected first if the lazy mode left dirty vertices.
+     *
+     * time complexity: O(N).
+     *
+     * @param negatedNeighborhoodWeights - 'true' for the negated neighborhood weights, 'false' for the degrees.
+     * @return the new heap.
+     */
+    public MaxHeap buildOrderingHeap(boolean negatedNeighborhoodWeights) {
+        this.correctHeap();
+        MaxHeap heap = this.neighborhoodWeightHeap;
+        int[] heapVertices = new int[this.vertices.length];
+        int[] heapKeys = new int[this.vertices.length];
+        for (int i = 0; i < heap.getSize(); i++) {
+            int vertex = heap.vertexAt(i);
+            heapVertices[i] = vertex;
+            heapKeys[i] = negatedNeighborhoodWeights ? -heap.keyAt(i) : this.neighborhoodsList.degrees[vertex];
+        }
+        DaryMaxHeap ordering = new DaryMaxHeap(heap.getArity(), heapVertices, heapKeys, heap.getSize());
+        ordering.buildHeap();
+        return ordering;
+    }
 
-        /**
-         * Creates a new node object, given its id and its weight.
-         *
-         * time complexity: O(1).
-         *
-         * @param id - the id of the node.
-         * @param weight - the weight of the node.
-         */
-        public Node(int id, int weight){
-            this.id = id;
-            this.weight = weight;
+
+    /**
+     * Rebuilds bottom-up the max-heap of the neighborhood weights, and the max-heap of the negated neighborhood
+     * weights if it is maintained, after their keys were set without correction.
+     *
+     * time complexity: O(n).
+     */
+    public void buildNeighborhoodWeightHeaps() {
+        this.neighborhoodWeightHeap.buildHeap();
+        if (this.minNeighborhoodWeightHeap != null) {
+            this.minNeighborhoodWeightHeap.buildHeap();
         }
+    }
 
 
-        /**
-         * Returns the id of the node.
-         *
-         * time complexity: O(1).
-         *
-         * @return the id of the node.
-         */
-        public int getId(){
-            return this.id;
+    /**
+     * Applies all the changes of neighborhood weights in the dirty set to the max-heap, and empties the dirty set.
+     *
+     * time complexity: O(min(k * log(n), n + k)), while k is the size of the dirty set.
+     */
+    public void correctHeap() {
+        if (this.numDirty > 0) {
+            int count = this.numDirty;
+            this.numDirty = 0;
+            this.applyPendingWeightDeltas(this.dirtyNListIndices, count);
         }
+    }
 
 
-        /**
-         * Returns the weight of the node.
-         *
-         * time complexity: O(1).
-         *
-         * @return the weight of the node.
-         */
-        public int getWeight(){
-            return this.weight;
+    /**
+     * Adds a change of the neighborhood weight of a vertex to the dirty set, without changing the max-heap.
+     *
+     * time complexity: O(1) amortized.
+     *
+     * @param nodeNListIndex - the index of a vertex in the neighborhoods list.
+     * @param delta - a number to increase the neighborhood weight by (or to decrease by its absolute value).
+     */
+    public void addPendingWeightDelta(int nodeNListIndex, int delta) {
+        int[] deltas = this.pendingWeightDeltas();
+        if (deltas[nodeNListIndex] == 0) {
+            this.addToDirtySet(nodeNListIndex);
         }
+        deltas[nodeNListIndex] += delta;
     }
 
+
     /**
-     * This generic class implements specific necessary operations of the ADT list (and more) by a doubly linked list.
+     * Adds a vertex to the dirty set, and doubles the array of the set if it is full.
+     *
+     * time complexity: O(1) amortized.
+     *
+     * @param nodeNListIndex - the index of a vertex in the neighborhoods list.
      */
-    public static class LinkedList<T> {
-        /**
-         * The sentinel of the list, for more convenient implementation.
-         */
-        public ListNode sentinel;
+    public void addToDirtySet(int nodeNListIndex) {
+        if (this.dirtyNListIndices == null) {
+            this.dirtyNListIndices = new int[16];
+        } else if (this.numDirty == this.dirtyNListIndices.length) {
+            this.dirtyNListIndices = java.util.Arrays.copyOf(this.dirtyNListIndices, 2 * this.numDirty);
+        }
+        this.dirtyNListIndices[this.numDirty] = nodeNListIndex;
+        this.numDirty += 1;
+    }
+
+
+    /**
+     * Increases the neighborhood weight of a vertex by delta: in the max-heap, or in the dirty set in the lazy mode.
+     *
+     * time complexity: O(log(n)), or O(1) amortized in the lazy mode.
+     *
+     * @param nodeNListIndex - the index of a vertex in the neighborhoods list.
+     * @param delta - a non-negative number to increase by.
+     */
+    public void increaseNeighborhoodWeight(int nodeNListIndex, int delta) {
+        if (this.lazyHeapCorrection) {
+            this.addPendingWeightDelta(nodeNListIndex, delta);
+        } else {
+            this.neighborhoodWeightHeap.increaseNeighborhoodWeight(nodeNListIndex, delta);
+            if (this.minNeighborhoodWeightHeap != null) {
+                this.minNeighborhoodWeightHeap.decreaseNeighborhoodWeight(nodeNListIndex, delta);
+            }
+        }
+    }
+
+
+    /**
+     * Decreases the neighborhood weight of a vertex by delta: in the max-heap, or in the dirty set in the lazy mode.
+     *
+     * time complexity: O(log(n)), or O(1) amortized in the lazy mode.
+     *
+     * @param nodeNListIndex - the index of a vertex in the neighborhoods list.
+     * @param delta - a non-negative number to decrease by.
+     */
+    public void decreaseNeighborhoodWeight(int nodeNListIndex, int delta) {
+        if (this.lazyHeapCorrection) {
+            this.addPendingWeightDelta(nodeNListIndex, -delta);
+        } else {
+            this.neighborhoodWeightHeap.decreaseNeighborhoodWeight(nodeNListIndex, delta);
+            if (this.minNeighborhoodWeightHeap != null) {
+                this.minNeighborhoodWeightHeap.increaseNeighborhoodWeight(nodeNListIndex, delta);
+            }
+        }
+    }
+
+
+    /**
+     * Discards the pending change of the neighborhood weight of a deleted vertex, if there is one.
+     *
+     * time complexity: O(1).
+     *
+     * @param nodeNListIndex - the index of a deleted vertex in the neighborhoods list.
+     */
+    public void discardPendingWeightDelta(int nodeNListIndex) {
+        if (this.pendingWeightDeltas != null && nodeNListIndex < this.pendingWeightDeltas.length) {
+            this.pendingWeightDeltas[nodeNListIndex] = 0;
+        }
+    }
+
+
+    /**
+     * This function adds a node to the graph, with no edges. If a node with the same id is already in the graph,
+     * the function does nothing. The index of a deleted node in the neighborhoods list is reused if there is one,
+     * and the arrays of the graph are doubled when they are full.
+     *
+     * time complexity: O(log(n)) amortized expected.
+     *
+     * @param node - the node to add.
+     * @return returns 'true' if the function added the node, otherwise returns 'false'.
+     */
+    public boolean addNode(Node node) {
+        if (STATS_ENABLED) {
+            this.stats.addNodeCalls += 1;
+        }
+        if (this.tableIdToRepresentation.find(node.getId()) != -1) {
+            return false;
+        }
+        int nodeNListIndex = this.neighborhoodsList.allocateNListIndex();
+        if (nodeNListIndex >= this.vertices.length) {
+            this.vertices = java.util.Arrays.copyOf(this.vertices, this.neighborhoodsList.firstEdges.length);
+            this.neighborhoodWeightHeap.ensureCapacity(this.vertices.length);
+        }
+        this.beforeWrite(ReadSnapshot.VERTICES, this.vertices, nodeNListIndex);
+        this.vertices[nodeNListIndex] = node;
+        this.neighborhoodWeightHeap.insert(nodeNListIndex, node.getWeight());
+        if (this.degreeHeap != null) {
+            this.degreeHeap.insert(nodeNListIndex, 0);
+        }
+        if (this.minNeighborhoodWeightHeap != null) {
+            this.minNeighborhoodWeightHeap.insert(nodeNListIndex, -node.getWeight());
+        }
+        this.tableIdToRepresentation.insert(node.getId(), nodeNListIndex);
+        if (this.mutationLog != null) {
+            this.mutationLog.append(MutationLog.ADD_NODE, node.getId(), node.getWeight());
+        }
+        return true;
+    }
+
+
+    /**
+     * This function adds an edge between the two nodes whose ids are specified.
+     * If one of these nodes is not in the graph, the function does nothing.
+     * The two nodes must be distinct; otherwise, the function does nothing.
+     * You may assume that if the two nodes are in the graph, there exists no edge between them prior to the call.
+     * In the simple-graph mode this is checked: if there is an edge between the two nodes, the function does nothing.
+     *
+     * time complexity: O(log(n)) expected.
+     *
+     * @param node1_id - the id of the first node.
+     * @param node2_id - the id of the second node.
+     * @return returns 'true' if the function added an edge, otherwise returns 'false'.
+     */
+    public boolean addEdge(int node1_id, int node2_id){
+        if (STATS_ENABLED) {
+            this.stats.addEdgeCalls += 1;
+        }
+        if (node1_id == node2_id) {
+            return false;
+        }
+        int node1NListIndex = this.tableIdToRepresentation.find(node1_id);
+        int node2NListIndex = this.tableIdToRepresentation.find(node2_id);
+        if (node1NListIndex == -1 || node2NListIndex == -1) {
+            return false;
+        }
+        if (this.simpleGraph
+                && this.neighborhoodsList.findEdge(node1NListIndex, node2NListIndex) != NeighborhoodsList.NIL) {
+            return false;
+        }
+        this.neighborhoodsList.createEdgeInNeighborList(node1NListIndex, node2NListIndex);
+        if (this.mutationLog != null) {
+            this.mutationLog.append(MutationLog.ADD_EDGE, node1_id, node2_id);
+        }
+        return true;
+    }
+
+
+    /**
+     * This function adds the edges (node1_ids[i], node2_ids[i]) for every i, exactly as if addEdge was called
+     * on every pair by order (so in the simple-graph mode, a pair that repeats an earlier pair is rejected).
+     * The edges are linked first, and the max-heap is corrected once at the end: vertex by vertex if few vertices
+     * were changed, or rebuilt bottom-up otherwise.
+     *
+     * time complexity: O(k + min(k * log(n), n)) expected, while k is the number of pairs.
+     *
+     * @param node1_ids - the ids of the first nodes of the edges.
+     * @param node2_ids - the ids of the second nodes of the edges.
+     * @return an array whose i-th cell is 'true' if the function added the i-th edge, otherwise 'false'.
+     */
+    public boolean[] addEdges(int[] node1_ids, int[] node2_ids) {
+        if (node1_ids.length != node2_ids.length) {
+            throw new IllegalArgumentException("node1_ids and node2_ids must have the same length");
+        }
+        if (STATS_ENABLED) {
+            this.stats.addEdgeCalls += node1_ids.length;
+        }
+        boolean[] added = new boolean[node1_ids.length];
+        int[] deltas = this.pendingWeightDeltas();
+        int[] changedNListIndices = new int[2 * node1_ids.length];
+        int numChanged = 0;
+
+        for (int i = 0; i < node1_ids.length; i++) {
+            if (node1_ids[i] == node2_ids[i]) {
+                continue;
+            }
+            int node1NListIndex = this.tableIdToRepresentation.find(node1_ids[i]);
+            int node2NListIndex = this.tableIdToRepresentation.find(node2_ids[i]);
+            if (node1NListIndex == -1 || node2NListIndex == -1) {
+                continue;
+            }
+            if (this.simpleGraph
+                    && this.neighborhoodsList.findEdge(node1NListIndex, node2NListIndex) != NeighborhoodsList.NIL) {
+                continue;
+            }
+            this.neighborhoodsList.linkNewEdge(node1NListIndex, node2NListIndex);
+            added[i] = true;
+            if (this.mutationLog != null) {
+                this.mutationLog.append(MutationLog.ADD_EDGE, node1_ids[i], node2_ids[i]);
+            }
+
+            //Accumulates the changes of the neighborhood weights of the two nodes.
+            if (deltas[node1NListIndex] == 0) {
+                changedNListIndices[numChanged++] = node1NListIndex;
+            }
+            deltas[node1NListIndex] += this.vertices[node2NListIndex].getWeight();
+            if (deltas[node2NListIndex] == 0) {
+                changedNListIndices[numChanged++] = node2NListIndex;
+            }
+            deltas[node2NListIndex] += this.vertices[node1NListIndex].getWeight();
+        }
+
+        if (this.lazyHeapCorrection) {
+            for (int i = 0; i < numChanged; i++) {
+                this.addToDirtySet(changedNListIndices[i]);
+            }
+        } else {
+            this.applyPendingWeightDeltas(changedNListIndices, numChanged);
+        }
+        return added;
+    }
+
+
+    /**
+     * Returns the array of pending changes of neighborhood weights, and allocates (or extends) it if it does not
+     * cover all the indices in the neighborhoods list.
+     *
+     * time complexity: O(1), or O(n) when the array is allocated.
+     *
+     * @return the array of pending changes of neighborhood weights.
+     */
+    public int[] pendingWeightDeltas() {
+        int capacity = this.neighborhoodsList.firstEdges.length;
+        if (this.pendingWeightDeltas == null) {
+            this.pendingWeightDeltas = new int[capacity];
+        } else if (this.pendingWeightDeltas.length < capacity) {
+            this.pendingWeightDeltas = java.util.Arrays.copyOf(this.pendingWeightDeltas, capacity);
+        }
+        return this.pendingWeightDeltas;
+    }
+
+
+    /**
+     * Applies the pending changes of neighborhood weights of the given vertices to the max-heap, and clears them.
+     * A vertex may appear more than once. If the vertices are so many that correcting each of them costs more
+     * than building the heap, the keys are changed first and the heap is rebuilt bottom-up once.
+     *
+     * time complexity: O(min(k * log(n), n + k)), while k is count.
+     *
+     * @param nodeNListIndices - the indices in the neighborhoods list of the changed vertices.
+     * @param count - the number of changed vertices in nodeNListIndices.
+     */
+    public void applyPendingWeightDeltas(int[] nodeNListIndices, int count) {
+        int[] deltas = this.pendingWeightDeltas;
+        int heapSize = this.neighborhoodWeightHeap.getSize();
+        int heapHeight = 32 - Integer.numberOfLeadingZeros(heapSize);
+
+        if ((long) count * heapHeight > heapSize) {
+            this.setPendingWeightDeltasWithoutCorrection(nodeNListIndices, count);
+            this.buildNeighborhoodWeightHeaps();
+        } else {
+            for (int i = 0; i < count; i++) {
+                int nodeNListIndex = nodeNListIndices[i];
+                int delta = deltas[nodeNListIndex];
+                if (delta != 0) {
+                    this.neighborhoodWeightHeap.changeNeighborhoodWeight(nodeNListIndex, delta);
+                    if (this.minNeighborhoodWeightHeap != null) {
+                        this.minNeighborhoodWeightHeap.changeNeighborhoodWeight(nodeNListIndex, -delta);
+                    }
+                    deltas[nodeNListIndex] = 0;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds the pending changes of neighborhood weights of the given vertices to their keys in the max-heap,
+     * without correcting the heap, and clears them. A vertex may appear more than once, and a vertex without
+     * a pending change (which may have been deleted) is skipped.
+     *
+     * time complexity: O(k), while k is count.
+     *
+     * @param nodeNListIndices - the indices in the neighborhoods list of the changed vertices.
+     * @param count - the number of changed vertices in nodeNListIndices.
+     */
+    public void setPendingWeightDeltasWithoutCorrection(int[] nodeNListIndices, int count) {
+        int[] deltas = this.pendingWeightDeltas;
+        for (int i = 0; i < count; i++) {
+            int nodeNListIndex = nodeNListIndices[i];
+            if (deltas[nodeNListIndex] != 0) {
+                int key = this.neighborhoodWeightHeap.getKey(nodeNListIndex) + deltas[nodeNListIndex];
+                this.neighborhoodWeightHeap.setKeyWithoutCorrection(nodeNListIndex, key);
+                if (this.minNeighborhoodWeightHeap != null) {
+                    this.minNeighborhoodWeightHeap.setKeyWithoutCorrection(nodeNListIndex, -key);
+                }
+                deltas[nodeNListIndex] = 0;
+            }
+        }
+    }
+
+
+    /**
+     * This function deletes an edge between the two nodes whose ids are specified, if it exists.
+     * If there are several edges between the two nodes, only the latest one is deleted.
+     *
+     * time complexity: O(log(n)) expected.
+     *
+     * @param node1_id - the id of the first node.
+     * @param node2_id - the id of the second node.
+     * @return returns 'true' if the function deleted an edge, otherwise returns 'false'.
+     */
+    public boolean deleteEdge(int node1_id, int node2_id) {
+        if (STATS_ENABLED) {
+            this.stats.deleteEdgeCalls += 1;
+        }
+        if (node1_id == node2_id) {
+            return false;
+        }
+        int node1NListIndex = this.tableIdToRepresentation.find(node1_id);
+        int node2NListIndex = this.tableIdToRepresentation.find(node2_id);
+        if (node1NListIndex == -1 || node2NListIndex == -1) {
+            return false;
+        }
+        int edge = this.neighborhoodsList.findEdge(node1NListIndex, node2NListIndex);
+        if (edge == NeighborhoodsList.NIL) {
+            return false;
+        }
+        this.neighborhoodsList.deleteEdgeFromNeighborList(edge);
+        if (this.mutationLog != null) {
+            this.mutationLog.append(MutationLog.DELETE_EDGE, node1_id, node2_id);
+        }
+        return true;
+    }
+
+
+    /**
+     * Given the id of a node in the graph, deletes the node of that id from the graph, if it exists.
+     * If the deletion leaves the graph sparse, the graph is compacted automatically (see compactIfSparse), which is
+     * a pause of O(N + M) and corrects the heap (also in the lazy mode).
+     *
+     * time complexity: O((d_v+1) * log(n)) expected amortized, while a single call that compacts the graph takes
+     *                  O(N + M) expected, N and M being the capacities of the arrays of the vertices and of the edges.
+     *                  The cost of a compaction is charged to the operations since the previous one: at least
+     *                  (1 - compactionRatio) of the N vertices were deleted in between, and the edge arrays only
+     *                  grew beyond the edges that the previous compaction kept by additions of edges.
+     *
+     * @param node_id - the id of the node to delete.
+     * @return returns 'true' if the function deleted a node, otherwise returns 'false'
+     */
+    public boolean deleteNode(int node_id){
+        if (STATS_ENABLED) {
+            this.stats.deleteNodeCalls += 1;
+        }
+        int nodeNListIndex = tableIdToRepresentation.delete(node_id);
+        if (nodeNListIndex == -1) {
+            return false;
+        }
+        neighborhoodsList.deleteNodeFromNeighborList(nodeNListIndex);
+        if (this.mutationLog != null) {
+            this.mutationLog.append(MutationLog.DELETE_NODE, node_id, 0);
+        }
+        this.compactIfSparse();
+        return true;
+    }
+
+
+    /**
+     * Given ids of nodes, deletes the nodes of these ids from the graph, if they exist, exactly as if deleteNode
+     * was called on every id by order. The edges of all the deleted nodes are unlinked first (an edge between two
+     * deleted nodes is unlinked once), the weight changes of every surviving neighbor are accumulated, and the
+     * max-heap is corrected once at the end: node by node if few nodes were changed, or compacted and rebuilt
+     * bottom-up otherwise. As in deleteNode, the graph may be compacted automatically at the end, which is a pause
+     * of O(N + M) and corrects the heap (also in the lazy mode).
+     *
+     * time complexity: O(k + D + min((k + c) * log(n), n)) expected amortized, while k is the number of ids,
+     *                  D is the sum of the degrees of the deleted nodes and c is the number of their surviving neighbors.
+     *                  A single call that compacts the graph takes O(N + M) expected more, N and M being the
+     *                  capacities of the arrays of the vertices and of the edges.
+     *
+     * @param node_ids - the ids of the nodes to delete.
+     * @return an array whose i-th cell is 'true' if the function deleted the node of the i-th id, otherwise 'false'.
+     */
+    public boolean[] deleteNodes(int[] node_ids) {
+        if (STATS_ENABLED) {
+            this.stats.deleteNodeCalls += node_ids.length;
+        }
+        boolean[] deleted = new boolean[node_ids.length];
+        int[] deletedWeights = new int[node_ids.length];
+        int[] deletedNListIndices = new int[node_ids.length];
+        int numDeleted = 0;
+        int sumDegrees = 0;
+        int[] deltas = this.pendingWeightDeltas();
+
+        //Removes the nodes from the hash table, and marks them as deleted by their node pointers.
+        for (int i = 0; i < node_ids.length; i++) {
+            int nodeNListIndex = this.tableIdToRepresentation.delete(node_ids[i]);
+            if (nodeNListIndex == -1) {
+                continue;
+            }
+            deleted[i] = true;
+            if (this.mutationLog != null) {
+                this.mutationLog.append(MutationLog.DELETE_NODE, node_ids[i], 0);
+            }
+            deletedNListIndices[numDeleted] = nodeNListIndex;
+            deletedWeights[numDeleted] = this.vertices[nodeNListIndex].getWeight();
+            this.beforeWrite(ReadSnapshot.VERTICES, this.vertices, nodeNListIndex);
+            this.vertices[nodeNListIndex] = null;
+            if (this.degreeHeap != null) {
+                this.degreeHeap.delete(nodeNListIndex);
+            }
+            deltas[nodeNListIndex] = 0;
+            sumDegrees += this.neighborhoodsList.degrees[nodeNListIndex];
+            if (STATS_ENABLED) {
+                this.stats.recordDeletedNode(this.neighborhoodsList.degrees[nodeNListIndex]);
+            }
+            numDeleted += 1;
+        }
+
+        //Unlinks the edges of the deleted nodes, and accumulates the weight changes of their surviving neighbors.
+        int[] changedNListIndices = new int[sumDegrees];
+        int numChanged = 0;
+        for (int i = 0; i < numDeleted; i++) {
+            int weight = deletedWeights[i];
+            int nodeNListIndex = deletedNListIndices[i];
+            int edge = this.neighborhoodsList.firstEdges[nodeNListIndex];
+            while (edge != NeighborhoodsList.NIL) {
+                int next = this.neighborhoodsList.nextEdges.get(edge);
+                int neighborNListIndex = this.neighborhoodsList.neighbors.get(edge);
+                this.neighborhoodsList.removeEdge(edge);
+
+                if (this.vertices[neighborNListIndex] != null && weight != 0) {
+                    if (deltas[neighborNListIndex] == 0) {
+                        changedNListIndices[numChanged++] = neighborNListIndex;
+                    }
+                    deltas[neighborNListIndex] -= weight;
+                }
+                edge = next;
+            }
+            this.beforeWrite(ReadSnapshot.FIRST_EDGES, this.neighborhoodsList.firstEdges, nodeNListIndex);
+            this.beforeWrite(ReadSnapshot.DEGREES, this.neighborhoodsList.degrees, nodeNListIndex);
+            this.neighborhoodsList.firstEdges[nodeNListIndex] = NeighborhoodsList.NIL;
+            this.neighborhoodsList.degrees[nodeNListIndex] = 0;
+        }
+
+        //Corrects the max-heap once.
+        int heapSize = this.neighborhoodWeightHeap.getSize();
+        int heapHeight = 32 - Integer.numberOfLeadingZeros(heapSize);
+        if ((long) (numDeleted + numChanged) * heapHeight > heapSize) {
+            for (int i = 0; i < numDeleted; i++) {
+                this.neighborhoodWeightHeap.deleteWithoutCorrection(deletedNListIndices[i]);
+                if (this.minNeighborhoodWeightHeap != null) {
+                    this.minNeighborhoodWeightHeap.deleteWithoutCorrection(deletedNListIndices[i]);
+                }
+            }
+            this.setPendingWeightDeltasWithoutCorrection(changedNListIndices, numChanged);
+            this.setPendingWeightDeltasWithoutCorrection(this.dirtyNListIndices, this.numDirty);
+            this.numDirty = 0;
+            this.buildNeighborhoodWeightHeaps();
+        } else {
+            for (int i = 0; i < numDeleted; i++) {
+                this.neighborhoodWeightHeap.delete(deletedNListIndices[i]);
+                if (this.minNeighborhoodWeightHeap != null) {
+                    this.minNeighborhoodWeightHeap.delete(deletedNListIndices[i]);
+                }
+            }
+            if (this.lazyHeapCorrection) {
+                for (int i = 0; i < numChanged; i++) {
+                    this.addToDirtySet(changedNListIndices[i]);
+                }
+            } else {
+                this.applyPendingWeightDeltas(changedNListIndices, numChanged);
+            }
+        }
+
+        for (int i = 0; i < numDeleted; i++) {
+            this.neighborhoodsList.freeNListIndex(deletedNListIndices[i]);
+        }
+        this.compactIfSparse();
+        return deleted;
+    }
+
+
+    /**
+     * Compacts the graph if the automatic compaction is on, the arrays of the vertices have at least
+     * MIN_COMPACTION_CAPACITY cells, and the nodes in the graph use fewer than compactionRatio of them.
+     * Since the arrays fit the nodes after a compaction, the next one is only after most of them are deleted.
+     *
+     * time complexity: O(1), or the time complexity of compact if the graph is compacted.
+     *
+     * @return 'true' if the graph was compacted, otherwise 'false'.
+     */
+    public boolean compactIfSparse() {
+        int capacity = this.vertices.length;
+        if (capacity < MIN_COMPACTION_CAPACITY || this.getNumNodes() >= this.compactionRatio * capacity) {
+            return false;
+        }
+        this.compact();
+        return true;
+    }
+
+
+    /**
+     * Renumbers the vertices and the pairs of cells of the edges densely, by their order, and shrinks the arrays of
+     * the vertices, the edge arrays, the max-heaps and the two hash tables to fit the nodes and the edges that are in
+     * the graph (the free indices and the free list of the edges are emptied). The neighbors lists, the order of the
+     * neighbors in every list, the chains of the parallel edges and the order of every max-heap are kept, so only
+     * the indices change. All the arrays are new, so the open read snapshots, which keep the old arrays, stay valid.
+     * The heap is corrected first if the lazy mode left dirty vertices.
+     *
+     * time complexity: O(N + M) expected, while N and M are the capacities of the arrays of the vertices and of
+     *                  the edges before the compaction.
+     */
+    public void compact() {
+        this.correctHeap();
+        this.pendingWeightDeltas = null;
+        this.dirtyNListIndices = null;
+        NeighborhoodsList list = this.neighborhoodsList;
+        int numNodes = this.getNumNodes();
+
+        //Numbers the pairs of cells of the edges by their order, skipping the pairs in the free list.
+        int[] newPairs = new int[list.usedEdges / 2];
+        for (int edge = list.freeEdges; edge != NeighborhoodsList.NIL; edge = list.nextEdges.get(edge)) {
+            newPairs[edge >> 1] = NeighborhoodsList.NIL;
+        }
+        int numPairs = 0;
+        for (int pair = 0; pair < newPairs.length; pair++) {
+            if (newPairs[pair] != NeighborhoodsList.NIL) {
+                newPairs[pair] = numPairs;
+                numPairs += 1;
+            }
+        }
+
+        //Numbers the vertices of the nodes in the graph by their order, and copies their neighbors lists.
+        int[] newNListIndices = new int[list.usedNListIndices];
+        Node[] newVertices = new Node[numNodes];
+        int[] firstEdges = new int[numNodes];
+        int[] degrees = new int[numNodes];
+        IdIndex idIndex = new IdIndex(numNodes);
+        int numVertices = 0;
+        for (int nodeNListIndex = 0; nodeNListIndex < list.usedNListIndices; nodeNListIndex++) {
+            Node node = this.vertices[nodeNListIndex];
+            if (node == null) {
+                newNListIndices[nodeNListIndex] = NeighborhoodsList.NIL;
+                continue;
+            }
+            newNListIndices[nodeNListIndex] = numVertices;
+            newVertices[numVertices] = node;
+            firstEdges[numVertices] = renumberEdge(newPairs, list.firstEdges[nodeNListIndex]);
+            degrees[numVertices] = list.degrees[nodeNListIndex];
+            idIndex.insert(node.getId(), numVertices);
+            numVertices += 1;
+        }
+
+        //Copies the edges to their new cells.
+        int edgesCapacity = Math.max(16, 2 * numPairs);
+        IntArray neighbors = new IntArray(edgesCapacity, list.offHeap);
+        IntArray nextEdges = new IntArray(edgesCapacity, list.offHeap);
+        IntArray prevEdges = new IntArray(edgesCapacity, list.offHeap);
+        IntArray parallelEdges = new IntArray(edgesCapacity / 2, list.offHeap);
+        for (int pair = 0; pair < newPairs.length; pair++) {
+            int newPair = newPairs[pair];
+            if (newPair == NeighborhoodsList.NIL) {
+                continue;
+            }
+            for (int cell = 0; cell < 2; cell++) {
+                int edge = 2 * pair + cell;
+                int newEdge = 2 * newPair + cell;
+                neighbors.set(newEdge, newNListIndices[list.neighbors.get(edge)]);
+                nextEdges.set(newEdge, renumberEdge(newPairs, list.nextEdges.get(edge)));
+                prevEdges.set(newEdge, renumberEdge(newPairs, list.prevEdges.get(edge)));
+            }
+            parallelEdges.set(newPair, renumberEdge(newPairs, list.parallelEdges.get(pair)));
+        }
+        EdgeIndex edgeIndex = new EdgeIndex(list.edgeIndex.size, list.offHeap);
+        edgeIndex.stats = this.stats;
+        for (int i = 0; i < list.edgeIndex.keys.length; i++) {
+            int latest = list.edgeIndex.values.get(i);
+            if (latest != EdgeIndex.EMPTY) {
+                int edge = renumberEdge(newPairs, latest);
+                edgeIndex.put(EdgeIndex.key(neighbors.get(edge), neighbors.get(edge ^ 1)), edge);
+            }
+        }
+
+        list.neighbors = neighbors;
+        list.nextEdges = nextEdges;
+        list.prevEdges = prevEdges;
+        list.parallelEdges = parallelEdges;
+        list.edgeIndex = edgeIndex;
+        list.freeEdges = NeighborhoodsList.NIL;
+        list.usedEdges = 2 * numPairs;
+        list.firstEdges = firstEdges;
+        list.degrees = degrees;
+        list.usedNListIndices = numNodes;
+        list.freeNListIndices = new int[4];
+        list.numFreeNListIndices = 0;
+        this.vertices = newVertices;
+        idIndex.stats = this.stats;
+        idIndex.snapshots = this.snapshotRegistry;
+        this.tableIdToRepresentation = idIndex;
+
+        //Renumbers the max-heaps, in the same order.
+        DaryMaxHeap heap = renumberHeap(this.neighborhoodWeightHeap, newNListIndices, numNodes);
+        heap.stats = this.stats;
+        heap.setSnapshotRegistry(this.snapshotRegistry);
+        this.neighborhoodWeightHeap = heap;
+        if (this.degreeHeap != null) {
+            this.degreeHeap = renumberHeap(this.degreeHeap, newNListIndices, numNodes);
+        }
+        if (this.minNeighborhoodWeightHeap != null) {
+            this.minNeighborhoodWeightHeap = renumberHeap(this.minNeighborhoodWeightHeap, newNListIndices, numNodes);
+        }
+    }
+
+
+    /**
+     * Returns the new cell of an edge by the new numbers of the pairs of cells.
+     *
+     * time complexity: O(1).
+     *
+     * @param newPairs - the new number of every pair of cells.
+     * @param edge - a cell of an edge, or NIL.
+     * @return the new cell of the edge, or NIL.
+     */
+    public static int renumberEdge(int[] newPairs, int edge) {
+        return edge == NeighborhoodsList.NIL ? NeighborhoodsList.NIL : (newPairs[edge >> 1] << 1) | (edge & 1);
+    }
+
+
+    /**
+     * Returns a copy of a max-heap, of the same arity and in the same order, whose vertices are renumbered.
+     *
+     * time complexity: O(n + capacity).
+     *
+     * @param heap - the max-heap.
+     * @param newNListIndices - the new index of every vertex.
+     * @param capacity - the number of indices in the neighborhoods list after the renumbering.
+     * @return the renumbered max-heap.
+     */
+    public static DaryMaxHeap renumberHeap(MaxHeap heap, int[] newNListIndices, int capacity) {
+        int[] heapVertices = new int[capacity];
+        int[] heapKeys = new int[capacity];
+        for (int i = 0; i < heap.getSize(); i++) {
+            heapVertices[i] = newNListIndices[heap.vertexAt(i)];
+            heapKeys[i] = heap.keyAt(i);
+        }
+        return new DaryMaxHeap(heap.getArity(), heapVertices, heapKeys, heap.getSize());
+    }
+
+
+    /**
+     * Given the id of a node in the graph, changes the weight of that node, if it exists. The node is replaced by
+     * a new node object, so the node objects that were returned before keep the old weight. The change of the weight
+     * is accumulated for the node itself and for every neighbor in one pass over the neighbors list of the node,
+     * and the max-heap is corrected once at the end: vertex by vertex if few vertices were changed, or rebuilt
+     * bottom-up otherwise (as in addEdges). If the weight is unchanged, nothing is replaced or logged.
+     *
+     * time complexity: O(d_v + min(d_v * log(n), n)) expected.
+     *
+     * @param node_id - the id of the node.
+     * @param newWeight - the new weight of the node.
+     * @return returns 'true' if the function changed the weight of a node, otherwise returns 'false'.
+     */
+    public boolean updateNodeWeight(int node_id, int newWeight) {
+        int nodeNListIndex = this.tableIdToRepresentation.find(node_id);
+        if (nodeNListIndex == -1) {
+            return false;
+        }
+        int delta = newWeight - this.vertices[nodeNListIndex].getWeight();
+        if (delta == 0) {
+            return true;
+        }
+        this.beforeWrite(ReadSnapshot.VERTICES, this.vertices, nodeNListIndex);
+        this.vertices[nodeNListIndex] = new Node(node_id, newWeight);
+        if (this.mutationLog != null) {
+            this.mutationLog.append(MutationLog.UPDATE_NODE_WEIGHT, node_id, newWeight);
+        }
+
+        //Accumulates the change of the neighborhood weight of the node and of every neighbor
+        //(a neighbor of several parallel edges is changed once per edge).
+        int[] deltas = this.pendingWeightDeltas();
+        int[] changedNListIndices = new int[this.neighborhoodsList.degrees[nodeNListIndex] + 1];
+        int numChanged = 0;
+        if (deltas[nodeNListIndex] == 0) {
+            changedNListIndices[numChanged++] = nodeNListIndex;
+        }
+        deltas[nodeNListIndex] += delta;
+        int edge = this.neighborhoodsList.firstEdges[nodeNListIndex];
+        while (edge != NeighborhoodsList.NIL) {
+            int neighborNListIndex = this.neighborhoodsList.neighbors.get(edge);
+            if (deltas[neighborNListIndex] == 0) {
+                changedNListIndices[numChanged++] = neighborNListIndex;
+            }
+            deltas[neighborNListIndex] += delta;
+            edge = this.neighborhoodsList.nextEdges.get(edge);
+        }
+
+        if (this.lazyHeapCorrection) {
+            for (int i = 0; i < numChanged; i++) {
+                this.addToDirtySet(changedNListIndices[i]);
+            }
+        } else {
+            this.applyPendingWeightDeltas(changedNListIndices, numChanged);
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns whether there is an edge between the two nodes whose ids are specified, by the hash table of the edges.
+     *
+     * time complexity: O(1) expected.
+     *
+     * @param node1_id - the id of the first node.
+     * @param node2_id - the id of the second node.
+     * @return returns 'true' if both nodes are in the graph and there is an edge between them, otherwise 'false'.
+     */
+    public boolean hasEdge(int node1_id, int node2_id) {
+        if (node1_id == node2_id) {
+            return false;
+        }
+        int node1NListIndex = this.tableIdToRepresentation.find(node1_id);
+        int node2NListIndex = this.tableIdToRepresentation.find(node2_id);
+        if (node1NListIndex == -1 || node2NListIndex == -1) {
+            return false;
+        }
+        return this.neighborhoodsList.findEdge(node1NListIndex, node2NListIndex) != NeighborhoodsList.NIL;
+    }
+
+
+    /**
+     * Given the id of a node in the graph, returns the degree of that node (the number of its edges).
+     *
+     * time complexity: O(1) expected.
+     *
+     * @param node_id - the id of the node.
+     * @return the degree of the node of id 'node_id' if such a node exists in the graph, otherwise -1.
+     */
+    public int degree(int node_id) {
+        int nodeNListIndex = this.tableIdToRepresentation.find(node_id);
+        if (nodeNListIndex == -1) {
+            return -1;
+        }
+        return this.neighborhoodsList.degrees[nodeNListIndex];
+    }
+
+
+    /**
+     * Given the id of a node in the graph, passes the id of every neighbor of that node to the action, from the
+     * latest edge to the earliest one (a neighbor of several parallel edges is passed once per edge).
+     * The action must not change the graph.
+     *
+     * time complexity: O(d_v) expected, in addition to the action.
+     *
+     * @param node_id - the id of the node.
+     * @param action - the action to perform on the id of every neighbor.
+     * @return returns 'true' if the node is in the graph, otherwise returns 'false'.
+     */
+    public boolean forEachNeighbor(int node_id, IntConsumer action) {
+        int nodeNListIndex = this.tableIdToRepresentation.find(node_id);
+        if (nodeNListIndex == -1) {
+            return false;
+        }
+        NeighborhoodsList list = this.neighborhoodsList;
+        for (int edge = list.firstEdges[nodeNListIndex]; edge != NeighborhoodsList.NIL;
+             edge = list.nextEdges.get(edge)) {
+            action.accept(this.vertices[list.neighbors.get(edge)].getId());
+        }
+        return true;
+    }
+
+
+    /**
+     * Creates a cursor over the neighbors of the nodes in the graph, which can be reused for many nodes.
+     *
+     * time complexity: O(1).
+     *
+     * @return a new cursor, which is not positioned on any node.
+     */
+    public NeighborCursor neighborCursor() {
+        return new NeighborCursor();
+    }
+
+
+    /**
+     * Takes a point-in-time read snapshot of the neighborhood weights and of the neighbors lists of the graph, which
+     * shares the arrays of the graph: the graph copies a chunk of an array only before it writes to that chunk for
+     * the first time after the snapshot. The snapshot may be read by other threads while the graph keeps changing,
+     * and it should be closed when it is no longer needed. The heap is corrected first if the lazy mode left
+     * dirty vertices.
+     *
+     * time complexity: O(1), or O(min(k * log(n), n + k)) if k changes of the lazy mode are not applied yet.
+     *
+     * @return the snapshot.
+     */
+    public ReadSnapshot snapshot() {
+        this.correctHeap();
+        if (this.snapshotRegistry == null) {
+            new SnapshotRegistry(this);
+        }
+        ReadSnapshot snapshot = new ReadSnapshot(this);
+        this.snapshotRegistry.add(snapshot);
+        return snapshot;
+    }
+
+
+    /**
+     * The write barrier of the open read snapshots: must be called before an array that a snapshot may share
+     * is written at an index.
+     *
+     * time complexity: O(1) if there are no open snapshots, otherwise the time complexity of
+     *                  SnapshotRegistry.beforeWrite.
+     *
+     * @param array - the id of the array in ReadSnapshot.
+     * @param live - the array.
+     * @param index - the index that is about to be written.
+     */
+    public void beforeWrite(int array, Object live, int index) {
+        if (this.snapshotRegistry != null) {
+            this.snapshotRegistry.beforeWrite(array, live, index);
+        }
+    }
+
+
+    /**
+     * Returns the number of nodes currently in the graph.
+     *
+     * time complexity: O(1).
+     *
+     * @return the number of nodes in the graph.
+     */
+    public int getNumNodes() {
+        return this.neighborhoodWeightHeap.getSize();
+    }
+
+
+    /**
+     * Returns the number of edges currently in the graph.
+     *
+     * time complexity: O(1).
+     *
+     * @return the number of edges currently in the graph.
+     */
+    public int getNumEdges() {
+        return this.neighborhoodsList.numEdges;
+    }
+
+
+    /**
+     * Attaches a log that every following successful mutation is appended to, or detaches the log if it is 'null'.
+     * The log is not closed when it is detached.
+     *
+     * time complexity: O(1).
+     *
+     * @param log - the log to attach, or 'null'.
+     */
+    public void setMutationLog(MutationLog log) {
+        this.mutationLog = log;
+    }
+
+
+    /**
+     * Registers the internal counters of the graph in the platform MBean server, as the MXBean
+     * "tau.ds.graph:type=GraphStats,name=" + name, so they can be read by any JMX client.
+     *
+     * time complexity: O(1).
+     *
+     * @param name - the name of the graph in the MBean name.
+     * @return the name that the MXBean was registered with.
+     * @throws JMException if the name is not valid, or it is already registered.
+     * @throws IllegalStateException if the counters are disabled (see STATS_ENABLED).
+     */
+    public ObjectName registerStatsMBean(String name) throws JMException {
+        if (this.stats == null) {
+            throw new IllegalStateException("the counters are disabled, run with -Dgraph.stats=true");
+        }
+        ObjectName objectName = new ObjectName("tau.ds.graph:type=GraphStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this.stats, objectName);
+        return objectName;
+    }
+
+
+    /**
+     * Saves the full state of the graph to a file, in the little-endian layout of version SNAPSHOT_VERSION:
+     * the header, then the arrays of the vertices (ids, weights, and the stack of free indices), of the neighbors
+     * lists, of the max-heap (in heap order), of the hash table of the ids and of the hash table of the edges.
+     * The heap is corrected first if the lazy mode left dirty vertices.
+     *
+     * time complexity: O(N + M), while N and M are the capacities of the arrays of the vertices and of the edges.
+     *
+     * @param path - the path of the file, which is created or overwritten.
+     * @throws IOException if the file cannot be written.
+     */
+    public void saveSnapshot(Path path) throws IOException {
+        this.correctHeap();
+        NeighborhoodsList list = this.neighborhoodsList;
+        MaxHeap heap = this.neighborhoodWeightHeap;
+        int capacity = list.firstEdges.length;
+        EdgeIndex edgeIndex = list.edgeIndex;
+
+        try (SnapshotWriter writer = new SnapshotWriter(path)) {
+            writer.writeInt(SNAPSHOT_MAGIC);
+            writer.writeInt(SNAPSHOT_VERSION);
+            //The modes: bit 0 is the lazy mode, bit 1 is the simple-graph mode, bit 2 is the maintenance of the
+            //maximal degree, bit 3 is the maintenance of the minimal neighborhood weight and bit 4 is the off-heap
+            //storage of the edges.
+            writer.writeInt((this.lazyHeapCorrection ? 1 : 0) | (this.simpleGraph ? 2 : 0)
+                    | (this.degreeHeap != null ? 4 : 0) | (this.minNeighborhoodWeightHeap != null ? 8 : 0)
+                    | (list.offHeap ? 16 : 0));
+            writer.writeInt(heap.getArity());
+            writer.writeInt(capacity);
+            writer.writeInt(list.usedNListIndices);
+            writer.writeInt(list.numFreeNListIndices);
+            writer.writeInt(list.usedEdges);
+            writer.writeInt(list.freeEdges);
+            writer.writeInt(list.numEdges);
+            writer.writeInt(heap.getSize());
+            writer.writeInt(this.tableIdToRepresentation.keys.length);
+            writer.writeInt(this.tableIdToRepresentation.size);
+            writer.writeInt(this.tableIdToRepresentation.a);
+            writer.writeInt(this.tableIdToRepresentation.shift);
+            writer.writeInt(edgeIndex.keys.length);
+            writer.writeInt(edgeIndex.size);
+            writer.writeInt(edgeIndex.shift);
+            writer.writeLong(edgeIndex.a);
+
+            //The ids and the weights of the vertices (zeros for deleted vertices).
+            for (int i = 0; i < capacity; i++) {
+                writer.writeInt(this.vertices[i] == null ? 0 : this.vertices[i].getId());
+            }
+            for (int i = 0; i < capacity; i++) {
+                writer.writeInt(this.vertices[i] == null ? 0 : this.vertices[i].getWeight());
+            }
+            writer.writeInts(list.freeNListIndices, 0, list.numFreeNListIndices);
+
+            writer.writeInts(list.firstEdges, 0, capacity);
+            writer.writeInts(list.degrees, 0, capacity);
+            writer.writeInts(list.neighbors, 0, list.usedEdges);
+            writer.writeInts(list.nextEdges, 0, list.usedEdges);
+            writer.writeInts(list.prevEdges, 0, list.usedEdges);
+            writer.writeInts(list.parallelEdges, 0, list.usedEdges / 2);
+
+            for (int i = 0; i < heap.getSize(); i++) {
+                writer.writeInt(heap.vertexAt(i));
+            }
+            for (int i = 0; i < heap.getSize(); i++) {
+                writer.writeInt(heap.keyAt(i));
+            }
+
+            writer.writeInts(this.tableIdToRepresentation.keys, 0, this.tableIdToRepresentation.keys.length);
+            writer.writeInts(this.tableIdToRepresentation.values, 0, this.tableIdToRepresentation.values.length);
+            writer.writeLongs(edgeIndex.keys, 0, edgeIndex.keys.length);
+            writer.writeInts(edgeIndex.values, 0, edgeIndex.values.length);
+        }
+    }
+
+
+    /**
+     * Loads a graph from a file that saveSnapshot wrote. The file is read through memory maps of a FileChannel,
+     * and every array is copied in bulk, so no edge is inserted and no heap vertex is sifted again.
+     * Only the node objects of the vertices and the positions of the vertices in the heap are recreated.
+     *
+     * time complexity: O(N + M), while N and M are the capacities of the arrays of the vertices and of the edges.
+     *
+     * @param path - the path of the file.
+     * @return the graph that was saved to the file.
+     * @throws IOException if the file cannot be read, or it is not a snapshot of a supported version.
+     */
+    public static Graph loadSnapshot(Path path) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(path)) {
+            ByteBuffer header = reader.map(SNAPSHOT_HEADER_SIZE);
+            if (header.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("not a graph snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("unsupported graph snapshot version " + version + ": " + path);
+            }
+            int flags = header.getInt();
+            int heapArity = header.getInt();
+            int capacity = header.getInt();
+            int usedNListIndices = header.getInt();
+            int numFreeNListIndices = header.getInt();
+            int usedEdges = header.getInt();
+            int freeEdges = header.getInt();
+            int numEdges = header.getInt();
+            int heapSize = header.getInt();
+            int idIndexLength = header.getInt();
+            int idIndexSize = header.getInt();
+            int idIndexA = header.getInt();
+            int idIndexShift = header.getInt();
+            int edgeIndexLength = header.getInt();
+            int edgeIndexSize = header.getInt();
+            int edgeIndexShift = header.getInt();
+            long edgeIndexA = header.getLong();
+
+            boolean offHeapEdges = (flags & 16) != 0;
+            Graph graph = new Graph(new Node[0], heapArity, offHeapEdges);
+            graph.lazyHeapCorrection = (flags & 1) != 0;
+            graph.simpleGraph = (flags & 2) != 0;
+            int[] ids = reader.readInts(capacity, capacity);
+            int[] weights = reader.readInts(capacity, capacity);
+
+            NeighborhoodsList list = graph.neighborhoodsList;
+            list.usedNListIndices = usedNListIndices;
+            list.numFreeNListIndices = numFreeNListIndices;
+            list.freeNListIndices = reader.readInts(numFreeNListIndices, Math.max(4, numFreeNListIndices));
+            list.firstEdges = reader.readInts(capacity, capacity);
+            list.degrees = reader.readInts(capacity, capacity);
+            int edgesCapacity = Math.max(16, usedEdges);
+            list.neighbors = reader.readIntArray(usedEdges, edgesCapacity, offHeapEdges);
+            list.nextEdges = reader.readIntArray(usedEdges, edgesCapacity, offHeapEdges);
+            list.prevEdges = reader.readIntArray(usedEdges, edgesCapacity, offHeapEdges);
+            list.parallelEdges = reader.readIntArray(usedEdges / 2, edgesCapacity / 2, offHeapEdges);
+            list.usedEdges = usedEdges;
+            list.freeEdges = freeEdges;
+            list.numEdges = numEdges;
+
+            int[] heapVertices = reader.readInts(heapSize, capacity);
+            int[] heapKeys = reader.readInts(heapSize, capacity);
+            DaryMaxHeap heap = new DaryMaxHeap(heapArity, heapVertices, heapKeys, heapSize);
+            heap.stats = graph.stats;
+            graph.neighborhoodWeightHeap = heap;
+
+            //Recreates the node objects of the vertices in the heap (the other vertices are deleted).
+            graph.vertices = new Node[capacity];
+            for (int i = 0; i < heapSize; i++) {
+                int vertex = heapVertices[i];
+                graph.vertices[vertex] = new Node(ids[vertex], weights[vertex]);
+            }
+
+            IdIndex idIndex = graph.tableIdToRepresentation;
+            idIndex.keys = reader.readInts(idIndexLength, idIndexLength);
+            idIndex.values = reader.readInts(idIndexLength, idIndexLength);
+            idIndex.size = idIndexSize;
+            idIndex.a = idIndexA;
+            idIndex.shift = idIndexShift;
+
+            EdgeIndex edgeIndex = list.edgeIndex;
+            edgeIndex.keys = reader.readLongArray(edgeIndexLength, edgeIndexLength, offHeapEdges);
+            edgeIndex.values = reader.readIntArray(edgeIndexLength, edgeIndexLength, offHeapEdges);
+            edgeIndex.size = edgeIndexSize;
+            edgeIndex.a = edgeIndexA;
+            edgeIndex.shift = edgeIndexShift;
+
+            //Rebuilds the max-heaps of the maintained orderings, which are not saved.
+            graph.setMaxDegreeTracking((flags & 4) != 0);
+            graph.setMinNeighborhoodWeightTracking((flags & 8) != 0);
+            return graph;
+        }
+    }
+
+
+
+    /**
+     * This class represents a node in the graph.
+     */
+    public static class Node{
+        /**
+         * The id of the node
+         */
+        public int id;
+
+        /**
+         * The weight of the node
+         */
+        public int weight;
+
+
+        /**
+         * Creates a new node object, given its id and its weight.
+         *
+         * time complexity: O(1).
+         *
+         * @param id - the id of the node.
+         * @param weight - the weight of the node.
+         */
+        public Node(int id, int weight){
+            this.id = id;
+            this.weight = weight;
+        }
+
+
+        /**
+         * Returns the id of the node.
+         *
+         * time complexity: O(1).
+         *
+         * @return the id of the node.
+         */
+        public int getId(){
+            return this.id;
+        }
+
+
+        /**
+         * Returns the weight of the node.
+         *
+         * time complexity: O(1).
+         *
+         * @return the weight of the node.
+         */
+        public int getWeight(){
+            return this.weight;
+        }
+    }
+
+    /**
+     * This class represents the edges in the graph by an adjacency list, which is kept in arrays of primitives.
+     * Every edge is represented by two consecutive cells (2k and 2k+1) of the edge arrays, one in the neighbors list
+     * of each of its vertices, so the twin of the cell e is the cell e^1. The neighbors lists are doubly linked
+     * through the arrays nextEdges and prevEdges, and the cells of deleted edges are reused through a free list.
+     */
+    public class NeighborhoodsList {
+        /**
+         * The value which marks the end of a neighbors list (and of the free list).
+         */
+        public static final int NIL = -1;
+
+        /**
+         * For each cell of an edge, the index in the neighborhoods list of the neighbor which the cell represents.
+         * The cell e is located in the neighbors list of the vertex neighbors[e^1].
+         */
+        public IntArray neighbors;
+
+        /**
+         * For each cell of an edge, the next cell in its neighbors list, or NIL.
+         * For a cell in the free list, the first cell of the next free pair, or NIL.
+         */
+        public IntArray nextEdges;
+
+        /**
+         * For each cell of an edge, the previous cell in its neighbors list, or NIL.
+         */
+        public IntArray prevEdges;
+
+        /**
+         * For each pair of cells of an edge (at index edge >> 1), the first cell of the next (older) edge
+         * between the same two vertices, or NIL.
+         */
+        public IntArray parallelEdges;
+
+        /**
+         * The hash table that maps a pair of vertices to the first cell of the latest edge between them.
+         */
+        public EdgeIndex edgeIndex;
+
+        /**
+         * Whether the edge arrays and the hash table of the edges are kept off-heap.
+         */
+        public final boolean offHeap;
+
+        /**
+         * Each cell in this array corresponds to a vertex, and keeps the first cell of its neighbors list, or NIL.
+         */
+        public int[] firstEdges;
+
+        /**
+         * Each cell in this array corresponds to a vertex, and keeps the length of its neighbors list.
+         */
+        public int[] degrees;
+
+        /**
+         * The number of cells of the arrays of the vertices that have ever been used.
+         */
+        public int usedNListIndices;
+
+        /**
+         * A stack of the indices of deleted vertices, which are reused for new vertices.
+         */
+        public int[] freeNListIndices;
+
+        /**
+         * The number of indices in the stack freeNListIndices.
+         */
+        public int numFreeNListIndices;
+
+        /**
+         * The first cell of the first pair in the free list, or NIL.
+         */
+        public int freeEdges;
+
+        /**
+         * The number of cells of the edge arrays that have ever been used.
+         */
+        public int usedEdges;
+
+        /**
+         * The number of edges that present in the graph.
+         */
+        public int numEdges;
+
+
+        /**
+         * Creates an empty adjacency list, given its length (the number of vertices in the graph).
+         *
+         * time complexity: O(numNodes).
+         *
+         * @param numNodes - the number of vertices in the graph.
+         * @param offHeap - whether the edge arrays and the hash table of the edges are kept off-heap.
+         */
+        public NeighborhoodsList(int numNodes, boolean offHeap) {
+            this.offHeap = offHeap;
+            this.firstEdges = new int[numNodes];
+            java.util.Arrays.fill(this.firstEdges, NIL);
+            this.degrees = new int[numNodes];
+            this.usedNListIndices = numNodes;
+            this.freeNListIndices = new int[4];
+            this.numFreeNListIndices = 0;
+
+            int edgesCapacity = Math.max(16, 2 * numNodes);
+            this.neighbors = new IntArray(edgesCapacity, offHeap);
+            this.nextEdges = new IntArray(edgesCapacity, offHeap);
+            this.prevEdges = new IntArray(edgesCapacity, offHeap);
+            this.parallelEdges = new IntArray(edgesCapacity / 2, offHeap);
+            this.edgeIndex = new EdgeIndex(numNodes, offHeap);
+            this.edgeIndex.stats = stats;
+            this.freeEdges = NIL;
+            this.usedEdges = 0;
+            this.numEdges = 0;
+        }
+
+
+        /**
+         * Returns an index in the neighborhoods list for a new vertex, with an empty neighbors list.
+         * The index of a deleted vertex is reused if there is one, otherwise the arrays of the vertices
+         * are doubled if they are full.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @return an index in the neighborhoods list for a new vertex.
+         */
+        public int allocateNListIndex() {
+            if (this.numFreeNListIndices > 0) {
+                this.numFreeNListIndices -= 1;
+                return this.freeNListIndices[this.numFreeNListIndices];
+            }
+            if (this.usedNListIndices == this.firstEdges.length) {
+                int oldCapacity = this.firstEdges.length;
+                int capacity = Math.max(4, 2 * oldCapacity);
+                this.firstEdges = java.util.Arrays.copyOf(this.firstEdges, capacity);
+                java.util.Arrays.fill(this.firstEdges, oldCapacity, capacity, NIL);
+                this.degrees = java.util.Arrays.copyOf(this.degrees, capacity);
+            }
+            int nodeNListIndex = this.usedNListIndices;
+            this.usedNListIndices += 1;
+            return nodeNListIndex;
+        }
+
+
+        /**
+         * Returns the index of a deleted vertex (whose neighbors list is already empty) to the stack of free indices.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @param nodeNListIndex - the index of a deleted vertex in the neighborhoods list.
+         */
+        public void freeNListIndex(int nodeNListIndex) {
+            if (this.numFreeNListIndices == this.freeNListIndices.length) {
+                this.freeNListIndices = java.util.Arrays.copyOf(this.freeNListIndices, 2 * this.numFreeNListIndices);
+            }
+            this.freeNListIndices[this.numFreeNListIndices] = nodeNListIndex;
+            this.numFreeNListIndices += 1;
+        }
+
+
+        /**
+         * Returns the first cell of a free pair of cells for a new edge, and doubles the edge arrays if they are full.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @return the first (even) cell of a free pair of cells.
+         */
+        public int allocateEdge() {
+            if (this.freeEdges != NIL) {
+                int edge = this.freeEdges;
+                this.freeEdges = this.nextEdges.get(edge);
+                return edge;
+            }
+            if (this.usedEdges == this.neighbors.length) {
+                int edgesCapacity = 2 * this.neighbors.length;
+                this.neighbors = this.neighbors.copyOf(edgesCapacity);
+                this.nextEdges = this.nextEdges.copyOf(edgesCapacity);
+                this.prevEdges = this.prevEdges.copyOf(edgesCapacity);
+                this.parallelEdges = this.parallelEdges.copyOf(edgesCapacity / 2);
+            }
+            int edge = this.usedEdges;
+            this.usedEdges += 2;
+            return edge;
+        }
+
+
+        /**
+         * Returns the pair of cells of an edge to the free list.
+         *
+         * time complexity: O(1).
+         *
+         * @param edge - one of the two cells of the edge.
+         */
+        public void freeEdge(int edge) {
+            edge &= ~1;
+            beforeWrite(ReadSnapshot.NEXT_EDGES, this.nextEdges, edge);
+            this.nextEdges.set(edge, this.freeEdges);
+            this.freeEdges = edge;
+        }
+
+
+        /**
+         * Inserts the cell edge to the start of the neighbors list of the vertex at index nodeNListIndex.
+         *
+         * time complexity: O(1).
+         *
+         * @param nodeNListIndex - the index of a vertex in the neighborhoods list.
+         * @param edge - a cell of an edge.
+         */
+        public void linkEdge(int nodeNListIndex, int edge) {
+            int first = this.firstEdges[nodeNListIndex];
+            beforeWrite(ReadSnapshot.NEXT_EDGES, this.nextEdges, edge);
+            beforeWrite(ReadSnapshot.FIRST_EDGES, this.firstEdges, nodeNListIndex);
+            beforeWrite(ReadSnapshot.DEGREES, this.degrees, nodeNListIndex);
+            this.prevEdges.set(edge, NIL);
+            this.nextEdges.set(edge, first);
+            if (first != NIL) {
+                this.prevEdges.set(first, edge);
+            }
+            this.firstEdges[nodeNListIndex] = edge;
+            this.degrees[nodeNListIndex] += 1;
+        }
+
+
+        /**
+         * Deletes the cell edge from the neighbors list of the vertex at index nodeNListIndex.
+         *
+         * time complexity: O(1).
+         *
+         * @param nodeNListIndex - the index of the vertex in the neighborhoods list whose list contains the cell.
+         * @param edge - a cell of an edge.
+         */
+        public void unlinkEdge(int nodeNListIndex, int edge) {
+            int prev = this.prevEdges.get(edge);
+            int next = this.nextEdges.get(edge);
+            beforeWrite(ReadSnapshot.DEGREES, this.degrees, nodeNListIndex);
+            if (prev == NIL) {
+                beforeWrite(ReadSnapshot.FIRST_EDGES, this.firstEdges, nodeNListIndex);
+                this.firstEdges[nodeNListIndex] = next;
+            } else {
+                beforeWrite(ReadSnapshot.NEXT_EDGES, this.nextEdges, prev);
+                this.nextEdges.set(prev, next);
+            }
+            if (next != NIL) {
+                this.prevEdges.set(next, prev);
+            }
+            this.degrees[nodeNListIndex] -= 1;
+        }
+
+
+        /**
+         * This function adds an edge between the two vertices whose indices in the neighborhoods list are specified.
+         * We assume that the two vertices are in the graph, and they are distinct.
+         *
+         * time complexity: O(log(n)) amortized.
+         *
+         * @param node1NListIndex - the index of the first vertex in the neighborhoods list.
+         * @param node2NListIndex - the index of the second vertex in the neighborhoods list.
+         */
+        public void createEdgeInNeighborList(int node1NListIndex, int node2NListIndex) {
+            this.linkNewEdge(node1NListIndex, node2NListIndex);
+
+            //Updates the neighborhood weight of the two nodes.
+            increaseNeighborhoodWeight(node1NListIndex, vertices[node2NListIndex].getWeight());
+            increaseNeighborhoodWeight(node2NListIndex, vertices[node1NListIndex].getWeight());
+        }
+
+
+        /**
+         * This function adds an edge between the two vertices whose indices in the neighborhoods list are specified,
+         * without updating their neighborhood weights (but with their keys in the max-heap of the degrees).
+         * We assume that the two vertices are in the graph, and they are distinct.
+         *
+         * time complexity: O(1) amortized, or O(log(n)) amortized if the maximal degree is maintained.
+         *
+         * @param node1NListIndex - the index of the first vertex in the neighborhoods list.
+         * @param node2NListIndex - the index of the second vertex in the neighborhoods list.
+         * @return the cell of the new edge in the neighbors list of the first vertex.
+         */
+        public int linkNewEdge(int node1NListIndex, int node2NListIndex) {
+            //Inserts the two cells of the edge to the start of the neighbors lists.
+            int edge = this.allocateEdge();
+            //The two cells of the edge are in the same chunk.
+            beforeWrite(ReadSnapshot.NEIGHBORS, this.neighbors, edge);
+            this.neighbors.set(edge, node2NListIndex);
+            this.neighbors.set(edge ^ 1, node1NListIndex);
+            this.linkEdge(node1NListIndex, edge);
+            this.linkEdge(node2NListIndex, edge ^ 1);
+            if (degreeHeap != null) {
+                degreeHeap.increaseNeighborhoodWeight(node1NListIndex, 1);
+                degreeHeap.increaseNeighborhoodWeight(node2NListIndex, 1);
+            }
+
+            //Makes the new edge the latest edge between the two vertices in the hash table of the edges.
+            long key = EdgeIndex.key(node1NListIndex, node2NListIndex);
+            this.parallelEdges.set(edge >> 1, this.edgeIndex.put(key, edge));
+
+            this.numEdges += 1;
+            return edge;
+        }
+
+
+        /**
+         * Returns the cell of an edge between the two vertices whose indices in the neighborhoods list are specified,
+         * which is located in the neighbors list of the first vertex, or NIL if there is no such edge.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node1NListIndex - the index of the first vertex in the neighborhoods list.
+         * @param node2NListIndex - the index of the second vertex in the neighborhoods list.
+         * @return the cell of an edge in the neighbors list of the first vertex, or NIL.
+         */
+        public int findEdge(int node1NListIndex, int node2NListIndex) {
+            int edge = this.edgeIndex.find(EdgeIndex.key(node1NListIndex, node2NListIndex));
+            if (edge == NIL) {
+                return NIL;
+            }
+            return this.neighbors.get(edge) == node2NListIndex ? edge : edge ^ 1;
+        }
+
+
+        /**
+         * Deletes an edge from the neighbors lists of its two vertices and from the hash table of the edges,
+         * without updating their neighborhood weights, and returns its cells to the free list. If the maximal degree
+         * is maintained, the keys of the vertices that are not deleted are decreased in the max-heap of the degrees.
+         *
+         * time complexity: O(k) expected, while k is the number of parallel edges between the two vertices,
+         *                  or O(k + log(n)) expected if the maximal degree is maintained.
+         *
+         * @param edge - one of the two cells of the edge.
+         */
+        public void removeEdge(int edge) {
+            int node1NListIndex = this.neighbors.get(edge ^ 1);
+            int node2NListIndex = this.neighbors.get(edge);
+            this.unlinkEdge(node1NListIndex, edge);
+            this.unlinkEdge(node2NListIndex, edge ^ 1);
+            if (degreeHeap != null) {
+                if (vertices[node1NListIndex] != null) {
+                    degreeHeap.decreaseNeighborhoodWeight(node1NListIndex, 1);
+                }
+                if (vertices[node2NListIndex] != null) {
+                    degreeHeap.decreaseNeighborhoodWeight(node2NListIndex, 1);
+                }
+            }
+
+            //Removes the edge from the chain of the edges between the two vertices.
+            edge &= ~1;
+            long key = EdgeIndex.key(node1NListIndex, node2NListIndex);
+            int latest = this.edgeIndex.find(key);
+            int older = this.parallelEdges.get(edge >> 1);
+            if (latest == edge) {
+                if (older == NIL) {
+                    this.edgeIndex.delete(key);
+                } else {
+                    this.edgeIndex.put(key, older);
+                }
+            } else {
+                while (this.parallelEdges.get(latest >> 1) != edge) {
+                    latest = this.parallelEdges.get(latest >> 1);
+                }
+                this.parallelEdges.set(latest >> 1, older);
+            }
+
+            this.freeEdge(edge);
+            this.numEdges -= 1;
+        }
+
+
+        /**
+         * Deletes an edge from the graph, and updates the neighborhood weights of its two vertices.
+         *
+         * time complexity: O(log(n)) expected.
+         *
+         * @param edge - one of the two cells of the edge.
+         */
+        public void deleteEdgeFromNeighborList(int edge) {
+            int node1NListIndex = this.neighbors.get(edge ^ 1);
+            int node2NListIndex = this.neighbors.get(edge);
+
+            this.removeEdge(edge);
+
+            //Updates the neighborhood weight of the two nodes.
+            decreaseNeighborhoodWeight(node1NListIndex, vertices[node2NListIndex].getWeight());
+            decreaseNeighborhoodWeight(node2NListIndex, vertices[node1NListIndex].getWeight());
+        }
+
+
+        /**
+         * Given the index of a vertex in the neighborhoods list,
+         * deletes the vertex of that index from the graph.
+         * We assume that the vertex is in the graph, and that it was already removed from the hash table.
+         *
+         * time complexity: O((d_v+1) * log(n)).
+         *
+         * @param nodeNListIndex - the index of the vertex to delete in the neighborhoods list.
+         */
+        public void deleteNodeFromNeighborList(int nodeNListIndex) {
+            if (STATS_ENABLED) {
+                stats.recordDeletedNode(this.degrees[nodeNListIndex]);
+            }
+            int weight = vertices[nodeNListIndex].getWeight();
+            //Replaces the pointer to its node with 'null' first, so removeEdge does not change its degree
+            //in the max-heap of the degrees, and deletes it from that heap.
+            beforeWrite(ReadSnapshot.VERTICES, vertices, nodeNListIndex);
+            vertices[nodeNListIndex] = null;
+            if (degreeHeap != null) {
+                degreeHeap.delete(nodeNListIndex);
+            }
+
+            int edge = this.firstEdges[nodeNListIndex];
+            while (edge != NIL) { //For each neighbor:
+                int next = this.nextEdges.get(edge);
+                int neighborNListIndex = this.neighbors.get(edge);
+
+                //Deletes the edge from the neighbors lists of the vertex to delete and of the neighbor.
+                this.removeEdge(edge);
+
+                //Remove the weight of the vertex to delete from the neighborhood weight of his neighbor.
+                decreaseNeighborhoodWeight(neighborNListIndex, weight);
+
+                edge = next;
+            }
+
+            //Deletes the neighborhood weight of the vertex to delete from the max-heap.
+            neighborhoodWeightHeap.delete(nodeNListIndex);
+            if (minNeighborhoodWeightHeap != null) {
+                minNeighborhoodWeightHeap.delete(nodeNListIndex);
+            }
+            discardPendingWeightDelta(nodeNListIndex);
+            //Empties the neighbors list of the vertex to delete.
+            beforeWrite(ReadSnapshot.FIRST_EDGES, this.firstEdges, nodeNListIndex);
+            beforeWrite(ReadSnapshot.DEGREES, this.degrees, nodeNListIndex);
+            this.firstEdges[nodeNListIndex] = NIL;
+            this.degrees[nodeNListIndex] = 0;
+            this.freeNListIndex(nodeNListIndex);
+        }
+
+
+        /**
+         * Links the edges (node1_ids[i], node2_ids[i]) of a graph without edges, and returns the neighborhood
+         * weights, without updating the max-heap. The result is identical to linkNewEdge on every pair by order
+         * (pairs of distinct ids of the graph): the k-th edge gets the cells 2k and 2k+1, and every neighbors list
+         * starts with its latest edge. The pairs are numbered by a prefix sum over chunks, the cells are partitioned
+         * by blocks of vertices in their order, and the cells of every block are linked and summed by one task.
+         * Meanwhile, a single task fills the hash table of the edges by order.
+         *
+         * time complexity: O((N + M) / p + M) expected, while p is the parallelism of the pool.
+         *
+         * @param node1_ids - the ids of the first nodes of the edges.
+         * @param node2_ids - the ids of the second nodes of the edges.
+         * @param pool - the pool that runs the parallel tasks.
+         * @return the neighborhood weight of every vertex.
+         */
+        public int[] linkEdgesInParallel(int[] node1_ids, int[] node2_ids, ForkJoinPool pool) {
+            int numNodes = this.firstEdges.length;
+            int numChunks = (node1_ids.length + PARALLEL_GRAIN - 1) / PARALLEL_GRAIN;
+
+            //Counts the edges that addEdge accepts in every chunk of pairs, and numbers them by a prefix sum.
+            int[] chunkOffsets = new int[numChunks + 1];
+            ParallelRange.run(pool, numChunks, 1, (from, to) -> {
+                for (int chunk = from; chunk < to; chunk++) {
+                    int count = 0;
+                    int end = Math.min(node1_ids.length, (chunk + 1) * PARALLEL_GRAIN);
+                    for (int i = chunk * PARALLEL_GRAIN; i < end; i++) {
+                        //The counters are not thread-safe, so the lookups of the parallel tasks are not counted.
+                        if (node1_ids[i] != node2_ids[i] && tableIdToRepresentation.findUncounted(node1_ids[i]) != -1
+                                && tableIdToRepresentation.findUncounted(node2_ids[i]) != -1) {
+                            count += 1;
+                        }
+                    }
+                    chunkOffsets[chunk + 1] = count;
+                }
+            });
+            for (int chunk = 0; chunk < numChunks; chunk++) {
+                chunkOffsets[chunk + 1] += chunkOffsets[chunk];
+            }
+            int numNewEdges = chunkOffsets[numChunks];
+
+            int edgesCapacity = Math.max(16, 2 * numNewEdges);
+            this.neighbors = new IntArray(edgesCapacity, this.offHeap);
+            this.nextEdges = new IntArray(edgesCapacity, this.offHeap);
+            this.prevEdges = new IntArray(edgesCapacity, this.offHeap);
+            this.parallelEdges = new IntArray(edgesCapacity / 2, this.offHeap);
+            this.edgeIndex = new EdgeIndex(numNewEdges, this.offHeap);
+            this.edgeIndex.stats = stats;
+            this.freeEdges = NIL;
+            this.usedEdges = 2 * numNewEdges;
+            this.numEdges = numNewEdges;
+
+            //Writes the two cells of every edge.
+            ParallelRange.run(pool, numChunks, 1, (from, to) -> {
+                for (int chunk = from; chunk < to; chunk++) {
+                    int edge = 2 * chunkOffsets[chunk];
+                    int end = Math.min(node1_ids.length, (chunk + 1) * PARALLEL_GRAIN);
+                    for (int i = chunk * PARALLEL_GRAIN; i < end; i++) {
+                        if (node1_ids[i] == node2_ids[i]) {
+                            continue;
+                        }
+                        int node1NListIndex = tableIdToRepresentation.findUncounted(node1_ids[i]);
+                        int node2NListIndex = tableIdToRepresentation.findUncounted(node2_ids[i]);
+                        if (node1NListIndex == -1 || node2NListIndex == -1) {
+                            continue;
+                        }
+                        this.neighbors.set(edge, node2NListIndex);
+                        this.neighbors.set(edge + 1, node1NListIndex);
+                        edge += 2;
+                    }
+                }
+            });
+
+            //Partitions the cells by blocks of vertices (the cell e is in the list of neighbors[e^1]), keeping the
+            //order of the cells in every block: every chunk of cells counts its cells of every block, and then
+            //copies them to its own range of the block, so no counter is shared.
+            int numBlocks = Math.max(1, Math.min(numNodes, 8 * pool.getParallelism()));
+            int blockLength = (numNodes + numBlocks - 1) / numBlocks;
+            int numCellChunks = (this.usedEdges + PARALLEL_GRAIN - 1) / PARALLEL_GRAIN;
+            int[] blockOffsets = new int[numCellChunks * numBlocks + 1];
+            ParallelRange.run(pool, numCellChunks, 1, (from, to) -> {
+                for (int chunk = from; chunk < to; chunk++) {
+                    int end = Math.min(this.usedEdges, (chunk + 1) * PARALLEL_GRAIN);
+                    for (int edge = chunk * PARALLEL_GRAIN; edge < end; edge++) {
+                        blockOffsets[chunk * numBlocks + this.neighbors.get(edge ^ 1) / blockLength + 1] += 1;
+                    }
+                }
+            });
+            int[] blockStarts = new int[numBlocks + 1];
+            int offset = 0;
+            for (int block = 0; block < numBlocks; block++) { //Block-major prefix sum over the counts.
+                blockStarts[block] = offset;
+                for (int chunk = 0; chunk < numCellChunks; chunk++) {
+                    int count = blockOffsets[chunk * numBlocks + block + 1];
+                    blockOffsets[chunk * numBlocks + block + 1] = offset;
+                    offset += count;
+                }
+            }
+            blockStarts[numBlocks] = offset;
+            int[] partitionedEdges = new int[this.usedEdges];
+            ParallelRange.run(pool, numCellChunks, 1, (from, to) -> {
+                for (int chunk = from; chunk < to; chunk++) {
+                    int end = Math.min(this.usedEdges, (chunk + 1) * PARALLEL_GRAIN);
+                    for (int edge = chunk * PARALLEL_GRAIN; edge < end; edge++) {
+                        int cursor = chunk * numBlocks + this.neighbors.get(edge ^ 1) / blockLength + 1;
+                        partitionedEdges[blockOffsets[cursor]] = edge;
+                        blockOffsets[cursor] += 1;
+                    }
+                }
+            });
+
+            //Links the cells of every block by order, exactly as linkEdge does, and sums the neighborhood weights,
+            //while a single task fills the hash table of the edges by order.
+            int[] neighborhoodWeights = new int[numNodes];
+            ForkJoinTask<?> linkBlocks = new ParallelRange(0, numBlocks, 1, (from, to) -> {
+                for (int block = from; block < to; block++) {
+                    for (int v = block * blockLength; v < Math.min(numNodes, (block + 1) * blockLength); v++) {
+                        neighborhoodWeights[v] = vertices[v].getWeight();
+                    }
+                    for (int i = blockStarts[block]; i < blockStarts[block + 1]; i++) {
+                        int edge = partitionedEdges[i];
+                        int nodeNListIndex = this.neighbors.get(edge ^ 1);
+                        this.linkEdge(nodeNListIndex, edge);
+                        neighborhoodWeights[nodeNListIndex] += vertices[this.neighbors.get(edge)].getWeight();
+                    }
+                }
+            });
+            ForkJoinTask<?> fillEdgeIndex = ForkJoinTask.adapt(() -> {
+                for (int edge = 0; edge < this.usedEdges; edge += 2) {
+                    long key = EdgeIndex.key(this.neighbors.get(edge + 1), this.neighbors.get(edge));
+                    this.parallelEdges.set(edge >> 1, this.edgeIndex.put(key, edge));
+                }
+            });
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(linkBlocks, fillEdgeIndex)));
+            return neighborhoodWeights;
+        }
+    }
+
+
+
+    /**
+     * This class represents a reusable cursor over the neighbors of a node in the graph, which copies the ids of
+     * the neighbors into an array of the caller, so scanning the neighborhoods allocates nothing. The order of the
+     * neighbors is the order of forEachNeighbor. The graph must not be changed while the cursor is used on a node.
+     */
+    public class NeighborCursor {
+        /**
+         * The cell of the next neighbor in the neighbors list of the node, or NIL if there are no more neighbors.
+         */
+        public int edge = NeighborhoodsList.NIL;
+
+
+        /**
+         * Positions the cursor on the first neighbor of the node whose id is specified.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - the id of the node.
+         * @return the degree of the node of id 'node_id' if such a node exists in the graph, otherwise -1
+         *         (and the cursor has no neighbors).
+         */
+        public int reset(int node_id) {
+            int nodeNListIndex = tableIdToRepresentation.find(node_id);
+            if (nodeNListIndex == -1) {
+                this.edge = NeighborhoodsList.NIL;
+                return -1;
+            }
+            this.edge = neighborhoodsList.firstEdges[nodeNListIndex];
+            return neighborhoodsList.degrees[nodeNListIndex];
+        }
+
+
+        /**
+         * Copies the ids of the next neighbors to the array, up to its length, and advances the cursor past them.
+         *
+         * time complexity: O(k), while k is the number of copied ids.
+         *
+         * @param node_ids - the array to copy the ids of the neighbors to.
+         * @return the number of copied ids, which is 0 only if there are no more neighbors.
+         */
+        public int next(int[] node_ids) {
+            NeighborhoodsList list = neighborhoodsList;
+            int edge = this.edge;
+            int count = 0;
+            while (count < node_ids.length && edge != NeighborhoodsList.NIL) {
+                node_ids[count++] = vertices[list.neighbors.get(edge)].getId();
+                edge = list.nextEdges.get(edge);
+            }
+            this.edge = edge;
+            return count;
+        }
+
+
+        /**
+         * Returns whether there are more neighbors.
+         *
+         * time complexity: O(1).
+         *
+         * @return returns 'true' if there are more neighbors, otherwise returns 'false'.
+         */
+        public boolean hasNext() {
+            return this.edge != NeighborhoodsList.NIL;
+        }
+    }
+
+
+
+    /**
+     * This interface represents an action on a range of indices [from, to), which is run by ParallelRange.
+     */
+    public interface RangeAction {
+        /**
+         * Runs the action on the indices from (inclusive) to to (exclusive).
+         *
+         * @param from - the first index of the range.
+         * @param to - the index after the last index of the range.
+         */
+        void run(int from, int to);
+    }
+
+
+
+    /**
+     * This class runs a RangeAction on a range of indices by a fork-join task,
+     * which splits the range in halves until it is not longer than the grain.
+     */
+    public static class ParallelRange extends RecursiveAction {
+        /**
+         * The version of the serialized form (RecursiveAction is serializable, although the tasks are never
+         * serialized).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first index of the range.
+         */
+        public final int from;
+
+        /**
+         * The index after the last index of the range.
+         */
+        public final int to;
+
+        /**
+         * The maximal length of a range that is not split.
+         */
+        public final int grain;
+
+        /**
+         * The action to run on the range.
+         */
+        public final RangeAction action;
+
+
+        /**
+         * Creates a task that runs the action on the indices from (inclusive) to to (exclusive).
+         *
+         * time complexity: O(1).
+         *
+         * @param from - the first index of the range.
+         * @param to - the index after the last index of the range.
+         * @param grain - the maximal length of a range that is not split, at least 1.
+         * @param action - the action to run on the range.
+         */
+        public ParallelRange(int from, int to, int grain, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+        }
+
+
+        /**
+         * Runs the action on the indices 0 to n-1 in the given pool, and waits for it to finish.
+         *
+         * time complexity: O(n / grain) in addition to the action.
+         *
+         * @param pool - the pool that runs the tasks.
+         * @param n - the number of indices.
+         * @param grain - the maximal length of a range that is not split, at least 1.
+         * @param action - the action to run on the range.
+         */
+        public static void run(ForkJoinPool pool, int n, int grain, RangeAction action) {
+            if (n > 0) {
+                pool.invoke(new ParallelRange(0, n, grain, action));
+            }
+        }
+
+
+        /**
+         * Runs the action on the range, or splits it in halves and runs them in parallel.
+         */
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.grain) {
+                this.action.run(this.from, this.to);
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new ParallelRange(this.from, middle, this.grain, this.action),
+                        new ParallelRange(middle, this.to, this.grain, this.action));
+            }
+        }
+    }
+
+
+
+    /**
+     * This interface represents a Max-Heap that maintains the heaviest neighborhood.
+     * The elements of the heap are vertices, identified by their (fixed) indices in the neighborhoods list,
+     * and the key of every vertex is its neighborhood weight.
+     */
+    public interface MaxHeap {
+        /**
+         * Returns the size of the heap.
+         *
+         * @return the size of the heap.
+         */
+        int getSize();
+
+        /**
+         * Returns the number of children of every (inner) vertex in the heap.
+         *
+         * @return the arity of the heap.
+         */
+        int getArity();
+
+        /**
+         * Returns the vertex with the heaviest neighborhood (maximal neighborhood weight).
+         * We assume that the heap is not empty.
+         *
+         * @return the index in the neighborhoods list of the vertex with the maximal key.
+         */
+        int max();
+
+        /**
+         * Returns the key (neighborhood weight) of a vertex in the heap.
+         *
+         * @param vertex - the index of a vertex in the neighborhoods list.
+         * @return the key of the vertex.
+         */
+        int getKey(int vertex);
+
+        /**
+         * Returns the vertex at index i in the heap.
+         *
+         * @param i - an index in the heap.
+         * @return the index in the neighborhoods list of the vertex at index i in the heap.
+         */
+        int vertexAt(int i);
+
+        /**
+         * Returns the key of the vertex at index i in the heap.
+         *
+         * @param i - an index in the heap.
+         * @return the key of the vertex at index i in the heap.
+         */
+        int keyAt(int i);
+
+        /**
+         * Returns the index of the parent of the vertex at index i in the heap.
+         *
+         * @param i - an index in the heap, other than 0.
+         * @return the index of the parent of the vertex at index i in the heap.
+         */
+        int parent(int i);
+
+        /**
+         * Makes sure that vertices whose indices in the neighborhoods list are smaller than numVertices
+         * can be inserted to the heap.
+         *
+         * @param numVertices - the number of indices in the neighborhoods list.
+         */
+        void ensureCapacity(int numVertices);
+
+        /**
+         * Inserts a vertex, which is not in the heap, to the heap with the given key.
+         *
+         * @param vertex - the index of a vertex in the neighborhoods list.
+         * @param key - the key (neighborhood weight) of the vertex.
+         */
+        void insert(int vertex, int key);
+
+        /**
+         * Deletes a vertex from the heap.
+         *
+         * @param vertex - the index of a vertex in the heap.
+         */
+        void delete(int vertex);
+
+        /**
+         * Deletes a vertex from the heap without correcting the heap, so buildHeap should be called afterwards.
+         *
+         * @param vertex - the index of a vertex in the heap.
+         */
+        void deleteWithoutCorrection(int vertex);
+
+        /**
+         * Sets the key of a vertex in the heap without correcting the heap, so buildHeap should be called afterwards.
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param key - the new key of the vertex.
+         */
+        void setKeyWithoutCorrection(int vertex, int key);
+
+        /**
+         * Rearranges the vertices of the heap into a legal max-heap, bottom-up.
+         */
+        void buildHeap();
+
+        /**
+         * Increases the neighborhood weight of a vertex by delta.
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param delta - a non-negative number to increase by.
+         */
+        void increaseNeighborhoodWeight(int vertex, int delta);
+
+        /**
+         * Decreases the neighborhood weight of a vertex by delta.
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param delta - a non-negative number to decrease by.
+         */
+        void decreaseNeighborhoodWeight(int vertex, int delta);
+
+        /**
+         * Changes the neighborhood weight of a vertex by delta, which may be negative.
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param delta - a number to increase by (or to decrease by its absolute value, if it is negative).
+         */
+        void changeNeighborhoodWeight(int vertex, int delta);
+
+        /**
+         * Writes the k vertices with the maximal keys, by non-increasing key, to the array vertices.
+         * The heap is not changed.
+         *
+         * @param k - the number of vertices to write, at most the size of the heap.
+         * @param vertices - an array of length at least k to write the vertices to.
+         * @return the number of vertices that were written.
+         */
+        int topK(int k, int[] vertices);
+
+        /**
+         * Returns the array of the vertex at every index in the heap, which read snapshots share with the heap.
+         *
+         * @return the array of the vertices of the heap.
+         */
+        int[] getHeapVertices();
+
+        /**
+         * Returns the array of the key at every index in the heap, which read snapshots share with the heap.
+         *
+         * @return the array of the keys of the heap.
+         */
+        int[] getHeapKeys();
+
+        /**
+         * Returns the array of the index in the heap of every vertex (or -1), which read snapshots share with the heap.
+         *
+         * @return the array of the positions of the vertices.
+         */
+        int[] getPositions();
+
+        /**
+         * Installs the write barrier of the open read snapshots, which must be called before the heap writes to one
+         * of its three arrays, or removes it if it is 'null'.
+         *
+         * @param registry - the registry of the open snapshots, or 'null'.
+         */
+        void setSnapshotRegistry(SnapshotRegistry registry);
+    }
+
+
+
+    /**
+     * This class implements a d-ary Max-Heap that maintains the heaviest neighborhood.
+     * The heap is kept in two parallel arrays of primitives, of the vertices and of their keys, so the d children
+     * of a vertex are compared on contiguous memory, and the position of every vertex in the heap is kept in
+     * a third array, which is indexed by the vertex. A larger arity makes the heap shallower, so increasing keys
+     * (adding edges) is cheaper, while decreasing keys (deleting vertices) compares more children on each level.
+     */
+    public static class DaryMaxHeap implements MaxHeap {
+        /**
+         * The number of children of every (inner) vertex in the heap.
+         */
+        public int arity;
+
+        /**
+         * log2(arity) if the arity is a power of 2, so the parent is found by a shift, or -1 otherwise.
+         */
+        public int arityShift;
+
+        /**
+         * The array that represents the heap: the vertex at every index in the heap.
+         */
+        public int[] heapVertices;
+
+        /**
+         * The key of the vertex at every index in the heap.
+         */
+        public int[] heapKeys;
+
+        /**
+         * The index in the heap of every vertex, or -1 if the vertex is not in the heap.
+         */
+        public int[] positions;
+
+        /**
+         * The counters of the sifts, or 'null'.
+         */
+        public GraphStats stats;
+
+        /**
+         * The write barrier of the open read snapshots of the graph, or 'null' if there are none.
+         */
+        public SnapshotRegistry snapshots;
+
+        /**
+         * The size of the heap, that is, the number neighborhoods present
+         * in the graph (the current number of vertices in the graph).
+         */
+        public int size;
+
+
+        /**
+         * Initializes the max-heap of the neighborhood weights with a given set of nodes, where the vertex of
+         * nodes[i] is i. The graph has no edges, so in practice the neighborhood weights are node weights.
+         *
+         * time complexity: O(N).
+         *
+         * @param nodes - an array of node objects
+         * @param arity - the number of children of every (inner) vertex in the heap, at least 2.
+         */
+        public DaryMaxHeap(Node[] nodes, int arity) {
+            if (arity < 2) {
+                throw new IllegalArgumentException("the arity of the heap must be at least 2");
+            }
+            this.arity = arity;
+            this.arityShift = Integer.bitCount(arity) == 1 ? Integer.numberOfTrailingZeros(arity) : -1;
+
+            //Initialize the arrays of the heap.
+            this.heapVertices = new int[nodes.length];
+            this.heapKeys = new int[nodes.length];
+            this.positions = new int[nodes.length];
+            this.size = nodes.length;
+            for (int i = 0; i < nodes.length; i++) {
+                this.heapVertices[i] = i;
+                this.heapKeys[i] = nodes[i].getWeight();
+                this.positions[i] = i;
+            }
+
+            //Construct a legal d-ary max-heap.
+            this.buildHeap();
+        }
+
+
+        /**
+         * Initializes the max-heap from arrays that are already a legal d-ary max-heap (in heap order),
+         * and computes the position of every vertex. The arrays are used by the heap, not copied.
+         *
+         * time complexity: O(N), while N is the length of heapVertices.
+         *
+         * @param arity - the number of children of every (inner) vertex in the heap, at least 2.
+         * @param heapVertices - the vertex at every index in the heap, whose length is the number of indices
+         *                     in the neighborhoods list.
+         * @param heapKeys - the key of the vertex at every index in the heap, of the same length.
+         * @param size - the size of the heap.
+         */
+        public DaryMaxHeap(int arity, int[] heapVertices, int[] heapKeys, int size) {
+            if (arity < 2) {
+                throw new IllegalArgumentException("the arity of the heap must be at least 2");
+            }
+            this.arity = arity;
+            this.arityShift = Integer.bitCount(arity) == 1 ? Integer.numberOfTrailingZeros(arity) : -1;
+            this.heapVertices = heapVertices;
+            this.heapKeys = heapKeys;
+            this.positions = new int[heapVertices.length];
+            java.util.Arrays.fill(this.positions, -1);
+            this.size = size;
+            for (int i = 0; i < size; i++) {
+                this.positions[heapVertices[i]] = i;
+            }
+        }
+
+
+        /**
+         * Returns the index of the first child of the vertex at index i (the other children follow it).
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index of a vertex in the heap.
+         * @return the index of the first child of the vertex at index i.
+         */
+        public int firstChild(int i) {
+            return this.arity * i + 1;
+        }
+
+
+        /**
+         * Returns the index of the parent of the vertex at index i.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index of a vertex in the heap, other than 0.
+         * @return the index of the parent of the vertex at index i.
+         */
+        @Override
+        public int parent(int i) {
+            return this.arityShift >= 0 ? (i - 1) >> this.arityShift : (i - 1) / this.arity;
+        }
+
+
+        /**
+         * Returns the size of the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @return the size of the heap.
+         */
+        @Override
+        public int getSize() {
+            return this.size;
+        }
+
+
+        /**
+         * Returns the number of children of every (inner) vertex in the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @return the arity of the heap.
+         */
+        @Override
+        public int getArity() {
+            return this.arity;
+        }
+
+
+        /**
+         * Returns the vertex with the maximal key.
+         *
+         * time complexity: O(1).
+         *
+         * @return the index in the neighborhoods list of the vertex with the maximal key.
+         */
+        @Override
+        public int max() {
+            return this.heapVertices[0];
+        }
+
+
+        /**
+         * Returns the key of a vertex in the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @param vertex - the index of a vertex in the neighborhoods list.
+         * @return the key of the vertex.
+         */
+        @Override
+        public int getKey(int vertex) {
+            return this.heapKeys[this.positions[vertex]];
+        }
+
+
+        /**
+         * Returns the vertex at index i in the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the heap.
+         * @return the vertex at index i in the heap.
+         */
+        @Override
+        public int vertexAt(int i) {
+            return this.heapVertices[i];
+        }
+
+
+        /**
+         * Returns the key of the vertex at index i in the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the heap.
+         * @return the key of the vertex at index i in the heap.
+         */
+        @Override
+        public int keyAt(int i) {
+            return this.heapKeys[i];
+        }
+
+
+        /**
+         * Sets a vertex with its key at index i in the heap, and updates its position.
+         *
+         * time complexity: O(1).
+         *
+         * @param vertex - a vertex to set at index i in the heap.
+         * @param key - the key of the vertex.
+         * @param i - an index to set the vertex at.
+         */
+        public void setAtIndex(int vertex, int key, int i) {
+            SnapshotRegistry snapshots = this.snapshots;
+            if (snapshots != null) {
+                snapshots.beforeWrite(ReadSnapshot.HEAP_VERTICES, this.heapVertices, i);
+                snapshots.beforeWrite(ReadSnapshot.HEAP_KEYS, this.heapKeys, i);
+                snapshots.beforeWrite(ReadSnapshot.HEAP_POSITIONS, this.positions, vertex);
+            }
+            this.heapVertices[i] = vertex;
+            this.heapKeys[i] = key;
+            this.positions[vertex] = i;
+        }
+
+
+        /**
+         * Corrects upwards the vertex at index i, if it is needed. The vertices on the way are shifted down
+         * into the hole, and the vertex is written once at its final index.
+         *
+         * time complexity: O(log_d(n)).
+         *
+         * @param i - an index to correct in the heap.
+         */
+        public void heapifyUp(int i) {
+            int vertex = this.heapVertices[i];
+            int key = this.heapKeys[i];
+            int swaps = 0;
+            while (i > 0) {
+                int parent = this.parent(i);
+                if (this.heapKeys[parent] >= key) {
+                    break;
+                }
+                this.setAtIndex(this.heapVertices[parent], this.heapKeys[parent], i);
+                i = parent;
+                swaps += 1;
+            }
+            this.setAtIndex(vertex, key, i);
+            if (STATS_ENABLED && this.stats != null) {
+                this.stats.recordSift(swaps);
+            }
+        }
+
+
+        /**
+         * Corrects downwards the vertex at index i, if it is needed. The largest child on the way is shifted up
+         * into the hole, and the vertex is written once at its final index.
+         *
+         * time complexity: O(d * log_d(n)).
+         *
+         * @param i - an index to correct in the heap.
+         */
+        public void heapifyDown(int i) {
+            int vertex = this.heapVertices[i];
+            int key = this.heapKeys[i];
+            int first = this.firstChild(i);
+            int swaps = 0;
+            while (first < this.size) {
+                //Finds the largest child.
+                int last = Math.min(first + this.arity, this.size);
+                int largest = first;
+                int largestKey = this.heapKeys[first];
+                for (int child = first + 1; child < last; child++) {
+                    if (this.heapKeys[child] > largestKey) {
+                        largest = child;
+                        largestKey = this.heapKeys[child];
+                    }
+                }
+                if (largestKey <= key) {
+                    break;
+                }
+                this.setAtIndex(this.heapVertices[largest], largestKey, i);
+                i = largest;
+                first = this.firstChild(i);
+                swaps += 1;
+            }
+            this.setAtIndex(vertex, key, i);
+            if (STATS_ENABLED && this.stats != null) {
+                this.stats.recordSift(swaps);
+            }
+        }
+
+
+        /**
+         * Rearranges the vertices of the heap into a legal d-ary max-heap, bottom-up.
+         *
+         * time complexity: O(n).
+         */
+        @Override
+        public void buildHeap() {
+            if (this.size <= 1) {
+                return;
+            }
+            int j = this.parent(this.size - 1);
+            while (j >= 0) {
+                this.heapifyDown(j);
+                j -= 1;
+            }
+        }
+
+
+        /**
+         * Makes sure that vertices whose indices in the neighborhoods list are smaller than numVertices
+         * can be inserted to the heap, by doubling the arrays of the heap.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @param numVertices - the number of indices in the neighborhoods list.
+         */
+        @Override
+        public void ensureCapacity(int numVertices) {
+            if (numVertices > this.positions.length) {
+                int oldCapacity = this.positions.length;
+                int capacity = Math.max(numVertices, Math.max(4, 2 * oldCapacity));
+                this.positions = java.util.Arrays.copyOf(this.positions, capacity);
+                java.util.Arrays.fill(this.positions, oldCapacity, capacity, -1);
+            }
+            if (numVertices > this.heapVertices.length) {
+                int capacity = Math.max(numVertices, Math.max(4, 2 * this.heapVertices.length));
+                this.heapVertices = java.util.Arrays.copyOf(this.heapVertices, capacity);
+                this.heapKeys = java.util.Arrays.copyOf(this.heapKeys, capacity);
+            }
+        }
+
+
+        /**
+         * Inserts a vertex, which is not in the heap, to the heap with the given key.
+         *
+         * time complexity: O(log_d(n)) amortized.
+         *
+         * @param vertex - the index of a vertex in the neighborhoods list.
+         * @param key - the key (neighborhood weight) of the vertex.
+         */
+        @Override
+        public void insert(int vertex, int key) {
+            this.ensureCapacity(Math.max(vertex + 1, this.size + 1));
+            this.setAtIndex(vertex, key, this.size);
+            this.size += 1;
+            this.heapifyUp(this.size - 1);
+        }
+
+
+        /**
+         * Deletes a vertex from the heap, and corrects the vertex that took its place.
+         *
+         * time complexity: O(d * log_d(n)).
+         *
+         * @param vertex - the index of a vertex in the heap.
+         */
+        @Override
+        public void delete(int vertex) {
+            int i = this.positions[vertex];
+            this.deleteWithoutCorrection(vertex);
+            if (i < this.size) {
+                if (i > 0 && this.heapKeys[i] > this.heapKeys[this.parent(i)]) {
+                    this.heapifyUp(i);
+                } else {
+                    this.heapifyDown(i);
+                }
+            }
+        }
+
+
+        /**
+         * Deletes a vertex from the heap by moving the last vertex to its place, without correcting the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @param vertex - the index of a vertex in the heap.
+         */
+        @Override
+        public void deleteWithoutCorrection(int vertex) {
+            int i = this.positions[vertex];
+            int last = this.size - 1;
+            if (i != last) {
+                this.setAtIndex(this.heapVertices[last], this.heapKeys[last], i);
+            }
+            if (this.snapshots != null) {
+                this.snapshots.beforeWrite(ReadSnapshot.HEAP_POSITIONS, this.positions, vertex);
+            }
+            this.positions[vertex] = -1;
+            this.size -= 1;
+        }
+
+
+        /**
+         * Sets the key of a vertex in the heap without correcting the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param key - the new key of the vertex.
+         */
+        @Override
+        public void setKeyWithoutCorrection(int vertex, int key) {
+            if (this.snapshots != null) {
+                this.snapshots.beforeWrite(ReadSnapshot.HEAP_KEYS, this.heapKeys, this.positions[vertex]);
+            }
+            this.heapKeys[this.positions[vertex]] = key;
+        }
+
+
+        /**
+         * Increases the neighborhood weight of a vertex by delta.
+         *
+         * time complexity: O(log_d(n)).
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param delta - a non-negative number to increase by.
+         */
+        @Override
+        public void increaseNeighborhoodWeight(int vertex, int delta) {
+            int i = this.positions[vertex];
+            if (this.snapshots != null) {
+                this.snapshots.beforeWrite(ReadSnapshot.HEAP_KEYS, this.heapKeys, i);
+            }
+            this.heapKeys[i] += delta;
+            this.heapifyUp(i);
+        }
+
+
+        /**
+         * Decreases the neighborhood weight of a vertex by delta.
+         *
+         * time complexity: O(d * log_d(n)).
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param delta - a non-negative number to decrease by.
+         */
+        @Override
+        public void decreaseNeighborhoodWeight(int vertex, int delta) {
+            int i = this.positions[vertex];
+            if (this.snapshots != null) {
+                this.snapshots.beforeWrite(ReadSnapshot.HEAP_KEYS, this.heapKeys, i);
+            }
+            this.heapKeys[i] -= delta;
+            this.heapifyDown(i);
+        }
+
+
+        /**
+         * Changes the neighborhood weight of a vertex by delta, which may be negative.
+         *
+         * time complexity: O(d * log_d(n)).
+         *
+         * @param vertex - the index of a vertex in the heap.
+         * @param delta - a number to increase by (or to decrease by its absolute value, if it is negative).
+         */
+        @Override
+        public void changeNeighborhoodWeight(int vertex, int delta) {
+            if (delta > 0) {
+                this.increaseNeighborhoodWeight(vertex, delta);
+            } else if (delta < 0) {
+                this.decreaseNeighborhoodWeight(vertex, -delta);
+            }
+        }
+
+
+        /**
+         * Writes the k vertices with the maximal keys, by non-increasing key, to the array vertices.
+         * The heap is not changed: the candidates for the next maximum (the children of the vertices that were
+         * already written) are kept in an auxiliary binary max-heap, where every candidate is packed into a long,
+         * with its key in the high 32 bits and its index in the heap in the low 32 bits.
+         *
+         * time complexity: O(k * d * log(k * d)).
+         *
+         * @param k - the number of vertices to write, at most the size of the heap.
+         * @param vertices - an array of length at least k to write the vertices to.
+         * @return the number of vertices that were written.
+         */
+        @Override
+        public int topK(int k, int[] vertices) {
+            if (k <= 0 || this.size == 0) {
+                return 0;
+            }
+            long[] candidates = new long[k * (this.arity - 1) + 1];
+            int numCandidates = 0;
+            candidates[numCandidates++] = this.candidate(0);
+
+            int count = 0;
+            while (count < k) {
+                //Pops the maximal candidate.
+                int i = (int) candidates[0];
+                vertices[count++] = this.heapVertices[i];
+                candidates[0] = candidates[--numCandidates];
+                siftDownCandidates(candidates, numCandidates, 0);
+
+                //Pushes its children.
+                int first = this.firstChild(i);
+                int last = Math.min(first + this.arity, this.size);
+                for (int child = first; child < last; child++) {
+                    candidates[numCandidates] = this.candidate(child);
+                    siftUpCandidates(candidates, numCandidates++);
+                }
+            }
+            return count;
+        }
+
+
+        /**
+         * Returns the array of the vertex at every index in the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @return the array of the vertices of the heap.
+         */
+        @Override
+        public int[] getHeapVertices() {
+            return this.heapVertices;
+        }
+
+
+        /**
+         * Returns the array of the key at every index in the heap.
+         *
+         * time complexity: O(1).
+         *
+         * @return the array of the keys of the heap.
+         */
+        @Override
+        public int[] getHeapKeys() {
+            return this.heapKeys;
+        }
+
+
+        /**
+         * Returns the array of the index in the heap of every vertex.
+         *
+         * time complexity: O(1).
+         *
+         * @return the array of the positions of the vertices.
+         */
+        @Override
+        public int[] getPositions() {
+            return this.positions;
+        }
+
+
+        /**
+         * Installs (or removes) the write barrier of the open read snapshots.
+         *
+         * time complexity: O(1).
+         *
+         * @param registry - the registry of the open snapshots, or 'null'.
+         */
+        @Override
+        public void setSnapshotRegistry(SnapshotRegistry registry) {
+            this.snapshots = registry;
+        }
+
+
+        /**
+         * Returns the vertex at index i packed as a candidate for topK: its key in the high 32 bits and
+         * its index in the heap in the low 32 bits, so candidates are ordered by their keys.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the heap.
+         * @return the vertex at index i packed into a long.
+         */
+        public long candidate(int i) {
+            return ((long) this.heapKeys[i] << 32) | i;
+        }
+
+
+        /**
+         * Corrects upwards the candidate at index i in a binary max-heap of candidates.
+         *
+         * time complexity: O(log(i)).
+         *
+         * @param candidates - the array of the heap of candidates.
+         * @param i - an index to correct in the heap of candidates.
+         */
+        public static void siftUpCandidates(long[] candidates, int i) {
+            long candidate = candidates[i];
+            while (i > 0 && candidates[(i - 1) / 2] < candidate) {
+                candidates[i] = candidates[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            candidates[i] = candidate;
+        }
+
+
+        /**
+         * Corrects downwards the candidate at index i in a binary max-heap of candidates.
+         *
+         * time complexity: O(log(size)).
+         *
+         * @param candidates - the array of the heap of candidates.
+         * @param size - the number of candidates in the heap.
+         * @param i - an index to correct in the heap of candidates.
+         */
+        public static void siftDownCandidates(long[] candidates, int size, int i) {
+            long candidate = candidates[i];
+            int child = 2 * i + 1;
+            while (child < size) {
+                if (child + 1 < size && candidates[child + 1] > candidates[child]) {
+                    child += 1;
+                }
+                if (candidates[child] <= candidate) {
+                    break;
+                }
+                candidates[i] = candidates[child];
+                i = child;
+                child = 2 * i + 1;
+            }
+            candidates[i] = candidate;
+        }
+    }
+
+
+
+    /**
+     * This class implements specific necessary operations of the ADT dictionary (and more) by an open-addressing
+     * hash table with linear probing, which maps node id to the fixed index of the vertex in the neighborhoods list.
+     * The keys and the values are kept in two parallel arrays of primitives, so no operation allocates objects
+     * and a probe sequence scans contiguous memory.
+     */
+    public static class IdIndex {
+        /**
+         * The maximal ratio between the number of keys and the length of the table.
+         */
+        public static final double MAX_LOAD_FACTOR = 0.5;
+
+        /**
+         * The value which marks an empty cell in the table (the indices in the neighborhoods list are non-negative).
+         */
+        public static final int EMPTY = -1;
+
+        /**
+         * A random odd number that is used for the multiplicative hash function.
+         */
+        public int a;
+
+        /**
+         * The number of bits to shift the product by in the multiplicative hash function,
+         * that is, 32 - log(length of the table).
+         */
+        public int shift;
+
+        /**
+         * The keys (node ids) of the hash table. A key is meaningful only if its value is not EMPTY.
+         */
+        public int[] keys;
+
+        /**
+         * The values (indices in the neighborhoods list) of the hash table, or EMPTY for an empty cell.
+         */
+        public int[] values;
+
+        /**
+         * The number of keys in the hash table.
+         */
+        public int size;
+
+        /**
+         * The counters of the probes, or 'null'.
+         */
+        public GraphStats stats;
+
+        /**
+         * The write barrier of the open read snapshots of the graph, or 'null' if there are none.
+         */
+        public SnapshotRegistry snapshots;
+
+
+        /**
+         * Initializes the hash table that maps node id to the fixed index of the vertex in the neighborhoods list.
+         * The index of every vertex in the neighborhoods list is its index in the array nodes.
+         *
+         * time complexity: O(n) expected.
+         *
+         * @param nodes - an array of node objects
+         */
+        public IdIndex(Node[] nodes) {
+            this(nodes.length);
+
+            //Inserts the elements to the hash table.
+            for (int i = 0; i < nodes.length; i++) {
+                this.insert(nodes[i].getId(), i);
+            }
+        }
+
+
+        /**
+         * Initializes an empty hash table which can keep expectedSize keys without exceeding the maximal load factor.
+         *
+         * time complexity: O(expectedSize).
+         *
+         * @param expectedSize - the number of keys that the hash table should be able to keep.
+         */
+        public IdIndex(int expectedSize) {
+            int length = 4;
+            while (length * MAX_LOAD_FACTOR < expectedSize) {
+                length *= 2;
+            }
+            this.keys = new int[length];
+            this.values = new int[length];
+            java.util.Arrays.fill(this.values, EMPTY);
+            this.size = 0;
+
+            //Initializes the multiplicative hash function.
+            this.a = new Random().nextInt() | 1;
+            this.shift = Integer.numberOfLeadingZeros(length) + 1;
+        }
+
+
+        /**
+         * Returns the cell in the hash table where the probe sequence of the key node_id starts.
+         *
+         * time complexity: O(1).
+         *
+         * @param node_id - an id of a vertex.
+         * @return the cell in the hash table where the probe sequence of the key node_id starts.
+         */
+        public int hash(int node_id) {
+            return (this.a * node_id) >>> this.shift;
+        }
+
+
+        /**
+         * Returns the cell in the hash table that keeps the key node_id, or -1 if the key is not in the hash table.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - an id of a vertex.
+         * @return the cell in the hash table that keeps the key node_id, or -1 if such a cell does not exist.
+         */
+        public int findCell(int node_id) {
+            int mask = this.keys.length - 1;
+            int i = this.hash(node_id);
+            int probes = 1;
+            while (this.values[i] != EMPTY) {
+                if (this.keys[i] == node_id) {
+                    if (STATS_ENABLED && this.stats != null) {
+                        this.stats.recordIdProbes(probes);
+                    }
+                    return i;
+                }
+                i = (i + 1) & mask;
+                probes += 1;
+            }
+            if (STATS_ENABLED && this.stats != null) {
+                this.stats.recordIdProbes(probes);
+            }
+            return -1;
+        }
+
+
+        /**
+         * Returns the index in the neighborhoods list of the vertex with the key node_id,
+         * or -1 if the key is not in the hash table.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - an id of a vertex.
+         * @return the index in the neighborhoods list of the vertex with the key node_id,
+         * or -1 if such a vertex does not exist.
+         */
+        public int find(int node_id) {
+            int cell = this.findCell(node_id);
+            return cell == -1 ? -1 : this.values[cell];
+        }
+
+
+        /**
+         * Returns the index in the neighborhoods list of the vertex with the key node_id,
+         * or -1 if the key is not in the hash table, exactly as find, but without recording the probes in the stats.
+         * Unlike find, it is safe to call from several threads at once, while the hash table is not modified.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - an id of a vertex.
+         * @return the index in the neighborhoods list of the vertex with the key node_id,
+         * or -1 if such a vertex does not exist.
+         */
+        public int findUncounted(int node_id) {
+            int mask = this.keys.length - 1;
+            int i = this.hash(node_id);
+            while (this.values[i] != EMPTY) {
+                if (this.keys[i] == node_id) {
+                    return this.values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+
+        /**
+         * If the key node_id does not exist in the table, inserts it with the value nodeNListIndex.
+         * Otherwise, the function does nothing. The table is doubled if the load factor would exceed MAX_LOAD_FACTOR.
+         *
+         * time complexity: O(1) amortized expected.
+         *
+         * @param node_id - an id of a vertex
+         * @param nodeNListIndex - the index of a vertex with the id node_id (this is the
+         *                       fixed index of the vertex in the neighborhoods list)
+         */
+        public void insert(int node_id, int nodeNListIndex) {
+            if (this.size + 1 > this.keys.length * MAX_LOAD_FACTOR) {
+                this.rehash(2 * this.keys.length);
+            }
+            int mask = this.keys.length - 1;
+            int i = this.hash(node_id);
+            while (this.values[i] != EMPTY) {
+                if (this.keys[i] == node_id) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            SnapshotRegistry snapshots = this.snapshots;
+            if (snapshots != null) {
+                snapshots.beforeWrite(ReadSnapshot.ID_KEYS, this.keys, i);
+                snapshots.beforeWrite(ReadSnapshot.ID_VALUES, this.values, i);
+            }
+            this.keys[i] = node_id;
+            this.values[i] = nodeNListIndex;
+            this.size += 1;
+        }
+
+
+        /**
+         * Moves all the keys of the hash table to a new table of the given length, with a new hash function.
+         *
+         * time complexity: O(length) expected.
+         *
+         * @param length - the length of the new table, which is a power of 2.
+         */
+        public void rehash(int length) {
+            int[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new int[length];
+            this.values = new int[length];
+            java.util.Arrays.fill(this.values, EMPTY);
+            this.size = 0;
+            this.a = new Random().nextInt() | 1;
+            this.shift = Integer.numberOfLeadingZeros(length) + 1;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != EMPTY) {
+                    this.insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+
+        /**
+         * Deletes the key node_id from the hash table, if it exists.
+         * The following keys of the probe run are shifted backwards, so no tombstones are left in the table.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - an id of a vertex.
+         * @return the index in the neighborhoods list of the deleted vertex,
+         * or -1 if the key node_id does not exist.
+         */
+        public int delete(int node_id) {
+            int hole = this.findCell(node_id);
+            if (hole == -1) {
+                return -1;
+            }
+            int nodeNListIndex = this.values[hole];
+
+            //Shifts backwards every following key of the run which may not skip over the hole.
+            int mask = this.keys.length - 1;
+            int i = (hole + 1) & mask;
+            while (this.values[i] != EMPTY) {
+                int home = this.hash(this.keys[i]);
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    SnapshotRegistry snapshots = this.snapshots;
+                    if (snapshots != null) {
+                        snapshots.beforeWrite(ReadSnapshot.ID_KEYS, this.keys, hole);
+                        snapshots.beforeWrite(ReadSnapshot.ID_VALUES, this.values, hole);
+                    }
+                    this.keys[hole] = this.keys[i];
+                    this.values[hole] = this.values[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            if (this.snapshots != null) {
+                this.snapshots.beforeWrite(ReadSnapshot.ID_VALUES, this.values, hole);
+            }
+            this.values[hole] = EMPTY;
+            this.size -= 1;
+            return nodeNListIndex;
+        }
+    }
+
+
+    /**
+     * This class implements specific necessary operations of the ADT dictionary by an open-addressing hash table
+     * with linear probing, which maps an (unordered) pair of vertices to a cell of an edge between them.
+     * A pair is packed into a long key, and the keys and the values are kept in two parallel arrays of primitives.
+     */
+    public static class EdgeIndex {
+        /**
+         * The maximal ratio between the number of keys and the length of the table.
+         */
+        public static final double MAX_LOAD_FACTOR = 0.5;
+
+        /**
+         * The value which marks an empty cell in the table (the cells of edges are non-negative).
+         */
+        public static final int EMPTY = -1;
+
+        /**
+         * A random odd number that is used for the multiplicative hash function.
+         */
+        public long a;
+
+        /**
+         * The number of bits to shift the product by in the multiplicative hash function,
+         * that is, 64 - log(length of the table).
+         */
+        public int shift;
+
+        /**
+         * The keys (packed pairs of vertices) of the hash table. A key is meaningful only if its value is not EMPTY.
+         */
+        public LongArray keys;
+
+        /**
+         * The values (cells of edges) of the hash table, or EMPTY for an empty cell.
+         */
+        public IntArray values;
+
+        /**
+         * Whether the table is kept off-heap.
+         */
+        public final boolean offHeap;
+
+        /**
+         * The number of keys in the hash table.
+         */
+        public int size;
+
+        /**
+         * The counters of the probes, or 'null'.
+         */
+        public GraphStats stats;
+
+
+        /**
+         * Initializes an empty hash table which can keep expectedSize keys without exceeding the maximal load factor.
+         *
+         * time complexity: O(expectedSize).
+         *
+         * @param expectedSize - the number of keys that the hash table should be able to keep.
+         * @param offHeap - whether the table is kept off-heap.
+         */
+        public EdgeIndex(int expectedSize, boolean offHeap) {
+            this.offHeap = offHeap;
+            int length = 4;
+            while (length * MAX_LOAD_FACTOR < expectedSize) {
+                length *= 2;
+            }
+            this.initTable(length);
+        }
+
+
+        /**
+         * Returns the key of the (unordered) pair of the two given numbers: the smaller one in the high 32 bits,
+         * and the larger one in the low 32 bits.
+         *
+         * time complexity: O(1).
+         *
+         * @param x - a number.
+         * @param y - a number.
+         * @return the key of the pair {x, y}.
+         */
+        public static long key(int x, int y) {
+            int min = Math.min(x, y);
+            int max = Math.max(x, y);
+            return ((long) min << 32) | (max & 0xFFFFFFFFL);
+        }
+
+
+        /**
+         * Replaces the table with an empty table of the given length, with a new hash function.
+         *
+         * time complexity: O(length).
+         *
+         * @param length - the length of the new table, which is a power of 2.
+         */
+        public void initTable(int length) {
+            this.keys = new LongArray(length, this.offHeap);
+            this.values = new IntArray(length, this.offHeap);
+            this.values.fill(0, length, EMPTY);
+            this.size = 0;
+            this.a = new Random().nextLong() | 1;
+            this.shift = Long.numberOfLeadingZeros(length) + 1;
+        }
+
+
+        /**
+         * Returns the cell in the hash table where the probe sequence of key starts.
+         *
+         * time complexity: O(1).
+         *
+         * @param key - a packed pair of vertices.
+         * @return the cell in the hash table where the probe sequence of key starts.
+         */
+        public int hash(long key) {
+            return (int) ((this.a * key) >>> this.shift);
+        }
+
+
+        /**
+         * Returns the cell in the hash table that keeps key, or -1 if the key is not in the hash table.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param key - a packed pair of vertices.
+         * @return the cell in the hash table that keeps key, or -1 if such a cell does not exist.
+         */
+        public int findCell(long key) {
+            int mask = this.keys.length - 1;
+            int i = this.hash(key);
+            int probes = 1;
+            while (this.values.get(i) != EMPTY) {
+                if (this.keys.get(i) == key) {
+                    if (STATS_ENABLED && this.stats != null) {
+                        this.stats.recordEdgeProbes(probes);
+                    }
+                    return i;
+                }
+                i = (i + 1) & mask;
+                probes += 1;
+            }
+            if (STATS_ENABLED && this.stats != null) {
+                this.stats.recordEdgeProbes(probes);
+            }
+            return -1;
+        }
+
+
+        /**
+         * Returns the value of key, or EMPTY if the key is not in the hash table.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param key - a packed pair of vertices.
+         * @return the value of key, or EMPTY if the key is not in the hash table.
+         */
+        public int find(long key) {
+            int cell = this.findCell(key);
+            return cell == -1 ? EMPTY : this.values.get(cell);
+        }
+
+
+        /**
+         * Sets the value of key, and inserts the key if it does not exist in the table.
+         * The table is doubled if the load factor would exceed MAX_LOAD_FACTOR.
+         *
+         * time complexity: O(1) amortized expected.
+         *
+         * @param key - a packed pair of vertices.
+         * @param value - a cell of an edge.
+         * @return the previous value of key, or EMPTY if the key was not in the hash table.
+         */
+        public int put(long key, int value) {
+            int mask = this.keys.length - 1;
+            int i = this.hash(key);
+            while (this.values.get(i) != EMPTY) {
+                if (this.keys.get(i) == key) {
+                    int previous = this.values.get(i);
+                    this.values.set(i, value);
+                    return previous;
+                }
+                i = (i + 1) & mask;
+            }
+            if (this.size + 1 > this.keys.length * MAX_LOAD_FACTOR) {
+                this.rehash(2 * this.keys.length);
+                return this.put(key, value);
+            }
+            this.keys.set(i, key);
+            this.values.set(i, value);
+            this.size += 1;
+            return EMPTY;
+        }
+
+
+        /**
+         * Moves all the keys of the hash table to a new table of the given length, with a new hash function.
+         *
+         * time complexity: O(length) expected.
+         *
+         * @param length - the length of the new table, which is a power of 2.
+         */
+        public void rehash(int length) {
+            LongArray oldKeys = this.keys;
+            IntArray oldValues = this.values;
+            this.initTable(length);
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues.get(i) != EMPTY) {
+                    this.put(oldKeys.get(i), oldValues.get(i));
+                }
+            }
+        }
+
+
+        /**
+         * Deletes key from the hash table, if it exists.
+         * The following keys of the probe run are shifted backwards, so no tombstones are left in the table.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param key - a packed pair of vertices.
+         * @return the value of the deleted key, or EMPTY if the key does not exist.
+         */
+        public int delete(long key) {
+            int hole = this.findCell(key);
+            if (hole == -1) {
+                return EMPTY;
+            }
+            int value = this.values.get(hole);
+
+            //Shifts backwards every following key of the run which may not skip over the hole.
+            int mask = this.keys.length - 1;
+            int i = (hole + 1) & mask;
+            while (this.values.get(i) != EMPTY) {
+                int home = this.hash(this.keys.get(i));
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    this.keys.set(hole, this.keys.get(i));
+                    this.values.set(hole, this.values.get(i));
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            this.values.set(hole, EMPTY);
+            this.size -= 1;
+            return value;
+        }
+    }
+
+
+
+    /**
+     * This class represents a fixed-length array of ints, which is kept either in an int[] on the Java heap, or
+     * off-heap in pages of direct buffers, as chosen when the array is created. The garbage collector sees only the
+     * few page objects of an off-heap array and never its elements, which do not count against the maximal heap size
+     * (but against -XX:MaxDirectMemorySize). Both kinds are accessed through the same final methods, so an access
+     * to an array on the heap costs one more load and a branch that is always predicted.
+     */
+    public static final class IntArray {
+        /**
+         * Log2 of the number of ints in a page of an off-heap array.
+         */
+        public static final int PAGE_SHIFT = 20;
+
+        /**
+         * The number of ints in a page of an off-heap array (the last page may be shorter).
+         */
+        public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+        /**
+         * The elements of the array, or 'null' if the array is off-heap.
+         */
+        public final int[] array;
+
+        /**
+         * The pages of the elements of the array in native byte order, or 'null' if the array is on the heap.
+         */
+        public final IntBuffer[] pages;
+
+        /**
+         * The number of elements in the array.
+         */
+        public final int length;
+
+
+        /**
+         * Creates an array of zeros of the given length.
+         *
+         * time complexity: O(length).
+         *
+         * @param length - the number of elements in the array.
+         * @param offHeap - 'true' to keep the elements in direct buffers, 'false' to keep them in an int[].
+         */
+        public IntArray(int length, boolean offHeap) {
+            this.length = length;
+            if (!offHeap) {
+                this.array = new int[length];
+                this.pages = null;
+                return;
+            }
+            this.array = null;
+            this.pages = new IntBuffer[(length + PAGE_SIZE - 1) >>> PAGE_SHIFT];
+            for (int page = 0; page < this.pages.length; page++) {
+                int pageLength = Math.min(PAGE_SIZE, length - (page << PAGE_SHIFT));
+                this.pages[page] = ByteBuffer.allocateDirect(4 * pageLength).order(ByteOrder.nativeOrder())
+                        .asIntBuffer();
+            }
+        }
+
+
+        /**
+         * Creates an array on the heap whose elements are kept in the given int[] (which is not copied).
+         *
+         * time complexity: O(1).
+         *
+         * @param array - the elements of the array.
+         */
+        public IntArray(int[] array) {
+            this.length = array.length;
+            this.array = array;
+            this.pages = null;
+        }
+
+
+        /**
+         * Returns whether the elements of the array are kept off-heap.
+         *
+         * time complexity: O(1).
+         *
+         * @return 'true' if the array is off-heap, otherwise 'false'.
+         */
+        public boolean isOffHeap() {
+            return this.array == null;
+        }
+
+
+        /**
+         * Returns the element at an index.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the array.
+         * @return the element at the index.
+         */
+        public int get(int i) {
+            int[] array = this.array;
+            if (array != null) {
+                return array[i];
+            }
+            return this.pages[i >>> PAGE_SHIFT].get(i & (PAGE_SIZE - 1));
+        }
+
+
+        /**
+         * Sets the element at an index.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the array.
+         * @param value - the new element.
+         */
+        public void set(int i, int value) {
+            int[] array = this.array;
+            if (array != null) {
+                array[i] = value;
+                return;
+            }
+            this.pages[i >>> PAGE_SHIFT].put(i & (PAGE_SIZE - 1), value);
+        }
+
+
+        /**
+         * Sets the elements from (inclusive) to to (exclusive) to a value.
+         *
+         * time complexity: O(to - from).
+         *
+         * @param from - the first index to set.
+         * @param to - the index after the last index to set.
+         * @param value - the new element.
+         */
+        public void fill(int from, int to, int value) {
+            if (this.array != null) {
+                java.util.Arrays.fill(this.array, from, to, value);
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                this.set(i, value);
+            }
+        }
+
+
+        /**
+         * Returns a buffer of count elements from an index, which shares them with the array. The elements must be
+         * in a single page, that is, count is at most the distance of from to the end of its page.
+         *
+         * time complexity: O(1).
+         *
+         * @param from - the first index.
+         * @param count - the number of elements.
+         * @return a buffer whose remaining elements are the elements from (inclusive) to from + count (exclusive).
+         */
+        public IntBuffer view(int from, int count) {
+            if (this.array != null) {
+                return IntBuffer.wrap(this.array, from, count);
+            }
+            int offset = from & (PAGE_SIZE - 1);
+            return this.pages[from >>> PAGE_SHIFT].duplicate().limit(offset + count).position(offset);
+        }
+
+
+        /**
+         * Returns the number of elements from an index to the end of its page (or of the array, if it is shorter).
+         *
+         * time complexity: O(1).
+         *
+         * @param from - an index in the array.
+         * @return the number of elements that view may return from the index.
+         */
+        public int run(int from) {
+            if (this.array != null) {
+                return this.length - from;
+            }
+            return Math.min(PAGE_SIZE - (from & (PAGE_SIZE - 1)), this.length - from);
+        }
+
+
+        /**
+         * Copies the elements from (inclusive) to to (exclusive) to a new int[], in bulk copies.
+         *
+         * time complexity: O(to - from).
+         *
+         * @param from - the first index to copy.
+         * @param to - the index after the last index to copy.
+         * @return the copied elements.
+         */
+        public int[] toArray(int from, int to) {
+            if (this.array != null) {
+                return java.util.Arrays.copyOfRange(this.array, from, to);
+            }
+            int[] copy = new int[to - from];
+            for (int i = from; i < to; ) {
+                int count = Math.min(to - i, this.run(i));
+                this.view(i, count).get(copy, i - from, count);
+                i += count;
+            }
+            return copy;
+        }
+
+
+        /**
+         * Returns a new array of the same kind with the given length, which starts with the elements of this array
+         * (and is padded with zeros), in bulk copies.
+         *
+         * time complexity: O(length).
+         *
+         * @param length - the length of the new array.
+         * @return the new array.
+         */
+        public IntArray copyOf(int length) {
+            if (this.array != null) {
+                return new IntArray(java.util.Arrays.copyOf(this.array, length));
+            }
+            IntArray copy = new IntArray(length, true);
+            int end = Math.min(this.length, length);
+            for (int i = 0; i < end; ) {
+                int count = Math.min(end - i, this.run(i));
+                copy.view(i, count).put(this.view(i, count));
+                i += count;
+            }
+            return copy;
+        }
+    }
+
+
+
+    /**
+     * This class represents a fixed-length array of longs, which is kept either in a long[] on the Java heap, or
+     * off-heap in pages of direct buffers, as chosen when the array is created (as IntArray).
+     */
+    public static final class LongArray {
+        /**
+         * Log2 of the number of longs in a page of an off-heap array.
+         */
+        public static final int PAGE_SHIFT = 20;
+
+        /**
+         * The number of longs in a page of an off-heap array (the last page may be shorter).
+         */
+        public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+        /**
+         * The elements of the array, or 'null' if the array is off-heap.
+         */
+        public final long[] array;
+
+        /**
+         * The pages of the elements of the array in native byte order, or 'null' if the array is on the heap.
+         */
+        public final LongBuffer[] pages;
+
+        /**
+         * The number of elements in the array.
+         */
+        public final int length;
+
+
+        /**
+         * Creates an array of zeros of the given length.
+         *
+         * time complexity: O(length).
+         *
+         * @param length - the number of elements in the array.
+         * @param offHeap - 'true' to keep the elements in direct buffers, 'false' to keep them in a long[].
+         */
+        public LongArray(int length, boolean offHeap) {
+            this.length = length;
+            if (!offHeap) {
+                this.array = new long[length];
+                this.pages = null;
+                return;
+            }
+            this.array = null;
+            this.pages = new LongBuffer[(length + PAGE_SIZE - 1) >>> PAGE_SHIFT];
+            for (int page = 0; page < this.pages.length; page++) {
+                int pageLength = Math.min(PAGE_SIZE, length - (page << PAGE_SHIFT));
+                this.pages[page] = ByteBuffer.allocateDirect(8 * pageLength).order(ByteOrder.nativeOrder())
+                        .asLongBuffer();
+            }
+        }
+
+
+        /**
+         * Creates an array on the heap whose elements are kept in the given long[] (which is not copied).
+         *
+         * time complexity: O(1).
+         *
+         * @param array - the elements of the array.
+         */
+        public LongArray(long[] array) {
+            this.length = array.length;
+            this.array = array;
+            this.pages = null;
+        }
+
+
+        /**
+         * Returns the element at an index.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the array.
+         * @return the element at the index.
+         */
+        public long get(int i) {
+            long[] array = this.array;
+            if (array != null) {
+                return array[i];
+            }
+            return this.pages[i >>> PAGE_SHIFT].get(i & (PAGE_SIZE - 1));
+        }
+
+
+        /**
+         * Sets the element at an index.
+         *
+         * time complexity: O(1).
+         *
+         * @param i - an index in the array.
+         * @param value - the new element.
+         */
+        public void set(int i, long value) {
+            long[] array = this.array;
+            if (array != null) {
+                array[i] = value;
+                return;
+            }
+            this.pages[i >>> PAGE_SHIFT].put(i & (PAGE_SIZE - 1), value);
+        }
+
+
+        /**
+         * Returns a buffer of count elements from an index, which shares them with the array, as IntArray.view.
+         *
+         * time complexity: O(1).
+         *
+         * @param from - the first index.
+         * @param count - the number of elements, at most the distance of from to the end of its page.
+         * @return a buffer whose remaining elements are the elements from (inclusive) to from + count (exclusive).
+         */
+        public LongBuffer view(int from, int count) {
+            if (this.array != null) {
+                return LongBuffer.wrap(this.array, from, count);
+            }
+            int offset = from & (PAGE_SIZE - 1);
+            return this.pages[from >>> PAGE_SHIFT].duplicate().limit(offset + count).position(offset);
+        }
+
+
+        /**
+         * Returns the number of elements from an index to the end of its page (or of the array, if it is shorter).
+         *
+         * time complexity: O(1).
+         *
+         * @param from - an index in the array.
+         * @return the number of elements that view may return from the index.
+         */
+        public int run(int from) {
+            if (this.array != null) {
+                return this.length - from;
+            }
+            return Math.min(PAGE_SIZE - (from & (PAGE_SIZE - 1)), this.length - from);
+        }
+    }
+
+
+
+    /**
+     * This class writes the primitives of a snapshot file in little-endian order, through a direct buffer.
+     */
+    public static class SnapshotWriter implements AutoCloseable {
+        /**
+         * The length in bytes of the buffer.
+         */
+        public static final int BUFFER_SIZE = 1 << 20;
+
+        /**
+         * The channel of the file.
+         */
+        public final FileChannel channel;
+
+        /**
+         * The buffer of the bytes that are not written to the channel yet.
+         */
+        public final ByteBuffer buffer;
+
+
+        /**
+         * Creates (or truncates) the file and opens it for writing.
+         *
+         * time complexity: O(1).
+         *
+         * @param path - the path of the file.
+         * @throws IOException if the file cannot be opened.
+         */
+        public SnapshotWriter(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+
+        /**
+         * Writes an int.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @param x - the int to write.
+         * @throws IOException if the file cannot be written.
+         */
+        public void writeInt(int x) throws IOException {
+            if (this.buffer.remaining() < 4) {
+                this.flush();
+            }
+            this.buffer.putInt(x);
+        }
+
+
+        /**
+         * Writes a long.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @param x - the long to write.
+         * @throws IOException if the file cannot be written.
+         */
+        public void writeLong(long x) throws IOException {
+            if (this.buffer.remaining() < 8) {
+                this.flush();
+            }
+            this.buffer.putLong(x);
+        }
+
+
+        /**
+         * Writes the cells from (inclusive) to to (exclusive) of an int array, in bulk copies.
+         *
+         * time complexity: O(to - from).
+         *
+         * @param array - an int array.
+         * @param from - the first cell to write.
+         * @param to - the cell after the last cell to write.
+         * @throws IOException if the file cannot be written.
+         */
+        public void writeInts(int[] array, int from, int to) throws IOException {
+            while (from < to) {
+                if (this.buffer.remaining() < 4) {
+                    this.flush();
+                }
+                int count = Math.min(to - from, this.buffer.remaining() / 4);
+                this.buffer.asIntBuffer().put(array, from, count);
+                this.buffer.position(this.buffer.position() + 4 * count);
+                from += count;
+            }
+        }
+
+
+        /**
+         * Writes the cells from (inclusive) to to (exclusive) of an IntArray (on the heap or off-heap),
+         * in bulk copies.
+         *
+         * time complexity: O(to - from).
+         *
+         * @param array - an IntArray.
+         * @param from - the first cell to write.
+         * @param to - the cell after the last cell to write.
+         * @throws IOException if the file cannot be written.
+         */
+        public void writeInts(IntArray array, int from, int to) throws IOException {
+            while (from < to) {
+                if (this.buffer.remaining() < 4) {
+                    this.flush();
+                }
+                int count = Math.min(Math.min(to - from, this.buffer.remaining() / 4), array.run(from));
+                this.buffer.asIntBuffer().put(array.view(from, count));
+                this.buffer.position(this.buffer.position() + 4 * count);
+                from += count;
+            }
+        }
+
+
+        /**
+         * Writes the cells from (inclusive) to to (exclusive) of a LongArray (on the heap or off-heap),
+         * in bulk copies.
+         *
+         * time complexity: O(to - from).
+         *
+         * @param array - a LongArray.
+         * @param from - the first cell to write.
+         * @param to - the cell after the last cell to write.
+         * @throws IOException if the file cannot be written.
+         */
+        public void writeLongs(LongArray array, int from, int to) throws IOException {
+            while (from < to) {
+                if (this.buffer.remaining() < 8) {
+                    this.flush();
+                }
+                int count = Math.min(Math.min(to - from, this.buffer.remaining() / 8), array.run(from));
+                this.buffer.asLongBuffer().put(array.view(from, count));
+                this.buffer.position(this.buffer.position() + 8 * count);
+                from += count;
+            }
+        }
+
+
+        /**
+         * Writes the buffer to the channel, and empties it.
+         *
+         * time complexity: O(length of the buffer).
+         *
+         * @throws IOException if the file cannot be written.
+         */
+        public void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+
+        /**
+         * Writes the rest of the buffer and closes the file.
+         *
+         * @throws IOException if the file cannot be written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.flush();
+            } finally {
+                this.channel.close();
+            }
+        }
+    }
+
+
+
+    /**
+     * This class reads the primitives of a snapshot file in little-endian order, through memory maps of the file.
+     */
+    public static class SnapshotReader implements AutoCloseable {
+        /**
+         * The maximal length in bytes of a single memory map.
+         */
+        public static final int MAX_MAPPING = 1 << 30;
+
+        /**
+         * The channel of the file.
+         */
+        public final FileChannel channel;
+
+        /**
+         * The position in the file of the next byte to read.
+         */
+        public long position;
+
+
+        /**
+         * Opens the file for reading.
+         *
+         * time complexity: O(1).
+         *
+         * @param path - the path of the file.
+         * @throws IOException if the file cannot be opened.
+         */
+        public SnapshotReader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.position = 0;
+        }
+
+
+        /**
+         * Maps the next length bytes of the file, and advances the position past them.
+         *
+         * time complexity: O(1).
+         *
+         * @param length - the number of bytes to map, at most MAX_MAPPING.
+         * @return a little-endian buffer of the bytes.
+         * @throws IOException if the file is shorter, or it cannot be mapped.
+         */
+        public MappedByteBuffer map(int length) throws IOException {
+            if (this.position + length > this.channel.size()) {
+                throw new IOException("truncated graph snapshot");
+            }
+            MappedByteBuffer mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, length);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            this.position += length;
+            return mapped;
+        }
+
+
+        /**
+         * Reads the next n ints to the start of a new array of the given length, in bulk copies.
+         *
+         * time complexity: O(length).
+         *
+         * @param n - the number of ints to read.
+         * @param length - the length of the array, at least n.
+         * @return the array.
+         * @throws IOException if the file is shorter, or it cannot be mapped.
+         */
+        public int[] readInts(int n, int length) throws IOException {
+            int[] array = new int[length];
+            int from = 0;
+            while (from < n) {
+                int count = Math.min(n - from, MAX_MAPPING / 4);
+                this.map(4 * count).asIntBuffer().get(array, from, count);
+                from += count;
+            }
+            return array;
+        }
+
+
+        /**
+         * Reads the next n ints to the start of a new IntArray (on the heap or off-heap) of the given length,
+         * in bulk copies.
+         *
+         * time complexity: O(length).
+         *
+         * @param n - the number of ints to read.
+         * @param length - the length of the array, at least n.
+         * @param offHeap - whether the array is kept off-heap.
+         * @return the array.
+         * @throws IOException if the file is shorter, or it cannot be mapped.
+         */
+        public IntArray readIntArray(int n, int length, boolean offHeap) throws IOException {
+            if (!offHeap) {
+                return new IntArray(this.readInts(n, length));
+            }
+            IntArray array = new IntArray(length, true);
+            int from = 0;
+            while (from < n) {
+                int count = Math.min(Math.min(n - from, MAX_MAPPING / 4), array.run(from));
+                array.view(from, count).put(this.map(4 * count).asIntBuffer());
+                from += count;
+            }
+            return array;
+        }
+
+
+        /**
+         * Reads the next n longs to the start of a new LongArray (on the heap or off-heap) of the given length,
+         * in bulk copies.
+         *
+         * time complexity: O(length).
+         *
+         * @param n - the number of longs to read.
+         * @param length - the length of the array, at least n.
+         * @param offHeap - whether the array is kept off-heap.
+         * @return the array.
+         * @throws IOException if the file is shorter, or it cannot be mapped.
+         */
+        public LongArray readLongArray(int n, int length, boolean offHeap) throws IOException {
+            LongArray array = new LongArray(length, offHeap);
+            int from = 0;
+            while (from < n) {
+                int count = Math.min(Math.min(n - from, MAX_MAPPING / 8), array.run(from));
+                array.view(from, count).put(this.map(8 * count).asLongBuffer());
+                from += count;
+            }
+            return array;
+        }
+
+
+        /**
+         * Closes the file.
+         *
+         * @throws IOException if the file cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+
+
+    /**
+     * This class represents an append-only log of the mutations of a graph, in fixed records of three
+     * little-endian ints: the type of the mutation and its two arguments. The records are collected in a direct
+     * buffer and committed in groups: the buffer is written and forced to the disk (fsync) once per groupSize
+     * records, or when commit is called, so the records after the last commit may be lost on a crash.
+     */
+    public static class MutationLog implements AutoCloseable {
+        /**
+         * The length in bytes of a record.
+         */
+        public static final int RECORD_SIZE = 12;
+
+        /**
+         * The type of a record of addEdge (or of an edge that addEdges added): the ids of the two nodes.
+         */
+        public static final int ADD_EDGE = 1;
+
+        /**
+         * The type of a record of deleteEdge: the ids of the two nodes.
+         */
+        public static final int DELETE_EDGE = 2;
+
+        /**
+         * The type of a record of deleteNode (or of a node that deleteNodes deleted): the id of the node, and 0.
+         */
+        public static final int DELETE_NODE = 3;
+
+        /**
+         * The type of a record of addNode: the id and the weight of the node.
+         */
+        public static final int ADD_NODE = 4;
+
+        /**
+         * The type of a record of updateNodeWeight: the id and the new weight of the node.
+         */
+        public static final int UPDATE_NODE_WEIGHT = 5;
+
+        /**
+         * The number of records per commit, if it is not specified.
+         */
+        public static final int DEFAULT_GROUP_SIZE = 4096;
+
+        /**
+         * The maximal number of records that replay passes to a single call of addEdges or deleteNodes.
+         */
+        public static final int REPLAY_BATCH_SIZE = 1 << 16;
+
+        /**
+         * The channel of the file.
+         */
+        public final FileChannel channel;
+
+        /**
+         * The buffer of the records that are not committed yet.
+         */
+        public final ByteBuffer buffer;
+
+        /**
+         * The number of records per commit.
+         */
+        public final int groupSize;
+
+        /**
+         * The number of records in the buffer.
+         */
+        public int numPending;
+
+        /**
+         * The position in the file after the last committed record.
+         */
+        public long committedPosition;
+
+
+        /**
+         * Opens a log file for appending with groups of DEFAULT_GROUP_SIZE records, and creates it if it does not
+         * exist. A partial record at the end of the file (of a crash during a write) is truncated.
+         *
+         * time complexity: O(groupSize).
+         *
+         * @param path - the path of the file.
+         * @throws IOException if the file cannot be opened.
+         */
+        public MutationLog(Path path) throws IOException {
+            this(path, DEFAULT_GROUP_SIZE);
+        }
+
+
+        /**
+         * Opens a log file for appending with groups of groupSize records, and creates it if it does not exist.
+         * A partial record at the end of the file (of a crash during a write) is truncated.
+         *
+         * time complexity: O(groupSize).
+         *
+         * @param path - the path of the file.
+         * @param groupSize - the number of records per commit, at least 1.
+         * @throws IOException if the file cannot be opened.
+         */
+        public MutationLog(Path path, int groupSize) throws IOException {
+            if (groupSize < 1) {
+                throw new IllegalArgumentException("the group size must be at least 1");
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            long size = this.channel.size();
+            this.committedPosition = size - size % RECORD_SIZE;
+            this.channel.truncate(this.committedPosition);
+            this.channel.position(this.committedPosition);
+            this.buffer = ByteBuffer.allocateDirect(groupSize * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.groupSize = groupSize;
+            this.numPending = 0;
+        }
+
+
+        /**
+         * Appends a record to the buffer, and commits the group if the buffer is full. No object is allocated.
+         *
+         * time complexity: O(1), or O(groupSize) and an fsync when the group is committed.
+         *
+         * @param type - the type of the mutation.
+         * @param x - the first argument of the mutation.
+         * @param y - the second argument of the mutation.
+         */
+        public void append(int type, int x, int y) {
+            this.buffer.putInt(type).putInt(x).putInt(y);
+            this.numPending += 1;
+            if (this.numPending == this.groupSize) {
+                this.commit();
+            }
+        }
+
+
+        /**
+         * Writes the records in the buffer to the file, and forces them to the disk.
+         *
+         * time complexity: O(groupSize) and an fsync.
+         *
+         * @throws java.io.UncheckedIOException if the file cannot be written.
+         */
+        public void commit() {
+            if (this.numPending == 0) {
+                return;
+            }
+            try {
+                this.buffer.flip();
+                while (this.buffer.hasRemaining()) {
+                    this.channel.write(this.buffer);
+                }
+                this.channel.force(false);
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            this.buffer.clear();
+            this.committedPosition += (long) this.numPending * RECORD_SIZE;
+            this.numPending = 0;
+        }
+
+
+        /**
+         * Returns the position in the file after the last committed record, which is the offset to replay from
+         * into a snapshot of the graph that is saved right after a commit.
+         *
+         * time complexity: O(1).
+         *
+         * @return the position in the file after the last committed record.
+         */
+        public long getCommittedPosition() {
+            return this.committedPosition;
+        }
+
+
+        /**
+         * Commits the records in the buffer and closes the file.
+         *
+         * @throws IOException if the file cannot be written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.commit();
+            } catch (java.io.UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                this.channel.close();
+            }
+        }
+
+
+        /**
+         * Replays the records of a log file from a given offset into a graph (which is fresh, or loaded from a
+         * snapshot that was saved at that offset). Consecutive records of added edges and of deleted nodes are
+         * passed in batches to addEdges and deleteNodes, which are equivalent to the calls by order. The replay
+         * stops at the end of the file, or at a partial or unknown record. A log attached to the graph is detached
+         * during the replay, so the records are not appended again.
+         *
+         * time complexity: O(r) in addition to the mutations, while r is the number of records.
+         *
+         * @param path - the path of the log file.
+         * @param offset - the position in the file of the first record to replay.
+         * @param graph - the graph to replay into.
+         * @return the position in the file after the last replayed record.
+         * @throws IOException if the file cannot be read.
+         */
+        public static long replay(Path path, long offset, Graph graph) throws IOException {
+            MutationLog log = graph.mutationLog;
+            graph.mutationLog = null;
+            try (SnapshotReader reader = new SnapshotReader(path)) {
+                reader.position = offset;
+                long numRecords = (reader.channel.size() - offset) / RECORD_SIZE;
+                int[] batch1 = new int[REPLAY_BATCH_SIZE];
+                int[] batch2 = new int[REPLAY_BATCH_SIZE];
+                int batchType = 0;
+                int numBatched = 0;
+                long numReplayed = 0;
+
+                while (numReplayed < numRecords) {
+                    int numMapped = (int) Math.min(numRecords - numReplayed, SnapshotReader.MAX_MAPPING / RECORD_SIZE);
+                    ByteBuffer records = reader.map(numMapped * RECORD_SIZE);
+                    for (int i = 0; i < numMapped; i++) {
+                        int type = records.getInt();
+                        int x = records.getInt();
+                        int y = records.getInt();
+                        if (type < ADD_EDGE || type > UPDATE_NODE_WEIGHT) {
+                            flushReplayBatch(graph, batchType, batch1, batch2, numBatched);
+                            return offset + numReplayed * RECORD_SIZE;
+                        }
+
+                        //Flushes the batch if the record does not join it.
+                        if (numBatched > 0 && (type != batchType || numBatched == REPLAY_BATCH_SIZE)) {
+                            flushReplayBatch(graph, batchType, batch1, batch2, numBatched);
+                            numBatched = 0;
+                        }
+                        if (type == ADD_EDGE || type == DELETE_NODE) {
+                            batchType = type;
+                            batch1[numBatched] = x;
+                            batch2[numBatched] = y;
+                            numBatched += 1;
+                        } else if (type == DELETE_EDGE) {
+                            graph.deleteEdge(x, y);
+                        } else if (type == ADD_NODE) {
+                            graph.addNode(new Node(x, y));
+                        } else {
+                            graph.updateNodeWeight(x, y);
+                        }
+                        numReplayed += 1;
+                    }
+                }
+                flushReplayBatch(graph, batchType, batch1, batch2, numBatched);
+                return offset + numReplayed * RECORD_SIZE;
+            } finally {
+                graph.mutationLog = log;
+            }
+        }
+
+
+        /**
+         * Applies a batch of records of added edges (by addEdges) or of deleted nodes (by deleteNodes) to a graph.
+         *
+         * time complexity: the time complexity of addEdges or deleteNodes on count records.
+         *
+         * @param graph - the graph to replay into.
+         * @param type - the type of the records in the batch.
+         * @param batch1 - the first arguments of the records.
+         * @param batch2 - the second arguments of the records.
+         * @param count - the number of records in the batch.
+         */
+        public static void flushReplayBatch(Graph graph, int type, int[] batch1, int[] batch2, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (type == ADD_EDGE) {
+                graph.addEdges(java.util.Arrays.copyOf(batch1, count), java.util.Arrays.copyOf(batch2, count));
+            } else {
+                graph.deleteNodes(java.util.Arrays.copyOf(batch1, count));
+            }
+        }
+    }
+
+
+
+    /**
+     * This class represents a point-in-time read snapshot of the neighborhood weights and of the neighbors lists of
+     * a graph. It shares the arrays of the graph: before the graph writes to a chunk of CHUNK_SIZE elements of one
+     * of these arrays for the first time after the snapshot, the chunk is copied and saved in the snapshot (and in
+     * every other open snapshot that shares it), so only the chunks that were changed take more memory.
+     * An array that the graph replaces (when it doubles or rehashes it) is not written again, so it is not copied.
+     * The snapshot may be read by other threads while the graph is changed by its own thread: a value that is read
+     * from an array of the graph is validated by checking, after an acquire fence, that its chunk was not saved
+     * in the meantime (as StampedLock.validate does).
+     */
+    public static class ReadSnapshot implements AutoCloseable {
+        /**
+         * Log2 of the number of elements in a chunk.
+         */
+        public static final int CHUNK_SHIFT = 12;
+
+        /**
+         * The number of elements in a chunk.
+         */
+        public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+        /**
+         * The ids of the arrays that a snapshot shares with the graph: the three arrays of the max-heap, the two
+         * arrays of the hash table of the ids, the nodes of the vertices and four arrays of the neighbors lists.
+         */
+        public static final int HEAP_VERTICES = 0, HEAP_KEYS = 1, HEAP_POSITIONS = 2, ID_KEYS = 3, ID_VALUES = 4,
+                VERTICES = 5, FIRST_EDGES = 6, DEGREES = 7, NEXT_EDGES = 8, NEIGHBORS = 9, NUM_ARRAYS = 10;
+
+        /**
+         * The access to the elements of the directories of saved chunks, with acquire and release semantics.
+         */
+        public static final VarHandle CHUNKS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+        /**
+         * The arrays of the graph at the time of the snapshot, indexed by their ids (the two edge arrays are
+         * IntArrays).
+         */
+        public final Object[] arrays;
+
+        /**
+         * The directory of the saved chunks of every array (indexed by the index of the chunk), or 'null'
+         * if no chunk of the array was saved yet.
+         */
+        public final Object[] savedChunks;
+
+        /**
+         * The size of the max-heap (the number of nodes) at the time of the snapshot.
+         */
+        public final int heapSize;
+
+        /**
+         * The number of edges at the time of the snapshot.
+         */
+        public final int numEdges;
+
+        /**
+         * The multiplier of the hash function of the hash table of the ids at the time of the snapshot.
+         */
+        public final int idIndexA;
+
+        /**
+         * The shift of the hash function of the hash table of the ids at the time of the snapshot.
+         */
+        public final int idIndexShift;
+
+        /**
+         * Whether the snapshot was closed, so the graph stops saving chunks for it.
+         */
+        public volatile boolean closed;
+
+
+        /**
+         * Takes a snapshot of a graph whose max-heap is corrected, by keeping references to its arrays.
+         *
+         * time complexity: O(1).
+         *
+         * @param graph - the graph.
+         */
+        public ReadSnapshot(Graph graph) {
+            MaxHeap heap = graph.neighborhoodWeightHeap;
+            IdIndex idIndex = graph.tableIdToRepresentation;
+            NeighborhoodsList list = graph.neighborhoodsList;
+            this.arrays = new Object[]{heap.getHeapVertices(), heap.getHeapKeys(), heap.getPositions(), idIndex.keys,
+                    idIndex.values, graph.vertices, list.firstEdges, list.degrees, list.nextEdges, list.neighbors};
+            this.savedChunks = new Object[NUM_ARRAYS];
+            this.heapSize = heap.getSize();
+            this.numEdges = list.numEdges;
+            this.idIndexA = idIndex.a;
+            this.idIndexShift = idIndex.shift;
+        }
+
+
+        /**
+         * Returns the length of an array that a snapshot may share: an int[], a Node[] or an IntArray.
+         *
+         * time complexity: O(1).
+         *
+         * @param array - the array.
+         * @return the length of the array.
+         */
+        public static int length(Object array) {
+            return array instanceof IntArray ? ((IntArray) array).length : java.lang.reflect.Array.getLength(array);
+        }
 
-        /**
-         * The length of the linked list.
-         */
-        public int length;
 
         /**
-         * Creates an empty linked list, i.e. it has no elements.
+         * Returns the saved copy of a chunk of an array, or 'null' if the chunk was not saved.
          *
          * time complexity: O(1).
          *
+         * @param array - the id of the array.
+         * @param chunk - the index of the chunk in the array.
+         * @return the saved copy of the chunk, or 'null'.
          */
-        public LinkedList() {
-            this.length = 0;
-            this.sentinel = new ListNode(null);
-            this.sentinel.prev = this.sentinel;
-            this.sentinel.next = this.sentinel;
+        public Object savedChunk(int array, int chunk) {
+            Object[] directory = (Object[]) CHUNKS.getAcquire(this.savedChunks, array);
+            return directory == null ? null : CHUNKS.getAcquire(directory, chunk);
         }
 
 
         /**
-         * Given an item, inserts it to the start of the linked list.
+         * Saves the copy of a chunk of an array, and allocates the directory of the array if it is the first.
+         * Called only by the thread that changes the graph.
          *
-         * time complexity: O(1).
+         * time complexity: O(1), or O(N / CHUNK_SIZE) for the first chunk of the array.
          *
-         * @param item - the item to insert.
+         * @param array - the id of the array.
+         * @param chunk - the index of the chunk in the array.
+         * @param copy - the copy of the chunk.
          */
-        public void insertFirst(T item) {
-            ListNode node = new ListNode(item);
-            node.prev = this.sentinel;
-            node.next = this.sentinel.next;
-            sentinel.next = node;
-            node.next.prev = node;
-            this.length += 1;
+        public void saveChunk(int array, int chunk, Object copy) {
+            Object[] directory = (Object[]) this.savedChunks[array];
+            if (directory == null) {
+                int length = length(this.arrays[array]);
+                directory = new Object[(length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT];
+                CHUNKS.setRelease(this.savedChunks, array, directory);
+            }
+            CHUNKS.setRelease(directory, chunk, copy);
         }
 
 
         /**
-         * Returns the first (list) node of the linked list.
+         * Returns the element of an int array at the time of the snapshot: from the saved chunk if it was saved,
+         * otherwise from the array of the graph, and then validates that the chunk was not saved in the meantime.
          *
          * time complexity: O(1).
          *
-         * @return the first (list) node of the linked list.
+         * @param array - the id of an int array.
+         * @param index - an index in the array.
+         * @return the element at the index at the time of the snapshot.
          */
-        public ListNode retrieveFirstNode() {
-            return this.sentinel.next;
+        public int readInt(int array, int index) {
+            int chunk = index >>> CHUNK_SHIFT;
+            int[] saved = (int[]) this.savedChunk(array, chunk);
+            if (saved == null) {
+                Object live = this.arrays[array];
+                int value = live instanceof int[] ? ((int[]) live)[index] : ((IntArray) live).get(index);
+                VarHandle.acquireFence();
+                saved = (int[]) this.savedChunk(array, chunk);
+                if (saved == null) {
+                    return value;
+                }
+            }
+            return saved[index & (CHUNK_SIZE - 1)];
         }
 
 
         /**
-         * Given an item, returns the first (list) node in the linked list that keeps the item, if it exists.
-         * Otherwise, returns null.
+         * Returns the node of a vertex at the time of the snapshot, as readInt does.
          *
-         * time complexity: O(i) while i is the "index" of the first (list) node
-         *                  in the linked list that keeps the item, if it exists.
-         *                  Otherwise, i is the length of the linked list.
+         * time complexity: O(1).
          *
-         * @param item - the item of a (list) node to return.
-         * @return returns the first (list) node in the linked list that keeps the item if it exists,
-         * otherwise returns 'null'.
+         * @param nodeNListIndex - the index of a vertex in the neighborhoods list.
+         * @return the node of the vertex at the time of the snapshot, or 'null' if it was deleted.
          */
-        public ListNode retrieveNode(T item) {
-            ListNode node = this.sentinel.next;
-            int i = 0;
-            while (this.length != i) {
-                if (item.equals(node.getItem())) {
+        public Node readNode(int nodeNListIndex) {
+            int chunk = nodeNListIndex >>> CHUNK_SHIFT;
+            Node[] saved = (Node[]) this.savedChunk(VERTICES, chunk);
+            if (saved == null) {
+                Node node = ((Node[]) this.arrays[VERTICES])[nodeNListIndex];
+                VarHandle.acquireFence();
+                saved = (Node[]) this.savedChunk(VERTICES, chunk);
+                if (saved == null) {
                     return node;
                 }
-                node = node.next;
-                i += 1;
             }
-            return null;
+            return saved[nodeNListIndex & (CHUNK_SIZE - 1)];
         }
 
 
         /**
-         * Given an (list) node, deletes it from its linked list.
+         * Returns the index in the neighborhoods list of the vertex of a node id at the time of the snapshot,
+         * by the probe sequence of the hash table of the ids.
          *
-         * time complexity: O(1).
+         * time complexity: O(1) expected.
          *
-         * @param node - the (list) node to delete.
+         * @param node_id - an id of a node.
+         * @return the index of the vertex in the neighborhoods list, or -1 if the node was not in the graph.
          */
-        public void deleteNodeFromList(ListNode node) {
-            node.prev.next = node.next;
-            node.next.prev = node.prev;
-            node.item = null;
-            node.prev = null;
-            node.next = null;
-            this.length -= 1;
+        public int find(int node_id) {
+            int mask = ((int[]) this.arrays[ID_KEYS]).length - 1;
+            int i = (this.idIndexA * node_id) >>> this.idIndexShift;
+            while (true) {
+                int value = this.readInt(ID_VALUES, i);
+                if (value == IdIndex.EMPTY) {
+                    return -1;
+                }
+                if (this.readInt(ID_KEYS, i) == node_id) {
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
         }
 
 
         /**
-         * This class represents a node in a doubly linked list.
+         * Returns the neighborhood weight of a node at the time of the snapshot.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - the id of the node.
+         * @return the neighborhood weight of the node, or -1 if the node was not in the graph.
          */
-        public class ListNode {
-            /**
-             * The data which the (list) node keeps.
-             */
-            public T item;
-
-            /**
-             * The previous (list) node in the linked list.
-             */
-            public ListNode prev;
-
-            /**
-             * The next (list) node in the linked list.
-             */
-            public ListNode next;
-
-
-            /**
-             * Creates a new (list) node, given its item.
-             *
-             * time complexity: O(1).
-             *
-             * @param item - the item of the (list) node.
-             */
-            public ListNode(T item) {
-                this.item = item;
-            }
-
-
-            /**
-             * Returns the item of the node.
-             *
-             * time complexity: O(1).
-             *
-             * @return the item of the node.
-             */
-            public T getItem(){
-                return this.item;
+        public int getNeighborhoodWeight(int node_id) {
+            int nodeNListIndex = this.find(node_id);
+            if (nodeNListIndex == -1) {
+                return -1;
             }
+            return this.readInt(HEAP_KEYS, this.readInt(HEAP_POSITIONS, nodeNListIndex));
         }
-    }
 
 
-    /**
-     * This class represents the edges in the graph by an adjacency list.
-     */
-    public class NeighborhoodsList {
         /**
-         * Each cell in this array corresponds to a vertex (the cell of deleted vertex is 'null'), which the
-         * linked list in it keeps the neighbors of the corresponding vertex and bidirectional pointers between
-         * the two representations of each edge.
+         * Returns the node with the maximal neighborhood weight at the time of the snapshot.
+         *
+         * time complexity: O(1).
+         *
+         * @return the node with the maximal neighborhood weight, or 'null' if there were no nodes.
          */
-        public LinkedList<NeighborNode>[] arrNeighborsLists;
+        public Node maxNeighborhoodWeight() {
+            if (this.heapSize == 0) {
+                return null;
+            }
+            return this.readNode(this.readInt(HEAP_VERTICES, 0));
+        }
 
 
         /**
-         * The number of edges that present in the graph.
+         * Returns the degree of a node at the time of the snapshot.
+         *
+         * time complexity: O(1) expected.
+         *
+         * @param node_id - the id of the node.
+         * @return the degree of the node, or -1 if the node was not in the graph.
          */
-        public int numEdges;
+        public int degree(int node_id) {
+            int nodeNListIndex = this.find(node_id);
+            if (nodeNListIndex == -1) {
+                return -1;
+            }
+            return this.readInt(DEGREES, nodeNListIndex);
+        }
 
 
         /**
-         * Creates an empty adjacency list, given its length (the number of vertices in the graph).
+         * Passes the id of every neighbor of a node at the time of the snapshot to the action, in the order of
+         * Graph.forEachNeighbor.
          *
-         * time complexity: O(numNodes).
+         * time complexity: O(d_v) expected, in addition to the action.
          *
-         * @param numNodes - the number of vertices in the graph.
+         * @param node_id - the id of the node.
+         * @param action - the action to perform on the id of every neighbor.
+         * @return returns 'true' if the node was in the graph, otherwise returns 'false'.
          */
-        public NeighborhoodsList(int numNodes) {
-            this.arrNeighborsLists = new LinkedList[numNodes];
-            for (int i = 0; i < numNodes; i++) {
-                this.arrNeighborsLists[i] = new LinkedList<NeighborNode>();
+        public boolean forEachNeighbor(int node_id, IntConsumer action) {
+            int nodeNListIndex = this.find(node_id);
+            if (nodeNListIndex == -1) {
+                return false;
             }
-            this.numEdges = 0;
+            int edge = this.readInt(FIRST_EDGES, nodeNListIndex);
+            while (edge != NeighborhoodsList.NIL) {
+                action.accept(this.readNode(this.readInt(NEIGHBORS, edge)).getId());
+                edge = this.readInt(NEXT_EDGES, edge);
+            }
+            return true;
         }
 
 
         /**
-         * This function adds an edge between the two vertices whose ids are specified.
-         * We assume that the two vertices are in the graph, and they are distinct.
+         * Returns the number of nodes at the time of the snapshot.
          *
-         * time complexity: O(log(n)) expected.
+         * time complexity: O(1).
          *
-         * @param node1_id - the id of the first vertex.
-         * @param node2_id - the id of the second vertex.
+         * @return the number of nodes.
          */
-        public void createEdgeInNeighborList(int node1_id, int node2_id) {
-            NeighborNode neighborNode1 = new NeighborNode(node1_id);
-            NeighborNode neighborNode2 = new NeighborNode(node2_id);
-
-            HashTable.HashTableNode hashTableNode1 = tableIdToRepresentation.find(node1_id).item;
-            HashTable.HashTableNode hashTableNode2 = tableIdToRepresentation.find(node2_id).item;
-
-            int node1NListIndex = hashTableNode1.nodeNListIndex;
-            int node2NListIndex = hashTableNode2.nodeNListIndex;
-
-            //Inserts the neighbor nodes to the start of the neighbors lists.
-            this.arrNeighborsLists[node1NListIndex].insertFirst(neighborNode2);
-            this.arrNeighborsLists[node2NListIndex].insertFirst(neighborNode1);
-
-            //Updates the bidirectional pointers between the two representations of the new edge.
-            neighborNode1.listNodeOfNeighborInEdge = this.arrNeighborsLists[node1NListIndex].retrieveFirstNode();
-            neighborNode2.listNodeOfNeighborInEdge = this.arrNeighborsLists[node2NListIndex].retrieveFirstNode();
-
-            //Updates the neighborhood weight of the two nodes.
-            neighborhoodWeightHeap.increaseNeighborhoodWeight(hashTableNode1.heapNode, hashTableNode2.heapNode.value.getWeight());
-            neighborhoodWeightHeap.increaseNeighborhoodWeight(hashTableNode2.heapNode, hashTableNode1.heapNode.value.getWeight());
-
-            this.numEdges += 1;
+        public int getNumNodes() {
+            return this.heapSize;
         }
 
 
         /**
-         * Given the hash-table node of a vertex in the graph,
-         * deletes the vertex of that hash-table node from the graph.
-         * We assume that the vertex is in the graph.
+         * Returns the number of edges at the time of the snapshot.
          *
-         * time complexity: O((d_v+1) * log(n)) expected.
+         * time complexity: O(1).
          *
-         * @param hashTableNode - the hash-table node of the vertex to delete.
+         * @return the number of edges.
          */
-        public void deleteNodeFromNeighborList(HashTable.HashTableNode hashTableNode) {
-            //Retrieves the neighbors list of the vertex to delete.
-            int nodeNListIndex = hashTableNode.nodeNListIndex;
-            LinkedList<NeighborNode> NeighborsLinkedList = this.arrNeighborsLists[nodeNListIndex];
-
-            int i = 0;
-            LinkedList<NeighborNode>.ListNode listNode = NeighborsLinkedList.sentinel.next;
-            while (NeighborsLinkedList.length != i) { //For each neighbor:
-                NeighborNode neighborNode = listNode.item;
-                HashTable.HashTableNode hashTableNeighborNode = tableIdToRepresentation.find(neighborNode.node_id).item;
-
-                //Deletes the neighbor node of the vertex to delete from the neighbors list of his neighbor.
-                this.arrNeighborsLists[hashTableNeighborNode.nodeNListIndex].deleteNodeFromList(neighborNode.listNodeOfNeighborInEdge);
-
-                //Remove the weight of the vertex to delete from the neighborhood weight of his neighbor.
-                neighborhoodWeightHeap.decreaseNeighborhoodWeight(hashTableNeighborNode.heapNode, hashTableNode.heapNode.value.getWeight());
-
-                this.numEdges -= 1;
-                listNode = listNode.next;
-                i += 1;
-            }
-
-            //Deletes the neighborhood weight of the vertex to delete from the max-heap.
-            neighborhoodWeightHeap.deleteHeapNode(hashTableNode.heapNode);
-            //Replaces the pointer to the neighbors list of the vertex to delete with 'null'.
-            this.arrNeighborsLists[nodeNListIndex] = null;
+        public int getNumEdges() {
+            return this.numEdges;
         }
 
 
         /**
-         * This class represents a neighbor node in a neighbors list of the other vertex in the edge.
+         * Closes the snapshot, so the graph stops saving chunks for it and its saved chunks can be collected.
+         * The snapshot must not be read after it is closed. It may be closed by any thread.
          */
-        public class NeighborNode {
-            /**
-             * The id of the vertex which this neighbor node represents.
-             */
-            public int node_id;
-
-            /**
-             * A pointer to the (list) node of the other vertex in the edge,
-             * which is located in the neighbors list of the current node.
-             */
-            public LinkedList<NeighborNode>.ListNode listNodeOfNeighborInEdge;
-
-            /**
-             * Creates a new neighbor node object, given the id of the vertex.
-             *
-             * time complexity: O(1).
-             *
-             * @param node_id - the id of the vertex which this neighbor node represents.
-             */
-            public NeighborNode(int node_id) {
-                this.node_id = node_id;
-            }
+        @Override
+        public void close() {
+            this.closed = true;
         }
     }
 
 
 
     /**
-     * This class implements a (binary) Max-Heap that maintains the heaviest neighborhood.
-     *
+     * This class keeps the open read snapshots of a graph, and saves the chunks of their arrays before the graph
+     * writes to them. It is used only by the thread that changes the graph, through the write barriers of the graph,
+     * its max-heap and its hash table of the ids, which call beforeWrite while there are open snapshots.
      */
-    public static class MaxHeap {
+    public static class SnapshotRegistry {
         /**
-         * The array that represents the heap.
+         * The graph of the snapshots.
          */
-        public HeapNode[] heapArr;
+        public final Graph graph;
 
         /**
-         * The size of the heap, that is, the number neighborhoods present
-         * in the graph (the current number of vertices in the graph).
+         * The open snapshots (some of them may have been closed since they were checked).
          */
-        public int size;
-
+        public ReadSnapshot[] snapshots = new ReadSnapshot[2];
 
         /**
-         * Initializes the max-heap of the neighborhood weights with a given set of nodes.
-         * The graph has no edges, so in practice the neighborhood weights are node weights.
-         * We assume that the ids of distinct nodes are distinct.
-         *
-         * time complexity: O(N).
-         *
-         * @param nodes - an array of node objects
+         * The number of snapshots in the array.
          */
-        public MaxHeap(Node[] nodes) {
-            //Initialize the array of the heap.
-            this.heapArr = new HeapNode[nodes.length];
-            this.size = nodes.length;
-            for (int i = 0; i < nodes.length; i++) {
-                this.heapArr[i] = new HeapNode(nodes[i].getWeight(), nodes[i], i);
-            }
-
-            //Construct a legal binary max-heap.
-            int j = parent(this.size - 1);
-            while (j >= 0) {
-                this.heapifyDown(j);
-                j -= 1;
-            }
-        }
+        public int size;
 
 
         /**
-         * Returns the index of the left child of the (heap) node at index i.
+         * Creates an empty registry of the snapshots of a graph, and installs it as the write barrier of the graph.
          *
          * time complexity: O(1).
          *
-         * @param i - an index of a (heap) node in the heap.
-         * @return the index of the left child of the (heap) node at index i.
+         * @param graph - the graph.
          */
-        public int left(int i) {
-            return 2 * i + 1;
+        public SnapshotRegistry(Graph graph) {
+            this.graph = graph;
+            this.attach(this);
         }
 
 
         /**
-         * Returns the index of the right child of the (heap) node at index i.
+         * Installs a registry (or 'null') as the write barrier of the graph, its max-heap and its hash table of
+         * the ids.
          *
          * time complexity: O(1).
          *
-         * @param i - an index of a (heap) node in the heap.
-         * @return the index of the right child of the (heap) node at index i.
+         * @param registry - the registry, or 'null' to remove the write barrier.
          */
-        public int right(int i) {
-            return 2 * i + 2;
+        public void attach(SnapshotRegistry registry) {
+            this.graph.snapshotRegistry = registry;
+            this.graph.neighborhoodWeightHeap.setSnapshotRegistry(registry);
+            this.graph.tableIdToRepresentation.snapshots = registry;
         }
 
 
         /**
-         * Returns the index of the parent of the (heap) node at index i.
+         * Adds a new snapshot, and removes the closed ones.
          *
-         * time complexity: O(1).
+         * time complexity: O(s) amortized, while s is the number of snapshots.
          *
-         * @param i - an index of a (heap) node in the heap.
-         * @return the index of the parent of the (heap) node at index i.
+         * @param snapshot - the new snapshot.
          */
-        public int parent(int i) {
-            return (i + 1) / 2 - 1;
+        public void add(ReadSnapshot snapshot) {
+            if (this.size == this.snapshots.length) {
+                this.snapshots = java.util.Arrays.copyOf(this.snapshots, 2 * this.size);
+            }
+            this.snapshots[this.size] = snapshot;
+            this.size += 1;
+            //The new snapshot is open, so the write barrier stays.
+            this.removeClosed();
         }
 
 
         /**
-         * Returns the size of the heap.
-         *
-         * time complexity: O(1).
+         * Removes the closed snapshots, and removes the write barrier if no snapshot is left open.
          *
-         * @return the size of the heap.
+         * time complexity: O(s), while s is the number of snapshots.
          */
-        public int getSize() {
-            return this.size;
+        public void removeClosed() {
+            int numOpen = 0;
+            for (int i = 0; i < this.size; i++) {
+                if (!this.snapshots[i].closed) {
+                    this.snapshots[numOpen++] = this.snapshots[i];
+                }
+            }
+            java.util.Arrays.fill(this.snapshots, numOpen, this.size, null);
+            this.size = numOpen;
+            if (numOpen == 0 && this.graph.snapshotRegistry == this) {
+                this.attach(null);
+            }
         }
 
 
         /**
-         * Sets heapNode at index i in the heap, and updates his index field.
+         * Must be called before the graph writes to an array at an index: if an open snapshot shares the array
+         * and did not save the chunk of the index yet, the chunk is copied once and saved in every such snapshot.
+         * A closed snapshot is removed by the first write after it is closed.
          *
-         * time complexity: O(1).
+         * time complexity: O(s), or O(s + CHUNK_SIZE) if the chunk is copied, while s is the number of snapshots.
          *
-         * @param heapNode - a (heap) node to set at index i in the heap.
-         * @param i - an index to set heapNode at.
+         * @param array - the id of the array.
+         * @param live - the array of the graph.
+         * @param index - the index that is about to be written.
          */
-        public void setHeapNodeAtIndex(HeapNode heapNode, int i) {
-            this.heapArr[i] = heapNode;
-            heapNode.heapIndex = i;
+        public void beforeWrite(int array, Object live, int index) {
+            int chunk = index >>> ReadSnapshot.CHUNK_SHIFT;
+            for (int i = 0; i < this.size; i++) {
+                ReadSnapshot snapshot = this.snapshots[i];
+                if (snapshot.closed || (snapshot.arrays[array] == live && snapshot.savedChunk(array, chunk) == null)) {
+                    this.saveChunk(array, live, chunk);
+                    return;
+                }
+            }
         }
 
 
         /**
-         * Swap the (heap) nodes at indices i and j in the heap.
+         * Copies a chunk of an array of the graph, saves it in every open snapshot that shares the array and did not
+         * save the chunk yet, and removes the closed snapshots. The release fence keeps the following write to the
+         * array from being reordered before the chunk is published.
          *
-         * time complexity: O(1).
+         * time complexity: O(s + CHUNK_SIZE), while s is the number of snapshots.
          *
-         * @param i - an index in the heap.
-         * @param j - an index in the heap.
+         * @param array - the id of the array.
+         * @param live - the array of the graph.
+         * @param chunk - the index of the chunk in the array.
          */
-        public void swapHeapNodes(int i, int j) {
-            HeapNode tmp = this.heapArr[i];
-            this.setHeapNodeAtIndex(this.heapArr[j], i);
-            this.setHeapNodeAtIndex(tmp, j);
+        public void saveChunk(int array, Object live, int chunk) {
+            int from = chunk << ReadSnapshot.CHUNK_SHIFT;
+            int to = Math.min(from + ReadSnapshot.CHUNK_SIZE, ReadSnapshot.length(live));
+            Object copy = null;
+            for (int i = 0; i < this.size; i++) {
+                ReadSnapshot snapshot = this.snapshots[i];
+                if (!snapshot.closed && snapshot.arrays[array] == live && snapshot.savedChunk(array, chunk) == null) {
+                    if (copy == null) {
+                        if (live instanceof int[]) {
+                            copy = java.util.Arrays.copyOfRange((int[]) live, from, to);
+                        } else if (live instanceof IntArray) {
+                            copy = ((IntArray) live).toArray(from, to);
+                        } else {
+                            copy = java.util.Arrays.copyOfRange((Node[]) live, from, to);
+                        }
+                    }
+                    snapshot.saveChunk(array, chunk, copy);
+                }
+            }
+            VarHandle.releaseFence();
+            this.removeClosed();
         }
+    }
 
 
+
+    /**
+     * This interface represents the internal counters of a graph, as they are published through JMX.
+     */
+    public interface StatsMXBean {
         /**
-         * Corrects upwards the (heap) node at index i, if it is needed.
-         *
-         * time complexity: O(log(n)).
-         *
-         * @param i - an index to correct in the heap.
+         * @return the number of lookups in the hash table of the ids.
          */
-        public void heapifyUp(int i) {
-            while (i > 0 && this.heapArr[i].key > this.heapArr[parent(i)].key) {
-                this.swapHeapNodes(i, parent(i));
-                i = parent(i);
-            }
-        }
-
+        long getIdLookups();
 
         /**
-         * Corrects downwards the (heap) node at index i, if it is needed.
-         *
-         * time complexity: O(log(n)).
-         *
-         * @param i - an index to correct in the heap.
+         * @return the number of cells that the lookups in the hash table of the ids probed.
          */
-        public void heapifyDown(int i) {
-            int l;
-            int r;
-            int largest;
-            boolean isCompleted = false;
-            while (!isCompleted) {
-                l = left(i);
-                r = right(i);
-                largest = i;
-                if (l < this.getSize() && this.heapArr[l].key > this.heapArr[largest].key) {
-                    largest = l;
-                }
-                if (r < this.getSize() && this.heapArr[r].key > this.heapArr[largest].key) {
-                    largest = r;
-                }
-                if (largest > i) {
-                    this.swapHeapNodes(i, largest);
-                    i = largest;
-                } else {
-                    isCompleted = true;
-                }
-            }
-
-        }
+        long getIdProbes();
 
+        /**
+         * @return the maximal number of cells that a single lookup in the hash table of the ids probed.
+         */
+        long getMaxIdProbes();
 
         /**
-         * Returns the node (vertex) with the heaviest neighborhood (maximal neighborhood weight).
-         *
-         * time complexity: O(1).
-         *
-         * @return the node (vertex) with the heaviest neighborhood (maximal neighborhood weight).
+         * @return the number of lookups in the hash table of the edges.
          */
-        public Node max() {
-            return this.heapArr[0].value;
-        }
+        long getEdgeLookups();
 
+        /**
+         * @return the number of cells that the lookups in the hash table of the edges probed.
+         */
+        long getEdgeProbes();
 
         /**
-         * Decreases the neighborhood weight of heapNode by delta.
-         *
-         * time complexity: O(log(n)).
-         *
-         * @param heapNode - the (heap) node with neighborhood weight to decrease.
-         * @param delta - a number to decrease by.
+         * @return the maximal number of cells that a single lookup in the hash table of the edges probed.
          */
-        public void decreaseNeighborhoodWeight(HeapNode heapNode, int delta) {
-            heapNode.key -= delta;
-            this.heapifyDown(heapNode.heapIndex);
-        }
+        long getMaxEdgeProbes();
 
+        /**
+         * @return the number of sifts (heapifyUp and heapifyDown) in the max-heap.
+         */
+        long getSifts();
 
         /**
-         * Increases the neighborhood weight of heapNode by delta.
-         *
-         * time complexity: O(log(n)).
-         *
-         * @param heapNode - the (heap) node with neighborhood weight to increase.
-         * @param delta - a number to increase by.
+         * @return the number of levels that the sifts moved vertices by.
          */
-        public void increaseNeighborhoodWeight(HeapNode heapNode, int delta) {
-            heapNode.key += delta;
-            this.heapifyUp(heapNode.heapIndex);
-        }
+        long getSiftSwaps();
 
+        /**
+         * @return the maximal number of levels that a single sift moved a vertex by.
+         */
+        long getMaxSiftSwaps();
 
         /**
-         * Deletes heapNode from the heap.
-         *
-         * time complexity: O(log(n)).
-         *
-         * @param heapNode - the (heap) node to delete.
+         * @return the number of deleted nodes.
          */
-        public void deleteHeapNode(HeapNode heapNode) {
-            this.setHeapNodeAtIndex(this.heapArr[this.getSize() - 1], heapNode.heapIndex);
-            this.heapArr[this.getSize() - 1] = null;
-            this.size -= 1;
+        long getDeletedNodes();
 
-            if (heapNode.heapIndex != this.getSize()) {
-                this.heapifyUp(heapNode.heapIndex);
-                this.heapifyDown(heapNode.heapIndex);
-            }
+        /**
+         * @return the number of neighbors that were visited to delete nodes.
+         */
+        long getNeighborsVisited();
 
-        }
+        /**
+         * @return the maximal number of neighbors that were visited to delete a single node.
+         */
+        long getMaxNeighborsVisited();
 
+        /**
+         * @return the number of nodes passed to addNode.
+         */
+        long getAddNodeCalls();
 
+        /**
+         * @return the number of edges passed to addEdge and addEdges.
+         */
+        long getAddEdgeCalls();
 
         /**
-         * This class represents a (heap) node in the heap, which its key is neighborhood weight.
+         * @return the number of edges passed to deleteEdge.
          */
-        public class HeapNode {
-            /**
-             * The neighborhood weight.
-             */
-            public int key;
+        long getDeleteEdgeCalls();
 
-            /**
-             * The node (vertex) that this (heap) node represents its neighborhood weight.
-             */
-            public Node value;
+        /**
+         * @return the number of ids passed to deleteNode and deleteNodes.
+         */
+        long getDeleteNodeCalls();
 
-            /**
-             * The index of this (heap) node in the array of the heap.
-             */
+        /**
+         * @return the number of calls of getNeighborhoodWeight.
+         */
+        long getWeightQueries();
 
-            public int heapIndex;
+        /**
+         * @return the number of calls of maxNeighborhoodWeight.
+         */
+        long getMaxQueries();
 
-            /**
-             * Creates a new (heap) node object, given its key (neighborhood weight),
-             * its value (corresponding node (vertex)) and its index in the array of the heap.
-             *
-             * time complexity: O(1).
-             *
-             * @param key - The neighborhood weight.
-             * @param value - The node (vertex) that this (heap) node represents its neighborhood weight.
-             * @param heapIndex - The index of this (heap) node in the array of the heap.
-             */
-            public HeapNode(int key, Node value, int heapIndex) {
-                this.key = key;
-                this.value = value;
-                this.heapIndex = heapIndex;
-            }
-        }
+        /**
+         * Resets all the counters to zero.
+         */
+        void reset();
     }
 
 
 
     /**
-     * This class implements specific necessary operations of the ADT dictionary (and more) by a hash table.
+     * This class keeps the internal counters of a graph in plain fields, since a graph is used by a single thread.
+     * The counters are updated only if STATS_ENABLED is true.
      */
-    public static class HashTable {
+    public static class GraphStats implements StatsMXBean {
         /**
-         * A prime number that is used for the modular hash function.
+         * The number of lookups in the hash table of the ids.
          */
-        public int p;
+        public long idLookups;
 
         /**
-         * A number between 1 and p-1 that is used for the modular hash function.
+         * The number of cells that the lookups in the hash table of the ids probed.
          */
-        public long a;
+        public long idProbes;
 
         /**
-         * A number between 0 and p-1 that is used for the modular hash function.
+         * The maximal number of cells that a single lookup in the hash table of the ids probed.
          */
-        public long b;
+        public long maxIdProbes;
 
         /**
-         * The array that represents the hash table.
+         * The number of lookups in the hash table of the edges.
          */
-        public LinkedList<HashTableNode>[] table;
+        public long edgeLookups;
 
+        /**
+         * The number of cells that the lookups in the hash table of the edges probed.
+         */
+        public long edgeProbes;
 
         /**
-         * Initializes the hash table that maps node id to hash node.
-         *
-         * time complexity: O(n) expected.
-         *
-         * @param maxHeap - the max-heap that maintains the heaviest neighborhood in the graph.
+         * The maximal number of cells that a single lookup in the hash table of the edges probed.
          */
-        public HashTable(MaxHeap maxHeap) {
-            //Initializes the hash table.
-            this.table = new LinkedList[maxHeap.getSize()];
-            for (int i = 0; i < maxHeap.getSize(); i++) {
-                this.table[i] = new LinkedList<HashTableNode>();
-            }
+        public long maxEdgeProbes;
 
-            //Initializes the modular hash function.
-            this.p = 1000000009;
-            Random random = new Random();
-            this.a = random.nextInt(this.p - 1) + 1;
-            this.b = random.nextInt(this.p);
+        /**
+         * The number of sifts (heapifyUp and heapifyDown) in the max-heap.
+         */
+        public long sifts;
 
-            //Inserts the elements to the hash table.
-            for (int i = 0; i < maxHeap.getSize(); i++) {
-                this.insert(maxHeap.heapArr[i].value.getId(), i, maxHeap.heapArr[i]);
-            }
-        }
+        /**
+         * The number of levels that the sifts moved vertices by.
+         */
+        public long siftSwaps;
+
+        /**
+         * The maximal number of levels that a single sift moved a vertex by.
+         */
+        public long maxSiftSwaps;
+
+        /**
+         * The number of deleted nodes.
+         */
+        public long deletedNodes;
+
+        /**
+         * The number of neighbors that were visited to delete nodes.
+         */
+        public long neighborsVisited;
+
+        /**
+         * The maximal number of neighbors that were visited to delete a single node.
+         */
+        public long maxNeighborsVisited;
+
+        /**
+         * The number of nodes passed to addNode.
+         */
+        public long addNodeCalls;
+
+        /**
+         * The number of edges passed to addEdge and addEdges.
+         */
+        public long addEdgeCalls;
+
+        /**
+         * The number of edges passed to deleteEdge.
+         */
+        public long deleteEdgeCalls;
+
+        /**
+         * The number of ids passed to deleteNode and deleteNodes.
+         */
+        public long deleteNodeCalls;
+
+        /**
+         * The number of calls of getNeighborhoodWeight.
+         */
+        public long weightQueries;
+
+        /**
+         * The number of calls of maxNeighborhoodWeight.
+         */
+        public long maxQueries;
 
 
         /**
-         * Returns the chain in the hash table where the key node_id should be.
+         * Counts a lookup in the hash table of the ids.
          *
          * time complexity: O(1).
          *
-         * @param node_id - an id of a vertex.
-         * @return the chain in the hash table where the key node_id should be.
+         * @param probes - the number of cells that the lookup probed.
          */
-        public LinkedList<HashTableNode> findChain(int node_id) {
-            return this.table[(int) (((this.a * node_id + this.b) % this.p) % this.table.length)];
+        public void recordIdProbes(int probes) {
+            this.idLookups += 1;
+            this.idProbes += probes;
+            this.maxIdProbes = Math.max(this.maxIdProbes, probes);
         }
 
 
         /**
-         * Returns the list node in a hash table chain that contains the hash table node with the key node_id,
-         * or null if such a list node does not exist.
+         * Counts a lookup in the hash table of the edges.
          *
-         * time complexity: O(1) expected.
+         * time complexity: O(1).
          *
-         * @param node_id - an id of a vertex.
-         * @return the list node that contains the hash table node with the key node_id,
-         * or null if such a list node does not exist.
+         * @param probes - the number of cells that the lookup probed.
          */
-        public LinkedList<HashTableNode>.ListNode find(int node_id) {
-            return this.findChain(node_id).retrieveNode(new HashTableNode(node_id, -1, null));
+        public void recordEdgeProbes(int probes) {
+            this.edgeLookups += 1;
+            this.edgeProbes += probes;
+            this.maxEdgeProbes = Math.max(this.maxEdgeProbes, probes);
         }
 
 
         /**
-         * If an hash table node with the key node_id does not exists in the table,
-         * inserts the trio node_id, nodeIndex and heapNode to the hash table (wrapped with HashTableNode object),
-         * with the key node_id.
-         * Otherwise, the function does nothing.
+         * Counts a sift in the max-heap.
          *
-         * time complexity: O(1) expected.
+         * time complexity: O(1).
          *
-         * @param node_id - an id of a vertex
-         * @param nodeIndex - the index of a vertex with the id node_id (this is the
-         *                  fixed index of the vertex in the neighborhoods list)
-         * @param heapNode - the heap node in max-heap that corresponds to the vertex with the id node_id
+         * @param swaps - the number of levels that the sift moved the vertex by.
          */
-        public void insert(int node_id, int nodeIndex, MaxHeap.HeapNode heapNode) {
-            if (this.find(node_id) == null){
-                this.findChain(node_id).insertFirst(new HashTableNode(node_id, nodeIndex, heapNode));
-            }
+        public void recordSift(int swaps) {
+            this.sifts += 1;
+            this.siftSwaps += swaps;
+            this.maxSiftSwaps = Math.max(this.maxSiftSwaps, swaps);
         }
 
 
         /**
-         * Deletes the list node in a hash table chain that contains the hash table node with the key node_id,
-         * if such a list node exist.
+         * Counts a deleted node.
          *
-         * time complexity: O(1) expected.
+         * time complexity: O(1).
          *
-         * @param node_id - an id of a vertex.
-         * @return the hash table node that contains the key node_id,
-         * or null if such a hash table node does not exist.
+         * @param neighbors - the number of neighbors that were visited to delete it (its degree).
          */
-        public HashTableNode delete(int node_id) {
-            LinkedList<HashTableNode>.ListNode listNode = this.find(node_id);
+        public void recordDeletedNode(int neighbors) {
+            this.deletedNodes += 1;
+            this.neighborsVisited += neighbors;
+            this.maxNeighborsVisited = Math.max(this.maxNeighborsVisited, neighbors);
+        }
 
-            if (listNode == null) {
-                return null;
-            }
+        @Override
+        public long getIdLookups() {
+            return this.idLookups;
+        }
 
-            HashTableNode hashTableNode = listNode.item;
-            this.findChain(node_id).deleteNodeFromList(listNode);
-            return hashTableNode;
+        @Override
+        public long getIdProbes() {
+            return this.idProbes;
         }
 
+        @Override
+        public long getMaxIdProbes() {
+            return this.maxIdProbes;
+        }
 
+        @Override
+        public long getEdgeLookups() {
+            return this.edgeLookups;
+        }
 
-        /**
-         * This class represents a hash table node in the hash table of the graph, which its key is node_id.
-         */
-        public static class HashTableNode {
-            /**
-             * The id of the vertex which this hash table node represents.
-             */
-            public int node_id;
+        @Override
+        public long getEdgeProbes() {
+            return this.edgeProbes;
+        }
+
+        @Override
+        public long getMaxEdgeProbes() {
+            return this.maxEdgeProbes;
+        }
 
-            /**
-             * The index of a vertex with the id node_id (this is the fixed index of the vertex in the neighborhoods list)
-             */
-            public int nodeNListIndex;
+        @Override
+        public long getSifts() {
+            return this.sifts;
+        }
 
-            /**
-             * The heap node in max-heap that corresponds to the vertex with the id node_id.
-             */
-            public MaxHeap.HeapNode heapNode;
+        @Override
+        public long getSiftSwaps() {
+            return this.siftSwaps;
+        }
 
+        @Override
+        public long getMaxSiftSwaps() {
+            return this.maxSiftSwaps;
+        }
 
-            /**
-             * Creates a new hash table node object, given its key (node_id),
-             * and the values nodeNListIndex and heapNode.
-             *
-             * time complexity: O(1).
-             *
-             * @param node_id - The id of the vertex which this hash table node represents.
-             * @param nodeNListIndex - The index of a vertex with the id node_id (this is the fixed
-             *                       index of the vertex in the neighborhoods list)
-             * @param heapNode - The heap node in max-heap that corresponds to the vertex with the id node_id.
-             */
-            public HashTableNode(int node_id, int nodeNListIndex, MaxHeap.HeapNode heapNode) {
-                this.node_id = node_id;
-                this.nodeNListIndex = nodeNListIndex;
-                this.heapNode = heapNode;
-            }
+        @Override
+        public long getDeletedNodes() {
+            return this.deletedNodes;
+        }
 
-            /**
-             * Returns 'true' if
-             * o is a HashTableNode object and
-             * its node_id field is equal to the node_id field of the current hash table node.
-             * Otherwise, the function returns 'false'.
-             *
-             * time complexity: O(1).
-             *
-             * @param o - Object o to check
-             * @return 'true' if
-             * o is a HashTableNode object and
-             * its node_id field is equal to the node_id field of the current hash table node.
-             * Otherwise, the function returns 'false'.
-             */
-            @Override
-            public boolean equals(Object o) {
-                if (this == o) {
-                    return true;
-                }
-                if (o == null || this.getClass() != o.getClass()) {
-                    return false;
-                }
-                HashTableNode that = (HashTableNode) o;
-                return this.node_id == that.node_id;
-            }
+        @Override
+        public long getNeighborsVisited() {
+            return this.neighborsVisited;
+        }
+
+        @Override
+        public long getMaxNeighborsVisited() {
+            return this.maxNeighborsVisited;
+        }
+
+        @Override
+        public long getAddNodeCalls() {
+            return this.addNodeCalls;
+        }
+
+        @Override
+        public long getAddEdgeCalls() {
+            return this.addEdgeCalls;
+        }
+
+        @Override
+        public long getDeleteEdgeCalls() {
+            return this.deleteEdgeCalls;
+        }
+
+        @Override
+        public long getDeleteNodeCalls() {
+            return this.deleteNodeCalls;
+        }
+
+        @Override
+        public long getWeightQueries() {
+            return this.weightQueries;
+        }
+
+        @Override
+        public long getMaxQueries() {
+            return this.maxQueries;
+        }
+
+        @Override
+        public void reset() {
+            this.idLookups = 0;
+            this.idProbes = 0;
+            this.maxIdProbes = 0;
+            this.edgeLookups = 0;
+            this.edgeProbes = 0;
+            this.maxEdgeProbes = 0;
+            this.sifts = 0;
+            this.siftSwaps = 0;
+            this.maxSiftSwaps = 0;
+            this.deletedNodes = 0;
+            this.neighborsVisited = 0;
+            this.maxNeighborsVisited = 0;
+            this.addNodeCalls = 0;
+            this.addEdgeCalls = 0;
+            this.deleteEdgeCalls = 0;
+            this.deleteNodeCalls = 0;
+            this.weightQueries = 0;
+            this.maxQueries = 0;
         }
     }
 }
\ No newline at end of file
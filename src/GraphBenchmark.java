@@ -0,0 +1,78 @@
+import java.util.Random;
+
+/**
+ * This class runs the add-heavy and the delete-heavy traces on graphs with max-heaps of different arities,
+ * and prints the best running time of every trace and arity.
+ *
+ * Usage: java GraphBenchmark [numNodes] [averageDegree] [arity ...]
+ */
+public class GraphBenchmark {
+    /**
+     * The number of times every trace is run for every arity (the first runs also warm up the JIT).
+     */
+    public static final int REPETITIONS = 5;
+
+
+    /**
+     * Runs the traces and prints the results.
+     *
+     * @param args - the number of nodes, the average degree and the arities to compare.
+     */
+    public static void main(String[] args) {
+        int numNodes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int averageDegree = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int[] arities = new int[]{2, 4, 8};
+        if (args.length > 2) {
+            arities = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                arities[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Random random = new Random(1);
+        Graph.Node[] nodes = new Graph.Node[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            nodes[i] = new Graph.Node(i, 1 + random.nextInt(100));
+        }
+        int numEdges = (int) ((long) numNodes * averageDegree / 2);
+        int[] node1_ids = new int[numEdges];
+        int[] node2_ids = new int[numEdges];
+        for (int i = 0; i < numEdges; i++) {
+            node1_ids[i] = random.nextInt(numNodes);
+            node2_ids[i] = random.nextInt(numNodes);
+        }
+        int[] deletionOrder = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            deletionOrder[i] = i;
+        }
+        for (int i = numNodes - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = deletionOrder[i];
+            deletionOrder[i] = deletionOrder[j];
+            deletionOrder[j] = tmp;
+        }
+
+        System.out.println("nodes=" + numNodes + " edges=" + numEdges);
+        for (int arity : arities) {
+            long bestAdd = Long.MAX_VALUE;
+            long bestDelete = Long.MAX_VALUE;
+            for (int repetition = 0; repetition < REPETITIONS; repetition++) {
+                //Add-heavy trace: every edge is added by a separate addEdge call.
+                Graph graph = new Graph(nodes, arity);
+                long start = System.nanoTime();
+                for (int i = 0; i < numEdges; i++) {
+                    graph.addEdge(node1_ids[i], node2_ids[i]);
+                }
+                bestAdd = Math.min(bestAdd, System.nanoTime() - start);
+
+                //Delete-heavy trace: every node is deleted by a separate deleteNode call.
+                start = System.nanoTime();
+                for (int i = 0; i < numNodes; i++) {
+                    graph.deleteNode(deletionOrder[i]);
+                }
+                bestDelete = Math.min(bestDelete, System.nanoTime() - start);
+            }
+            System.out.printf("arity=%d add-heavy=%.1fms delete-heavy=%.1fms%n", arity, bestAdd / 1e6, bestDelete / 1e6);
+        }
+    }
+}
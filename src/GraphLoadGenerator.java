@@ -0,0 +1,153 @@
+import java.net.SocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class runs clients of a graph server that pipeline frames of random ops for a fixed time, and prints the
+ * throughput in ops per second and the mean latency of a frame. The ops are a balanced mix on uniform ids:
+ * 50% addEdge, 5% deleteNode (followed by addNode of the same id, so the number of nodes stays the same),
+ * 40% getNeighborhoodWeight and 5% maxNeighborhoodWeight. Every client keeps up to 'window' frames in flight.
+ *
+ * Usage: java GraphLoadGenerator [numNodes] [numClients] [opsPerFrame] [window] [seconds] [address]
+ * Without an address, an embedded server of a graph of numNodes nodes is started on a temporary Unix-domain socket;
+ * with an address (a loopback port or a socket path), the clients connect to a running server (see GraphServer),
+ * whose ids are assumed to be 0 to numNodes - 1.
+ */
+public class GraphLoadGenerator {
+    /**
+     * Runs the clients and prints the results.
+     *
+     * @param args - the number of nodes, the number of clients, the number of ops per frame, the number of frames
+     *             in flight per client, the running time in seconds and the address of the server.
+     */
+    public static void main(String[] args) throws Exception {
+        int numNodes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int numClients = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int opsPerFrame = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        GraphServer server = null;
+        Path directory = null;
+        SocketAddress address;
+        if (args.length > 5) {
+            address = GraphServer.parseAddress(args[5]);
+        } else {
+            Random random = new Random(1);
+            Graph.Node[] nodes = new Graph.Node[numNodes];
+            for (int i = 0; i < numNodes; i++) {
+                nodes[i] = new Graph.Node(i, 1 + random.nextInt(100));
+            }
+            directory = Files.createTempDirectory("graph-server");
+            SocketAddress socket = GraphServer.parseAddress(directory.resolve("socket").toString());
+            server = new GraphServer(new Graph(nodes), socket);
+            address = server.getAddress();
+        }
+
+        AtomicLong numOps = new AtomicLong();
+        AtomicLong numFrames = new AtomicLong();
+        AtomicLong totalLatency = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1000000000L;
+        Thread[] clients = new Thread[numClients];
+        for (int c = 0; c < numClients; c++) {
+            long seed = c;
+            clients[c] = new Thread(() -> {
+                try (GraphServer.Client client = new GraphServer.Client(address)) {
+                    Random random = new Random(seed);
+                    int[] ops = new int[opsPerFrame * GraphServer.OP_SIZE];
+                    int[] results = new int[opsPerFrame];
+                    long[] sendTimes = new long[window];
+                    long sent = 0;
+                    long received = 0;
+                    long numReceivedOps = 0;
+                    long latency = 0;
+                    while (received < sent || System.nanoTime() < deadline) {
+                        //Sends frames until the window is full (or the time is up), then receives the oldest one.
+                        if (sent - received < window && System.nanoTime() < deadline) {
+                            int count = fillFrame(ops, opsPerFrame, numNodes, random);
+                            sendTimes[(int) (sent % window)] = System.nanoTime();
+                            client.send(ops, count);
+                            sent += 1;
+                        } else {
+                            numReceivedOps += client.receive(results);
+                            latency += System.nanoTime() - sendTimes[(int) (received % window)];
+                            received += 1;
+                        }
+                    }
+                    numOps.addAndGet(numReceivedOps);
+                    numFrames.addAndGet(received);
+                    totalLatency.addAndGet(latency);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            clients[c].start();
+        }
+        long start = System.nanoTime();
+        for (Thread client : clients) {
+            client.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("clients=%d opsPerFrame=%d window=%d%n", numClients, opsPerFrame, window);
+        System.out.printf("throughput=%.0f ops/s mean frame latency=%.1fus%n", numOps.get() * 1e9 / elapsed,
+                numFrames.get() == 0 ? 0.0 : totalLatency.get() / 1e3 / numFrames.get());
+        if (server != null) {
+            server.close();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+
+    /**
+     * Fills a frame with random ops of the mix.
+     *
+     * @param ops - the array of the ops of the frame.
+     * @param opsPerFrame - the maximal number of ops in the frame.
+     * @param numNodes - the number of nodes.
+     * @param random - the random generator.
+     * @return the number of ops in the frame.
+     */
+    public static int fillFrame(int[] ops, int opsPerFrame, int numNodes, Random random) {
+        int count = 0;
+        while (count < opsPerFrame) {
+            int r = random.nextInt(100);
+            int id = random.nextInt(numNodes);
+            int j = count * GraphServer.OP_SIZE;
+            if (r < 50) {
+                setOp(ops, j, GraphServer.ADD_EDGE, id, random.nextInt(numNodes));
+            } else if (r < 55) {
+                if (count + 2 > opsPerFrame) {
+                    continue;
+                }
+                setOp(ops, j, GraphServer.DELETE_NODE, id, 0);
+                setOp(ops, j + GraphServer.OP_SIZE, GraphServer.ADD_NODE, id, 1 + random.nextInt(100));
+                count += 1;
+            } else if (r < 95) {
+                setOp(ops, j, GraphServer.GET_NEIGHBORHOOD_WEIGHT, id, 0);
+            } else {
+                setOp(ops, j, GraphServer.MAX_NEIGHBORHOOD_WEIGHT, 0, 0);
+            }
+            count += 1;
+        }
+        return count;
+    }
+
+
+    /**
+     * Sets an op in the array of the ops of a frame.
+     *
+     * @param ops - the array of the ops.
+     * @param index - the index of the opcode of the op in the array.
+     * @param opcode - the opcode.
+     * @param a - the first argument.
+     * @param b - the second argument.
+     */
+    public static void setOp(int[] ops, int index, int opcode, int a, int b) {
+        ops[index] = opcode;
+        ops[index + 1] = a;
+        ops[index + 2] = b;
+    }
+}
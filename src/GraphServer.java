@@ -0,0 +1,812 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class serves a graph to the processes of the same host, over a Unix-domain socket or a loopback socket.
+ *
+ * The protocol is binary and little-endian. A client sends frames of ops, and may send many frames before it
+ * reads the responses (pipelining). A request frame is the number of ops followed by the ops, each of which is
+ * 3 ints: the opcode and its two arguments (like a record of the mutation log). The response frame of a request
+ * frame is the number of ops followed by the result of every op, and the responses of a connection are sent by
+ * the order of its requests. A connection that sends a malformed frame (a negative or a too large number of ops,
+ * or an unknown opcode) is closed.
+ *
+ * Every connection has a reader thread and a writer thread, which are virtual threads where the runtime has them
+ * (Java 21 and above), and daemon platform threads otherwise. The readers put the frames on a single queue, and
+ * a single mutator thread takes all the frames in the queue as a batch, applies their ops by order and hands the
+ * responses to the writers. So the graph is changed and read by one thread only and needs no locking, and while
+ * the server runs, no other thread may use the graph. If the graph has a mutation log, the mutator commits it once
+ * per batch, before any op of the batch is acknowledged. If the commit fails, the server closes all the connections
+ * without acknowledging the batch, and applies no more ops.
+ */
+public class GraphServer implements AutoCloseable {
+    /**
+     * The opcode of addEdge(a, b). The result is 1 if the edge was added, and 0 otherwise.
+     */
+    public static final int ADD_EDGE = 0;
+
+    /**
+     * The opcode of deleteNode(a). The result is 1 if the node was deleted, and 0 otherwise.
+     */
+    public static final int DELETE_NODE = 1;
+
+    /**
+     * The opcode of addNode of a node of id a and weight b. The result is 1 if the node was added, and 0 otherwise.
+     */
+    public static final int ADD_NODE = 2;
+
+    /**
+     * The opcode of getNeighborhoodWeight(a). The result is the neighborhood weight, or -1 if there is no such node.
+     */
+    public static final int GET_NEIGHBORHOOD_WEIGHT = 3;
+
+    /**
+     * The opcode of maxNeighborhoodWeight(). The result is the id of the node, or NO_NODE if the graph is empty.
+     */
+    public static final int MAX_NEIGHBORHOOD_WEIGHT = 4;
+
+    /**
+     * The opcode of getNumNodes(). The result is the number of nodes.
+     */
+    public static final int NUM_NODES = 5;
+
+    /**
+     * The opcode of getNumEdges(). The result is the number of edges.
+     */
+    public static final int NUM_EDGES = 6;
+
+    /**
+     * The number of opcodes.
+     */
+    public static final int NUM_OPCODES = 7;
+
+    /**
+     * The result of maxNeighborhoodWeight if the graph is empty.
+     */
+    public static final int NO_NODE = Integer.MIN_VALUE;
+
+    /**
+     * The number of ints in an op.
+     */
+    public static final int OP_SIZE = 3;
+
+    /**
+     * The maximal number of ops in a frame.
+     */
+    public static final int MAX_OPS_PER_FRAME = 1 << 16;
+
+    /**
+     * The maximal number of frames of a connection that were read and not answered yet. The reader of a connection
+     * waits when there are more, so a client that does not read its responses does not fill the memory.
+     */
+    public static final int MAX_PENDING_FRAMES = 64;
+
+    /**
+     * The initial size in bytes of the buffers of a connection.
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The request that stops the mutator.
+     */
+    public static final Request STOP = new Request(null, null, 0);
+
+    /**
+     * The response that stops the writer of a connection.
+     */
+    public static final int[] END = new int[0];
+
+    /**
+     * The response of a frame that was not applied because the commit of the mutation log failed.
+     */
+    public static final int[] DROPPED = new int[0];
+
+    /**
+     * The served graph.
+     */
+    public final Graph graph;
+
+    /**
+     * The listening channel.
+     */
+    public final ServerSocketChannel serverChannel;
+
+    /**
+     * The address that the server listens on.
+     */
+    public final SocketAddress address;
+
+    /**
+     * The factory of the threads of the connections.
+     */
+    public final ThreadFactory connectionThreads;
+
+    /**
+     * The queue of the frames that the mutator has not applied yet.
+     */
+    public final LinkedBlockingQueue<Request> requests;
+
+    /**
+     * The open connections.
+     */
+    public final Set<Connection> connections;
+
+    /**
+     * The thread that accepts the connections.
+     */
+    public final Thread acceptor;
+
+    /**
+     * The thread that applies the ops to the graph.
+     */
+    public final Thread mutator;
+
+    /**
+     * The failure of the commit of the mutation log, or 'null' if there was none.
+     */
+    public volatile RuntimeException failure;
+
+    /**
+     * Whether close was called.
+     */
+    public volatile boolean closed;
+
+
+    /**
+     * Starts a server of a graph on an address, which is a UnixDomainSocketAddress or an InetSocketAddress of the
+     * loopback interface (of port 0 for any free port). The file of a Unix-domain socket must not exist, and is
+     * deleted by close.
+     *
+     * time complexity: O(1).
+     *
+     * @param graph - the graph to serve, which no other thread may use until the server is closed.
+     * @param address - the address to listen on.
+     * @throws IOException if the address cannot be bound.
+     */
+    public GraphServer(Graph graph, SocketAddress address) throws IOException {
+        if (address instanceof InetSocketAddress && !((InetSocketAddress) address).getAddress().isLoopbackAddress()) {
+            throw new IllegalArgumentException("the server listens only on a Unix-domain or a loopback address");
+        }
+        this.graph = graph;
+        this.serverChannel = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        this.serverChannel.bind(address);
+        this.address = this.serverChannel.getLocalAddress();
+        this.connectionThreads = connectionThreadFactory();
+        this.requests = new LinkedBlockingQueue<>();
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.mutator = new Thread(this::mutate, "graph-server-mutator");
+        this.acceptor = new Thread(this::accept, "graph-server-acceptor");
+        this.mutator.start();
+        this.acceptor.start();
+    }
+
+
+    /**
+     * Parses an address: a port number is a port of the loopback interface, and anything else is the path of
+     * a Unix-domain socket.
+     *
+     * @param address - a port number or a path.
+     * @return the address.
+     */
+    public static SocketAddress parseAddress(String address) {
+        if (address.matches("[0-9]+")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+
+    /**
+     * Returns a factory of virtual threads if the runtime has them (they are looked up by reflection, so the class
+     * compiles on Java 17), and a factory of daemon platform threads otherwise.
+     *
+     * @return the factory of the threads of the connections.
+     */
+    public static ThreadFactory connectionThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, "graph-server-connection");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+
+    /**
+     * Accepts the connections and starts their threads, until the server is closed.
+     */
+    public void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = this.serverChannel.accept();
+            } catch (IOException e) {
+                return; //The server channel was closed.
+            }
+            Connection connection = new Connection(channel);
+            this.connections.add(connection);
+            if (this.closed || this.failure != null) {
+                connection.closeChannel();
+            }
+            connection.reader.start();
+            connection.writer.start();
+        }
+    }
+
+
+    /**
+     * Takes the frames from the queue in batches and applies them, until it takes STOP.
+     */
+    public void mutate() {
+        ArrayList<Request> batch = new ArrayList<>();
+        while (true) {
+            batch.clear();
+            try {
+                batch.add(this.requests.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            this.requests.drainTo(batch);
+
+            //Applies the ops of the batch by order.
+            for (Request request : batch) {
+                if (request.ops != null && this.failure == null) {
+                    request.results = new int[request.count];
+                    for (int i = 0; i < request.count; i++) {
+                        int j = i * OP_SIZE;
+                        request.results[i] = this.apply(request.ops[j], request.ops[j + 1], request.ops[j + 2]);
+                    }
+                }
+            }
+
+            //Commits the ops of the batch before they are acknowledged.
+            if (this.graph.mutationLog != null && this.failure == null) {
+                try {
+                    this.graph.mutationLog.commit();
+                } catch (RuntimeException e) {
+                    this.failure = e;
+                    for (Connection connection : this.connections) {
+                        connection.closeChannel();
+                    }
+                }
+            }
+
+            //Hands the responses to the writers of the connections.
+            for (Request request : batch) {
+                if (request == STOP) {
+                    return;
+                }
+                if (request.ops == null) {
+                    request.connection.responses.add(END);
+                } else {
+                    request.connection.responses.add(request.results != null ? request.results : DROPPED);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Applies an op to the graph.
+     *
+     * @param opcode - the opcode, which is valid.
+     * @param a - the first argument.
+     * @param b - the second argument.
+     * @return the result of the op.
+     */
+    public int apply(int opcode, int a, int b) {
+        switch (opcode) {
+            case ADD_EDGE:
+                return this.graph.addEdge(a, b) ? 1 : 0;
+            case DELETE_NODE:
+                return this.graph.deleteNode(a) ? 1 : 0;
+            case ADD_NODE:
+                return this.graph.addNode(new Graph.Node(a, b)) ? 1 : 0;
+            case GET_NEIGHBORHOOD_WEIGHT:
+                return this.graph.getNeighborhoodWeight(a);
+            case MAX_NEIGHBORHOOD_WEIGHT:
+                Graph.Node max = this.graph.maxNeighborhoodWeight();
+                return max == null ? NO_NODE : max.getId();
+            case NUM_NODES:
+                return this.graph.getNumNodes();
+            default:
+                return this.graph.getNumEdges();
+        }
+    }
+
+
+    /**
+     * Returns the address that the server listens on (with the bound port, if it was started on port 0).
+     *
+     * @return the address of the server.
+     */
+    public SocketAddress getAddress() {
+        return this.address;
+    }
+
+
+    /**
+     * Stops accepting connections, closes the open connections, waits until the ops that were already read are
+     * applied and all the threads exit, and deletes the file of a Unix-domain socket. The graph may be used again
+     * after close returns. If the thread is interrupted while it waits, the connections are still closed and the
+     * mutator is still stopped (without waiting for the threads), and the interrupt flag of the thread is restored.
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.serverChannel.close();
+        boolean interrupted = false;
+        try {
+            this.acceptor.join();
+            for (Connection connection : this.connections) {
+                connection.closeChannel();
+            }
+            for (Connection connection : this.connections) {
+                connection.reader.join();
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            for (Connection connection : this.connections) {
+                connection.closeChannel();
+            }
+        }
+        this.requests.add(STOP);
+        if (!interrupted) {
+            try {
+                this.mutator.join();
+                for (Connection connection : this.connections) {
+                    connection.writer.join();
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) this.address).getPath());
+        }
+    }
+
+
+    /**
+     * Serves a graph until the process is killed.
+     *
+     * Usage: java GraphServer address [numNodes | snapshotPath]
+     * The address is a port of the loopback interface or the path of a Unix-domain socket. The graph is loaded from
+     * a snapshot, or has numNodes nodes (of the ids 0 to numNodes - 1 and random weights) and no edges.
+     *
+     * @param args - the address, and the number of nodes or the path of a snapshot.
+     */
+    public static void main(String[] args) throws Exception {
+        String source = args.length > 1 ? args[1] : "1000000";
+        Graph graph;
+        if (source.matches("[0-9]+")) {
+            Random random = new Random(1);
+            Graph.Node[] nodes = new Graph.Node[Integer.parseInt(source)];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new Graph.Node(i, 1 + random.nextInt(100));
+            }
+            graph = new Graph(nodes);
+        } else {
+            graph = Graph.loadSnapshot(Path.of(source));
+        }
+        GraphServer server = new GraphServer(graph, parseAddress(args[0]));
+        System.out.println("serving " + graph.getNumNodes() + " nodes on " + server.getAddress());
+        server.acceptor.join();
+    }
+
+
+    /**
+     * A frame of ops that a connection read, with its results once the mutator applied it.
+     */
+    public static class Request {
+        /**
+         * The connection of the frame, or 'null' for STOP.
+         */
+        public final Connection connection;
+
+        /**
+         * The ops of the frame, or 'null' if the connection reached its end.
+         */
+        public final int[] ops;
+
+        /**
+         * The number of ops.
+         */
+        public final int count;
+
+        /**
+         * The results of the ops, which the mutator sets.
+         */
+        public int[] results;
+
+
+        /**
+         * Creates a frame.
+         *
+         * @param connection - the connection of the frame.
+         * @param ops - the ops of the frame, or 'null' if the connection reached its end.
+         * @param count - the number of ops.
+         */
+        public Request(Connection connection, int[] ops, int count) {
+            this.connection = connection;
+            this.ops = ops;
+            this.count = count;
+        }
+    }
+
+
+    /**
+     * A connection of a client, with its reader and writer threads.
+     */
+    public class Connection {
+        /**
+         * The framed channel of the connection.
+         */
+        public final FrameChannel frames;
+
+        /**
+         * The responses that were not written yet, by the order of the requests, and END after the last one.
+         */
+        public final LinkedBlockingQueue<int[]> responses;
+
+        /**
+         * The permits of the frames that may be read before their responses are written.
+         */
+        public final Semaphore window;
+
+        /**
+         * The thread that reads the frames.
+         */
+        public final Thread reader;
+
+        /**
+         * The thread that writes the responses.
+         */
+        public final Thread writer;
+
+
+        /**
+         * Creates a connection and its threads, which are not started yet.
+         *
+         * @param channel - the accepted channel.
+         */
+        public Connection(SocketChannel channel) {
+            this.frames = new FrameChannel(channel);
+            this.responses = new LinkedBlockingQueue<>();
+            this.window = new Semaphore(MAX_PENDING_FRAMES);
+            this.reader = GraphServer.this.connectionThreads.newThread(this::read);
+            this.writer = GraphServer.this.connectionThreads.newThread(this::write);
+        }
+
+
+        /**
+         * Reads the frames and puts them on the queue of the mutator, until the connection ends or sends
+         * a malformed frame, and then puts the end of the connection on the queue.
+         */
+        public void read() {
+            try {
+                while (this.frames.require(Integer.BYTES)) {
+                    int count = this.frames.readInt();
+                    if (count < 0 || count > MAX_OPS_PER_FRAME) {
+                        break;
+                    }
+                    if (!this.frames.require(count * OP_SIZE * Integer.BYTES)) {
+                        break;
+                    }
+                    int[] ops = new int[count * OP_SIZE];
+                    boolean valid = true;
+                    for (int i = 0; i < ops.length; i++) {
+                        ops[i] = this.frames.readInt();
+                    }
+                    for (int i = 0; i < ops.length; i += OP_SIZE) {
+                        valid &= ops[i] >= 0 && ops[i] < NUM_OPCODES;
+                    }
+                    if (!valid) {
+                        break;
+                    }
+                    this.window.acquire();
+                    GraphServer.this.requests.add(new Request(this, ops, count));
+                }
+            } catch (IOException | InterruptedException e) {
+                //The connection was closed: ends it as if the client closed it.
+            }
+            this.closeChannel();
+            GraphServer.this.requests.add(new Request(this, null, 0));
+        }
+
+
+        /**
+         * Writes the responses, as many as are ready per write, until it takes END. The responses that are taken
+         * after the channel was closed, and DROPPED, are not written.
+         */
+        public void write() {
+            ArrayList<int[]> ready = new ArrayList<>();
+            boolean open = true;
+            while (true) {
+                ready.clear();
+                try {
+                    ready.add(this.responses.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                this.responses.drainTo(ready);
+                boolean end = false;
+                int numWritten = 0;
+                for (int[] results : ready) {
+                    if (results == END) {
+                        end = true;
+                        break;
+                    }
+                    if (open && results != DROPPED) {
+                        this.frames.ensureOutput((results.length + 1) * Integer.BYTES);
+                        this.frames.writeInt(results.length);
+                        for (int result : results) {
+                            this.frames.writeInt(result);
+                        }
+                    }
+                    numWritten += 1;
+                }
+                if (open) {
+                    try {
+                        this.frames.flush();
+                    } catch (IOException e) {
+                        open = false;
+                        this.closeChannel();
+                    }
+                }
+                this.window.release(numWritten);
+                if (end) {
+                    GraphServer.this.connections.remove(this);
+                    this.closeChannel();
+                    return;
+                }
+            }
+        }
+
+
+        /**
+         * Closes the channel of the connection, which ends its reader.
+         */
+        public void closeChannel() {
+            try {
+                this.frames.channel.close();
+            } catch (IOException e) {
+                //The channel is closed anyway.
+            }
+        }
+    }
+
+
+    /**
+     * A socket channel with little-endian input and output buffers, which reads and writes ints in bulk.
+     */
+    public static class FrameChannel {
+        /**
+         * The channel.
+         */
+        public final SocketChannel channel;
+
+        /**
+         * The bytes that were received and not read yet (in the read mode of the buffer).
+         */
+        public ByteBuffer input;
+
+        /**
+         * The bytes that were written and not sent yet (in the write mode of the buffer).
+         */
+        public ByteBuffer output;
+
+
+        /**
+         * Wraps a channel.
+         *
+         * @param channel - a connected channel.
+         */
+        public FrameChannel(SocketChannel channel) {
+            this.channel = channel;
+            this.input = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN).flip();
+            this.output = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+
+        /**
+         * Receives until there are at least numBytes bytes to read.
+         *
+         * @param numBytes - the number of bytes.
+         * @return 'true' if there are, or 'false' if the channel reached its end before any byte was received.
+         * @throws EOFException if the channel reached its end in the middle of the bytes.
+         * @throws IOException if the channel cannot be read.
+         */
+        public boolean require(int numBytes) throws IOException {
+            if (this.input.remaining() >= numBytes) {
+                return true;
+            }
+            if (this.input.capacity() < numBytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(numBytes, 2 * this.input.capacity()));
+                this.input = larger.order(ByteOrder.LITTLE_ENDIAN).put(this.input).flip();
+            }
+            this.input.compact();
+            while (this.input.position() < numBytes) {
+                if (this.channel.read(this.input) < 0) {
+                    int received = this.input.position();
+                    this.input.flip();
+                    if (received == 0) {
+                        return false;
+                    }
+                    throw new EOFException("the connection ended in the middle of a frame");
+                }
+            }
+            this.input.flip();
+            return true;
+        }
+
+
+        /**
+         * Reads an int, which was required.
+         *
+         * @return the int.
+         */
+        public int readInt() {
+            return this.input.getInt();
+        }
+
+
+        /**
+         * Makes room for numBytes more bytes in the output buffer.
+         *
+         * @param numBytes - the number of bytes.
+         */
+        public void ensureOutput(int numBytes) {
+            if (this.output.remaining() < numBytes) {
+                int capacity = Math.max(this.output.position() + numBytes, 2 * this.output.capacity());
+                ByteBuffer larger = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+                this.output = larger.put(this.output.flip());
+            }
+        }
+
+
+        /**
+         * Writes an int to the output buffer, which has room for it.
+         *
+         * @param value - the int.
+         */
+        public void writeInt(int value) {
+            this.output.putInt(value);
+        }
+
+
+        /**
+         * Sends the output buffer.
+         *
+         * @throws IOException if the channel cannot be written.
+         */
+        public void flush() throws IOException {
+            this.output.flip();
+            while (this.output.hasRemaining()) {
+                this.channel.write(this.output);
+            }
+            this.output.clear();
+        }
+    }
+
+
+    /**
+     * A client of a graph server, which sends frames of ops and receives their responses. A client may send many
+     * frames before it receives their responses, which arrive by the order of the frames. It is not thread safe.
+     */
+    public static class Client implements AutoCloseable {
+        /**
+         * The framed channel of the client.
+         */
+        public final FrameChannel frames;
+
+
+        /**
+         * Connects to a server.
+         *
+         * @param address - the address of the server.
+         * @throws IOException if the server cannot be reached.
+         */
+        public Client(SocketAddress address) throws IOException {
+            this.frames = new FrameChannel(SocketChannel.open(address));
+        }
+
+
+        /**
+         * Sends a frame of ops.
+         *
+         * time complexity: O(count).
+         *
+         * @param ops - the ops: opcode, first argument and second argument, one after the other.
+         * @param count - the number of ops, at most MAX_OPS_PER_FRAME.
+         * @throws IOException if the frame cannot be sent.
+         */
+        public void send(int[] ops, int count) throws IOException {
+            this.frames.ensureOutput((count * OP_SIZE + 1) * Integer.BYTES);
+            this.frames.writeInt(count);
+            for (int i = 0; i < count * OP_SIZE; i++) {
+                this.frames.writeInt(ops[i]);
+            }
+            this.frames.flush();
+        }
+
+
+        /**
+         * Receives the response of the oldest frame that was sent and not answered yet.
+         *
+         * time complexity: O(count).
+         *
+         * @param results - an array for the results, as long as the number of ops of the frame.
+         * @return the number of results.
+         * @throws IOException if the response cannot be received, or the server closed the connection.
+         */
+        public int receive(int[] results) throws IOException {
+            if (!this.frames.require(Integer.BYTES)) {
+                throw new EOFException("the server closed the connection");
+            }
+            int count = this.frames.readInt();
+            if (!this.frames.require(count * Integer.BYTES)) {
+                throw new EOFException("the server closed the connection");
+            }
+            for (int i = 0; i < count; i++) {
+                results[i] = this.frames.readInt();
+            }
+            return count;
+        }
+
+
+        /**
+         * Sends a frame of ops and receives its response.
+         *
+         * @param ops - the ops: opcode, first argument and second argument, one after the other.
+         * @param count - the number of ops.
+         * @return the results of the ops.
+         * @throws IOException if the frame cannot be sent or its response cannot be received.
+         */
+        public int[] call(int[] ops, int count) throws IOException {
+            this.send(ops, count);
+            int[] results = new int[count];
+            this.receive(results);
+            return results;
+        }
+
+
+        /**
+         * Closes the connection.
+         *
+         * @throws IOException if the channel cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            this.frames.channel.close();
+        }
+    }
+}
@@ -0,0 +1,744 @@
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class represents a graph that maintains the heaviest neighborhood over edge addition and vertex deletion,
+ * with the vertices partitioned by their ids across shards, each of which is changed by its own thread.
+ *
+ * Every shard keeps the nodes of its ids, their neighbors lists (of neighbor ids), its own hash table of the ids
+ * and its own max-heap of the neighborhood weights, and is changed only by its thread, which takes batches of
+ * messages from the queue of the shard. An edge is sent to the shard of its first node, which applies its side
+ * of the edge and forwards the other side to the shard of the second node (or rejects it back, if the second node
+ * was deleted meanwhile). A deleted node sends the subtraction of its weight to the shards of its neighbors.
+ * The messages that a shard sends while it applies a batch are collected per destination and sent as one batch.
+ * The messages between two shards are applied by order, which keeps the two sides of every edge consistent.
+ *
+ * After every batch, a shard publishes its heaviest neighborhood to a max-heap of the P shards, from which
+ * maxNeighborhoodWeight reads the heaviest neighborhood of the graph. The mutations are asynchronous:
+ * the queries see the mutations that the shards have applied so far, and flush waits for all of them.
+ * The nodes are given at the construction (there is no addNode), so a deleted id is never reused.
+ */
+public class ShardedGraph implements AutoCloseable {
+    /**
+     * The neighborhood weight of a deleted vertex.
+     */
+    public static final int DELETED = Integer.MIN_VALUE;
+
+    /**
+     * The number of ints in a message: the type, the id of the node that the message is applied to,
+     * the id of the other node of the edge and the weight of the other node.
+     */
+    public static final int MESSAGE_SIZE = 4;
+
+    /**
+     * Message types: an edge from a client (to the shard of its first node), the second side of an edge
+     * (to the shard of its second node), the rejection of the first side of an edge whose second node was deleted,
+     * the deletion of a node (from a client), and the subtraction of the weight of a deleted neighbor.
+     */
+    public static final int ADD_EDGE = 0, ADD_SECOND_SIDE = 1, REJECT_FIRST_SIDE = 2, DELETE_NODE = 3,
+            DELETE_NEIGHBOR = 4;
+
+    /**
+     * The shards of the graph.
+     */
+    public final Shard[] shards;
+
+    /**
+     * The threads of the shards.
+     */
+    public final Thread[] threads;
+
+    /**
+     * The max-heap of the heaviest neighborhood weights of the shards (the vertex i is the shard i),
+     * which has no vertex of a shard without nodes. It is guarded by topLock.
+     */
+    public final Graph.DaryMaxHeap topHeap;
+
+    /**
+     * The lock of the max-heap of the shards.
+     */
+    public final ReentrantLock topLock;
+
+    /**
+     * The node with the heaviest neighborhood, as of the last batch that a shard applied, or 'null' if there is none.
+     */
+    public volatile Graph.Node publishedMax;
+
+    /**
+     * The number of batches that were sent and not applied yet.
+     */
+    public final AtomicLong pendingBatches;
+
+    /**
+     * The monitor that flush waits on until there are no pending batches.
+     */
+    public final Object idle;
+
+    /**
+     * The number of vertices in the graph (including the deletions that were not applied yet).
+     */
+    public final AtomicInteger numNodes;
+
+    /**
+     * Whether close was called.
+     */
+    public volatile boolean closed;
+
+
+    /**
+     * Initializes the graph on a given set of nodes, with a shard per available processor, and starts the threads
+     * of the shards. The created graph is empty, i.e. it has no edges.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O(N + P) expected, while P is the number of shards.
+     *
+     * @param nodes - an array of node objects
+     */
+    public ShardedGraph(Graph.Node[] nodes) {
+        this(nodes, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Initializes the graph on a given set of nodes, with the given number of shards, and starts the threads of
+     * the shards. The created graph is empty, i.e. it has no edges.
+     * You may assume that the ids of distinct nodes are distinct.
+     *
+     * time complexity: O(N + P) expected, while P is the number of shards.
+     *
+     * @param nodes - an array of node objects
+     * @param numShards - the number of shards, at least 1.
+     */
+    public ShardedGraph(Graph.Node[] nodes, int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("the number of shards must be positive");
+        }
+        //Partitions the nodes by the shards of their ids.
+        ArrayList<ArrayList<Graph.Node>> partition = new ArrayList<>();
+        for (int i = 0; i < numShards; i++) {
+            partition.add(new ArrayList<>());
+        }
+        for (Graph.Node node : nodes) {
+            partition.get(shardOf(node.getId(), numShards)).add(node);
+        }
+        this.shards = new Shard[numShards];
+        for (int i = 0; i < numShards; i++) {
+            this.shards[i] = new Shard(i, partition.get(i).toArray(new Graph.Node[0]));
+        }
+
+        //Builds the max-heap of the shards, without the shards that have no nodes.
+        int[] heapVertices = new int[numShards];
+        int[] heapKeys = new int[numShards];
+        int size = 0;
+        for (Shard shard : this.shards) {
+            if (shard.heap.getSize() > 0) {
+                shard.publishedKey = shard.heap.getKey(shard.heap.max());
+                heapVertices[size] = shard.index;
+                heapKeys[size] = shard.publishedKey;
+                size += 1;
+            }
+        }
+        this.topHeap = new Graph.DaryMaxHeap(Graph.DEFAULT_HEAP_ARITY, heapVertices, heapKeys, size);
+        this.topHeap.buildHeap();
+        this.topLock = new ReentrantLock();
+        this.publishedMax = size == 0 ? null : this.shards[this.topHeap.max()].publishedRoot;
+
+        this.pendingBatches = new AtomicLong();
+        this.idle = new Object();
+        this.numNodes = new AtomicInteger(nodes.length);
+        this.threads = new Thread[numShards];
+        for (int i = 0; i < numShards; i++) {
+            this.threads[i] = new Thread(this.shards[i], "graph-shard-" + i);
+            this.threads[i].setDaemon(true);
+            this.threads[i].start();
+        }
+    }
+
+
+    /**
+     * Returns the shard of a node id, by a multiplicative hash of the id.
+     *
+     * time complexity: O(1).
+     *
+     * @param node_id - an id of a node.
+     * @param numShards - the number of shards.
+     * @return the index of the shard of the id.
+     */
+    public static int shardOf(int node_id, int numShards) {
+        return (int) (((node_id * 0x9E3779B9L) & 0xFFFFFFFFL) * numShards >>> 32);
+    }
+
+
+    /**
+     * This method returns the node in the graph with the maximal neighborhood weight, as of the last batches that
+     * the shards applied.
+     *
+     * time complexity: O(1) (the max-heap of the shards is corrected in O(log(P)) after every batch).
+     *
+     * @return a Node object representing the node. If there is no node in the graph, returns 'null'.
+     */
+    public Graph.Node maxNeighborhoodWeight() {
+        return this.publishedMax;
+    }
+
+
+    /**
+     * given a node id of a node in the graph, this method returns the neighborhood weight of that node,
+     * as of the last batch that its shard applied, without locks.
+     *
+     * time complexity: O(1) expected.
+     *
+     * @param node_id - an id of a node.
+     * @return the neighborhood weight of the node of id 'node_id' if such a node exists in the graph.
+     * Otherwise, the function returns -1.
+     */
+    public int getNeighborhoodWeight(int node_id) {
+        Shard shard = this.shards[shardOf(node_id, this.shards.length)];
+        int vertex = shard.tableIdToRepresentation.find(node_id);
+        if (vertex == -1) {
+            return -1;
+        }
+        int neighborhoodWeight = shard.neighborhoodWeights.get(vertex);
+        return neighborhoodWeight == DELETED ? -1 : neighborhoodWeight;
+    }
+
+
+    /**
+     * Sends an edge between the two nodes whose ids are specified to the shard of the first node.
+     * If one of these ids is not of a node of the graph, or the ids are equal, the function does nothing.
+     * If one of the nodes is deleted before the edge is applied, the edge is dropped.
+     *
+     * time complexity: O(1) expected.
+     *
+     * @param node1_id - the id of the first node.
+     * @param node2_id - the id of the second node.
+     * @return returns 'true' if the function sent the edge, otherwise returns 'false'.
+     */
+    public boolean addEdge(int node1_id, int node2_id) {
+        return this.addEdges(new int[]{node1_id}, new int[]{node2_id})[0];
+    }
+
+
+    /**
+     * Sends the edges (node1_ids[i], node2_ids[i]) for every i, in one batch to each shard, as addEdge does.
+     * The edges of the same shard are applied by order.
+     *
+     * time complexity: O(k + P) expected, while k is the number of edges.
+     *
+     * @param node1_ids - the ids of the first nodes of the edges.
+     * @param node2_ids - the ids of the second nodes of the edges.
+     * @return an array whose i-th cell is 'true' if the i-th edge was sent, otherwise 'false'.
+     * @throws IllegalStateException if the graph was closed.
+     */
+    public boolean[] addEdges(int[] node1_ids, int[] node2_ids) {
+        this.ensureOpen();
+        if (node1_ids.length != node2_ids.length) {
+            throw new IllegalArgumentException("node1_ids and node2_ids must have the same length");
+        }
+        Outbox outbox = new Outbox(this.shards.length);
+        boolean[] sent = new boolean[node1_ids.length];
+        for (int i = 0; i < node1_ids.length; i++) {
+            int shard1 = shardOf(node1_ids[i], this.shards.length);
+            int shard2 = shardOf(node2_ids[i], this.shards.length);
+            if (node1_ids[i] == node2_ids[i]
+                    || this.shards[shard1].tableIdToRepresentation.find(node1_ids[i]) == -1
+                    || this.shards[shard2].tableIdToRepresentation.find(node2_ids[i]) == -1) {
+                continue;
+            }
+            outbox.add(shard1, ADD_EDGE, node1_ids[i], node2_ids[i], 0);
+            sent[i] = true;
+        }
+        outbox.send();
+        return sent;
+    }
+
+
+    /**
+     * Given the id of a node in the graph, sends the deletion of the node of that id to its shard.
+     *
+     * time complexity: O(1) expected.
+     *
+     * @param node_id - the id of the node to delete.
+     * @return returns 'true' if the function sent the deletion (once per node), otherwise returns 'false'.
+     * @throws IllegalStateException if the graph was closed.
+     */
+    public boolean deleteNode(int node_id) {
+        this.ensureOpen();
+        int index = shardOf(node_id, this.shards.length);
+        Shard shard = this.shards[index];
+        int vertex = shard.tableIdToRepresentation.find(node_id);
+        if (vertex == -1 || !shard.deletionRequested.compareAndSet(vertex, 0, 1)) {
+            return false;
+        }
+        this.numNodes.decrementAndGet();
+        Outbox outbox = new Outbox(this.shards.length);
+        outbox.add(index, DELETE_NODE, node_id, 0, 0);
+        outbox.send();
+        return true;
+    }
+
+
+    /**
+     * Waits until the shards applied all the mutations that were sent before this call, and all the messages that
+     * they caused, so the following queries see all of them.
+     *
+     * time complexity: the time of applying the pending mutations.
+     *
+     * @throws InterruptedException if the thread is interrupted while it waits.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (this.idle) {
+            while (this.pendingBatches.get() != 0) {
+                this.idle.wait();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of nodes currently in the graph (including the deletions that were not applied yet).
+     *
+     * time complexity: O(1).
+     *
+     * @return the number of nodes in the graph.
+     */
+    public int getNumNodes() {
+        return this.numNodes.get();
+    }
+
+
+    /**
+     * Returns the number of edges in the graph, as of the last batches that the shards applied
+     * (exact after flush).
+     *
+     * time complexity: O(P).
+     *
+     * @return the number of edges in the graph.
+     */
+    public int getNumEdges() {
+        long halfEdges = 0;
+        for (Shard shard : this.shards) {
+            halfEdges += shard.halfEdges;
+        }
+        return (int) (halfEdges / 2);
+    }
+
+
+    /**
+     * Throws an exception if the graph was closed, since its shards do not apply batches anymore.
+     *
+     * time complexity: O(1).
+     *
+     * @throws IllegalStateException if the graph was closed.
+     */
+    public void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("the graph was closed");
+        }
+    }
+
+
+    /**
+     * Stops the threads of the shards after they apply the batches that were sent before this call. The stop batches
+     * are counted as pending batches like any other batch, so flush still returns after close. Closing a closed
+     * graph does nothing. If the thread is interrupted while it waits, the threads are still stopped (without
+     * waiting for them), and the interrupt flag of the thread is restored.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : this.shards) {
+            this.pendingBatches.incrementAndGet();
+            shard.queue.add(new int[0]);
+        }
+        try {
+            for (Thread thread : this.threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Corrects the key of a shard in the max-heap of the shards, and publishes the heaviest neighborhood.
+     *
+     * time complexity: O(log(P)).
+     *
+     * @param shard - the shard whose heaviest neighborhood changed.
+     * @param root - the node with the heaviest neighborhood in the shard, or 'null' if it has no nodes.
+     * @param key - the heaviest neighborhood weight in the shard.
+     */
+    public void publish(Shard shard, Graph.Node root, int key) {
+        this.topLock.lock();
+        try {
+            boolean inHeap = this.topHeap.positions[shard.index] != -1;
+            if (root == null) {
+                if (inHeap) {
+                    this.topHeap.delete(shard.index);
+                }
+            } else if (inHeap) {
+                this.topHeap.changeNeighborhoodWeight(shard.index, key - shard.publishedKey);
+            } else {
+                this.topHeap.insert(shard.index, key);
+            }
+            shard.publishedRoot = root;
+            shard.publishedKey = key;
+            this.publishedMax = this.topHeap.getSize() == 0 ? null : this.shards[this.topHeap.max()].publishedRoot;
+        } finally {
+            this.topLock.unlock();
+        }
+    }
+
+
+
+    /**
+     * This class collects messages per destination shard, and sends the messages of every shard as one batch.
+     */
+    public class Outbox {
+        /**
+         * The messages to every shard.
+         */
+        public final int[][] messages;
+
+        /**
+         * The number of ints in the messages to every shard.
+         */
+        public final int[] sizes;
+
+
+        /**
+         * Creates an empty outbox.
+         *
+         * time complexity: O(P).
+         *
+         * @param numShards - the number of shards.
+         */
+        public Outbox(int numShards) {
+            this.messages = new int[numShards][];
+            this.sizes = new int[numShards];
+        }
+
+
+        /**
+         * Adds a message to a shard.
+         *
+         * time complexity: O(1) amortized.
+         *
+         * @param shard - the index of the destination shard.
+         * @param type - the type of the message.
+         * @param node_id - the id of the node that the message is applied to.
+         * @param other_id - the id of the other node of the edge, or 0.
+         * @param weight - the weight of the other node, or 0.
+         */
+        public void add(int shard, int type, int node_id, int other_id, int weight) {
+            int size = this.sizes[shard];
+            if (this.messages[shard] == null) {
+                this.messages[shard] = new int[16 * MESSAGE_SIZE];
+            } else if (size == this.messages[shard].length) {
+                this.messages[shard] = java.util.Arrays.copyOf(this.messages[shard], 2 * size);
+            }
+            int[] messages = this.messages[shard];
+            messages[size] = type;
+            messages[size + 1] = node_id;
+            messages[size + 2] = other_id;
+            messages[size + 3] = weight;
+            this.sizes[shard] = size + MESSAGE_SIZE;
+        }
+
+
+        /**
+         * Sends the collected messages (one batch to every shard that has messages), and empties the outbox.
+         * The pending batches are counted before they are queued.
+         *
+         * time complexity: O(P + number of messages).
+         */
+        public void send() {
+            for (int shard = 0; shard < this.sizes.length; shard++) {
+                if (this.sizes[shard] == 0) {
+                    continue;
+                }
+                pendingBatches.incrementAndGet();
+                shards[shard].queue.add(java.util.Arrays.copyOf(this.messages[shard], this.sizes[shard]));
+                this.sizes[shard] = 0;
+            }
+        }
+    }
+
+
+
+    /**
+     * This class represents a shard: the nodes of its ids, their neighbors lists and neighborhood weights,
+     * and the queue of its batches of messages. Everything but the queue, the published neighborhood weights and
+     * the requested deletions is changed only by the thread of the shard.
+     */
+    public class Shard implements Runnable {
+        /**
+         * The index of the shard.
+         */
+        public final int index;
+
+        /**
+         * The node of each vertex of the shard, indexed by the index of the vertex. It is not changed after the
+         * construction, so the other shards read the weights of the nodes without locks.
+         */
+        public final Graph.Node[] vertices;
+
+        /**
+         * The hash table that maps node id to the index of the vertex in the shard. It is not changed after the
+         * construction, so it is read without locks.
+         */
+        public final Graph.IdIndex tableIdToRepresentation;
+
+        /**
+         * The max-heap of the neighborhood weights of the vertices of the shard.
+         */
+        public final Graph.DaryMaxHeap heap;
+
+        /**
+         * The neighborhood weight of each vertex (or DELETED), as of the last applied message, for the queries.
+         */
+        public final AtomicIntegerArray neighborhoodWeights;
+
+        /**
+         * Whether the deletion of each vertex was sent (1) or not (0).
+         */
+        public final AtomicIntegerArray deletionRequested;
+
+        /**
+         * The ids of the neighbors of each vertex, with an entry per edge. The entries of the neighbors that were
+         * deleted are left in the list, and skipped.
+         */
+        public final int[][] neighbors;
+
+        /**
+         * The length of the neighbors list of each vertex.
+         */
+        public final int[] lengths;
+
+        /**
+         * The number of edges of each vertex (the entries of its neighbors list whose neighbors are not deleted).
+         */
+        public final int[] degrees;
+
+        /**
+         * The sum of the degrees of the vertices of the shard that are not deleted.
+         */
+        public volatile long halfEdges;
+
+        /**
+         * The queue of the batches of messages to the shard. An empty batch stops the thread.
+         */
+        public final LinkedBlockingQueue<int[]> queue;
+
+        /**
+         * The node with the heaviest neighborhood in the shard, as it was published to the max-heap of the shards.
+         */
+        public Graph.Node publishedRoot;
+
+        /**
+         * The heaviest neighborhood weight in the shard, as it was published to the max-heap of the shards.
+         */
+        public int publishedKey;
+
+
+        /**
+         * Creates a shard of the given nodes, without edges.
+         *
+         * time complexity: O(n) expected, while n is the number of nodes of the shard.
+         *
+         * @param index - the index of the shard.
+         * @param nodes - the nodes of the shard.
+         */
+        public Shard(int index, Graph.Node[] nodes) {
+            this.index = index;
+            this.vertices = nodes;
+            this.tableIdToRepresentation = new Graph.IdIndex(nodes);
+            this.heap = new Graph.DaryMaxHeap(nodes, Graph.DEFAULT_HEAP_ARITY);
+            this.neighborhoodWeights = new AtomicIntegerArray(nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                this.neighborhoodWeights.set(i, nodes[i].getWeight());
+            }
+            this.deletionRequested = new AtomicIntegerArray(nodes.length);
+            this.neighbors = new int[nodes.length][];
+            this.lengths = new int[nodes.length];
+            this.degrees = new int[nodes.length];
+            this.queue = new LinkedBlockingQueue<>();
+            this.publishedRoot = nodes.length == 0 ? null : nodes[this.heap.max()];
+        }
+
+
+        /**
+         * Applies the batches of the queue until an empty batch arrives. The batches that are queued together are
+         * applied together, the messages that they cause are sent once, and the heaviest neighborhood of the shard
+         * is published once.
+         */
+        @Override
+        public void run() {
+            ArrayList<int[]> batches = new ArrayList<>();
+            Outbox outbox = new Outbox(shards.length);
+            while (true) {
+                try {
+                    batches.add(this.queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                this.queue.drainTo(batches);
+                boolean stop = false;
+                for (int[] batch : batches) {
+                    stop |= batch.length == 0;
+                    for (int i = 0; i < batch.length; i += MESSAGE_SIZE) {
+                        this.apply(batch[i], batch[i + 1], batch[i + 2], batch[i + 3], outbox);
+                    }
+                }
+                outbox.send();
+
+                Graph.Node root = this.heap.getSize() == 0 ? null : this.vertices[this.heap.max()];
+                int key = root == null ? 0 : this.heap.getKey(this.heap.max());
+                if (root != this.publishedRoot || key != this.publishedKey) {
+                    publish(this, root, key);
+                }
+                if (pendingBatches.addAndGet(-batches.size()) == 0) {
+                    synchronized (idle) {
+                        idle.notifyAll();
+                    }
+                }
+                batches.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        }
+
+
+        /**
+         * Applies a message to a vertex of the shard.
+         *
+         * time complexity: O(log(n)) expected for an edge, O(d_v * log(n)) expected for a deleted node.
+         *
+         * @param type - the type of the message.
+         * @param node_id - the id of the node of the shard that the message is applied to.
+         * @param other_id - the id of the other node of the edge.
+         * @param weight - the weight of the other node.
+         * @param outbox - the outbox of the messages that the message causes.
+         */
+        public void apply(int type, int node_id, int other_id, int weight, Outbox outbox) {
+            int vertex = this.tableIdToRepresentation.find(node_id);
+            boolean deleted = this.heap.positions[vertex] == -1;
+            switch (type) {
+                case ADD_EDGE: {
+                    if (deleted) {
+                        return;
+                    }
+                    int otherShard = shardOf(other_id, shards.length);
+                    if (otherShard == this.index) {
+                        int otherVertex = this.tableIdToRepresentation.find(other_id);
+                        if (this.heap.positions[otherVertex] == -1) {
+                            return;
+                        }
+                        this.addSide(vertex, other_id, this.vertices[otherVertex].getWeight());
+                        this.addSide(otherVertex, node_id, this.vertices[vertex].getWeight());
+                        return;
+                    }
+                    Shard other = shards[otherShard];
+                    Graph.Node otherNode = other.vertices[other.tableIdToRepresentation.find(other_id)];
+                    this.addSide(vertex, other_id, otherNode.getWeight());
+                    outbox.add(otherShard, ADD_SECOND_SIDE, other_id, node_id, this.vertices[vertex].getWeight());
+                    return;
+                }
+                case ADD_SECOND_SIDE:
+                    if (deleted) {
+                        outbox.add(shardOf(other_id, shards.length), REJECT_FIRST_SIDE, other_id, node_id,
+                                this.vertices[vertex].getWeight());
+                    } else {
+                        this.addSide(vertex, other_id, weight);
+                    }
+                    return;
+                case REJECT_FIRST_SIDE:
+                case DELETE_NEIGHBOR:
+                    //The other node was deleted, so the entry of its edge is left to be skipped.
+                    if (!deleted) {
+                        this.heap.changeNeighborhoodWeight(vertex, -weight);
+                        this.neighborhoodWeights.lazySet(vertex, this.heap.getKey(vertex));
+                        this.degrees[vertex] -= 1;
+                        this.halfEdges -= 1;
+                    }
+                    return;
+                default:
+                    this.deleteVertex(vertex, outbox);
+            }
+        }
+
+
+        /**
+         * Adds the side of an edge of a vertex of the shard: an entry of the neighbor in its neighbors list,
+         * and the weight of the neighbor to its neighborhood weight.
+         *
+         * time complexity: O(log(n)) amortized.
+         *
+         * @param vertex - the index of a vertex of the shard that is not deleted.
+         * @param neighbor_id - the id of the neighbor.
+         * @param weight - the weight of the neighbor.
+         */
+        public void addSide(int vertex, int neighbor_id, int weight) {
+            int length = this.lengths[vertex];
+            if (this.neighbors[vertex] == null) {
+                this.neighbors[vertex] = new int[4];
+            } else if (length == this.neighbors[vertex].length) {
+                this.neighbors[vertex] = java.util.Arrays.copyOf(this.neighbors[vertex], 2 * length);
+            }
+            this.neighbors[vertex][length] = neighbor_id;
+            this.lengths[vertex] = length + 1;
+            this.degrees[vertex] += 1;
+            this.halfEdges += 1;
+            this.heap.changeNeighborhoodWeight(vertex, weight);
+            this.neighborhoodWeights.lazySet(vertex, this.heap.getKey(vertex));
+        }
+
+
+        /**
+         * Deletes a vertex of the shard: subtracts its weight from its neighbors in the shard, and sends the
+         * subtraction to the shards of its other neighbors (the neighbors that were deleted ignore it).
+         *
+         * time complexity: O(d_v * log(n)) expected.
+         *
+         * @param vertex - the index of a vertex of the shard.
+         * @param outbox - the outbox of the subtractions.
+         */
+        public void deleteVertex(int vertex, Outbox outbox) {
+            if (this.heap.positions[vertex] == -1) {
+                return;
+            }
+            this.heap.delete(vertex);
+            this.neighborhoodWeights.set(vertex, DELETED);
+            this.halfEdges -= this.degrees[vertex];
+            int node_id = this.vertices[vertex].getId();
+            int weight = this.vertices[vertex].getWeight();
+            for (int i = 0; i < this.lengths[vertex]; i++) {
+                int neighbor_id = this.neighbors[vertex][i];
+                int neighborShard = shardOf(neighbor_id, shards.length);
+                if (neighborShard == this.index) {
+                    this.apply(DELETE_NEIGHBOR, neighbor_id, node_id, weight, outbox);
+                } else {
+                    outbox.add(neighborShard, DELETE_NEIGHBOR, neighbor_id, node_id, weight);
+                }
+            }
+            this.neighbors[vertex] = null;
+            this.lengths[vertex] = 0;
+            this.degrees[vertex] = 0;
+        }
+    }
+}
@@ -2,10 +2,27 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 
 class GraphTest {
@@ -72,26 +89,739 @@ class GraphTest {
         assertNull(graph.maxNeighborhoodWeight());
     }
 
+    @Test
+    public void addEdgesTest() {
+        boolean[] added = graph.addEdges(new int[]{7, 7, 5, 10}, new int[]{5, 9, 5, 9});
+        assertTrue(Arrays.equals(new boolean[]{true, true, false, false}, added));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+
+        assertTrue(graph.deleteNode(7));
+        assertTrue(checkGraphAttributes(graph, new int[]{5, 9}, new int[]{2, 4}, 9, 4, 2, 0));
+    }
+
+    @Test
+    public void deleteNodesTest() {
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+        assertTrue(graph.addEdge(5, 9));
+
+        boolean[] deleted = graph.deleteNodes(new int[]{7, 10, 5, 7});
+        assertTrue(Arrays.equals(new boolean[]{true, false, true, false}, deleted));
+        assertTrue(checkGraphAttributes(graph, new int[]{9}, new int[]{4}, 9, 4, 1, 0));
+        assertEquals(-1, graph.getNeighborhoodWeight(5));
+    }
+
+    @Test
+    public void addNodeTest() {
+        assertTrue(graph.deleteNode(5));
+        assertFalse(graph.addNode(new Graph.Node(7, 3)));
+        for (int id = 100; id < 120; id++) {
+            assertTrue(graph.addNode(new Graph.Node(id, 1)));
+        }
+        assertTrue(graph.addNode(new Graph.Node(5, 8)));
+        assertTrue(graph.addEdge(5, 7));
+        assertTrue(graph.addEdge(5, 9));
+        assertTrue(graph.addEdge(100, 119));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9, 100, 119}, new int[]{9, 13, 12, 2, 2}, 5, 13, 23, 3));
+    }
+
+    @Test
+    public void deleteEdgeTest() {
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+        assertTrue(graph.deleteEdge(5, 7));
+        assertEquals(5, graph.getNeighborhoodWeight(7));
+        assertEquals(2, graph.getNeighborhoodWeight(5));
+        assertEquals(5, graph.getNeighborhoodWeight(9));
+        assertEquals(1, graph.getNumEdges());
+
+        assertFalse(graph.deleteEdge(5, 7));
+        assertFalse(graph.deleteEdge(5, 9));
+        assertFalse(graph.deleteEdge(7, 10));
+        assertTrue(graph.deleteEdge(9, 7));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{1, 2, 4}, 9, 4, 3, 0));
+    }
+
+    @Test
+    public void neighborIterationTest() {
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+        assertEquals(2, graph.degree(7));
+        assertEquals(1, graph.degree(5));
+        assertEquals(-1, graph.degree(10));
+
+        List<Integer> neighbors = new ArrayList<>();
+        assertTrue(graph.forEachNeighbor(7, neighbors::add));
+        assertEquals(List.of(9, 5), neighbors);
+        assertFalse(graph.forEachNeighbor(10, neighbors::add));
+
+        Graph.NeighborCursor cursor = graph.neighborCursor();
+        int[] buffer = new int[1];
+        assertEquals(2, cursor.reset(7));
+        assertEquals(1, cursor.next(buffer));
+        assertEquals(9, buffer[0]);
+        assertTrue(cursor.hasNext());
+        assertEquals(1, cursor.next(buffer));
+        assertEquals(5, buffer[0]);
+        assertFalse(cursor.hasNext());
+        assertEquals(0, cursor.next(buffer));
+
+        buffer = new int[4];
+        assertEquals(1, cursor.reset(9));
+        assertEquals(1, cursor.next(buffer));
+        assertEquals(7, buffer[0]);
+        assertEquals(-1, cursor.reset(10));
+        assertEquals(0, cursor.next(buffer));
+    }
+
+    @Test
+    public void simpleGraphTest() {
+        assertEquals(0, graph.setSimpleGraph(true));
+        assertTrue(graph.addEdge(7, 5));
+        assertFalse(graph.addEdge(5, 7));
+        assertTrue(graph.hasEdge(5, 7));
+        assertTrue(graph.hasEdge(7, 5));
+        assertFalse(graph.hasEdge(7, 9));
+        assertFalse(graph.hasEdge(7, 7));
+        assertFalse(graph.hasEdge(7, 10));
+
+        boolean[] added = graph.addEdges(new int[]{7, 9, 7}, new int[]{9, 7, 5});
+        assertTrue(Arrays.equals(new boolean[]{true, false, false}, added));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+
+        assertTrue(graph.deleteNode(7));
+        assertFalse(graph.hasEdge(5, 7));
+        assertTrue(graph.addNode(new Graph.Node(7, 1)));
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{3, 3, 4}, 9, 4, 3, 1));
+
+        //Turning the mode on deletes the repeated edges of the constructor.
+        Graph built = new Graph(nodes, new int[]{7, 5, 7, 9, 7}, new int[]{5, 7, 9, 7, 5});
+        assertEquals(5, built.getNumEdges());
+        assertEquals(3, built.setSimpleGraph(true));
+        assertTrue(checkGraphAttributes(built, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+        assertFalse(built.addEdge(9, 7));
+    }
+
+    @Test
+    public void orderingsTest() {
+        graph.setMaxDegreeTracking(true);
+        graph.setMinNeighborhoodWeightTracking(true);
+        assertEquals(7, graph.minNeighborhoodWeight().getId());
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+        assertEquals(7, graph.maxDegree().getId());
+        assertEquals(5, graph.minNeighborhoodWeight().getId());
+
+        assertTrue(graph.deleteNode(7));
+        assertEquals(5, graph.minNeighborhoodWeight().getId());
+        assertTrue(graph.addNode(new Graph.Node(3, 0)));
+        assertEquals(3, graph.minNeighborhoodWeight().getId());
+        graph.setLazyHeapCorrection(true);
+        graph.addEdges(new int[]{3, 3}, new int[]{5, 9});
+        assertEquals(3, graph.maxDegree().getId());
+        assertEquals(5, graph.minNeighborhoodWeight().getId());
+        assertTrue(graph.updateNodeWeight(5, 9));
+        assertEquals(9, graph.minNeighborhoodWeight().getId());
+        assertTrue(Arrays.equals(new boolean[]{true}, graph.deleteNodes(new int[]{3})));
+        assertEquals(9, graph.minNeighborhoodWeight().getId());
+        assertTrue(checkHeap(graph.degreeHeap));
+        assertTrue(checkHeap(graph.minNeighborhoodWeightHeap));
+
+        graph.setMaxDegreeTracking(false);
+        //The maximal degree is not maintained.
+        assertThrows(IllegalStateException.class, () -> graph.maxDegree());
+    }
+
+    @Test
+    public void offHeapTest() throws IOException {
+        Graph offHeap = new Graph(nodes, Graph.DEFAULT_HEAP_ARITY, true);
+        assertTrue(offHeap.neighborhoodsList.neighbors.isOffHeap());
+        assertTrue(offHeap.addEdge(7, 5));
+        assertTrue(offHeap.addEdge(7, 9));
+        assertTrue(checkGraphAttributes(offHeap, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+        for (int id = 100; id < 200; id++) {
+            assertTrue(offHeap.addNode(new Graph.Node(id, 1)));
+            assertTrue(offHeap.addEdge(5, id));
+        }
+        assertTrue(offHeap.deleteEdge(5, 7));
+        assertTrue(offHeap.deleteNode(9));
+        assertTrue(checkGraphAttributes(offHeap, new int[]{7, 5, 100}, new int[]{1, 102, 3}, 5, 102, 102, 100));
+
+        Path path = Files.createTempFile("graph", ".snapshot");
+        try {
+            offHeap.saveSnapshot(path);
+            Graph loaded = Graph.loadSnapshot(path);
+            assertTrue(loaded.neighborhoodsList.neighbors.isOffHeap());
+            assertTrue(checkGraphAttributes(loaded, new int[]{7, 5, 100}, new int[]{1, 102, 3}, 5, 102, 102, 100));
+            assertTrue(loaded.deleteEdge(5, 100));
+            assertEquals(101, loaded.getNeighborhoodWeight(5));
+        } finally {
+            Files.delete(path);
+        }
+
+        Graph built = new Graph(nodes, new int[]{7, 7}, new int[]{5, 9}, 2,
+                ForkJoinPool.commonPool(), true);
+        assertTrue(checkGraphAttributes(built, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+
+        //The pages of an off-heap array.
+        Graph.IntArray array = new Graph.IntArray(Graph.IntArray.PAGE_SIZE + 2, true);
+        array.set(Graph.IntArray.PAGE_SIZE - 1, 3);
+        array.set(Graph.IntArray.PAGE_SIZE, 4);
+        Graph.IntArray copy = array.copyOf(2 * Graph.IntArray.PAGE_SIZE);
+        assertTrue(Arrays.equals(new int[]{3, 4, 0}, copy.toArray(Graph.IntArray.PAGE_SIZE - 1,
+                Graph.IntArray.PAGE_SIZE + 2)));
+    }
+
+    @Test
+    public void readSnapshotTest() {
+        assertTrue(graph.addEdge(7, 5));
+        graph.setLazyHeapCorrection(true);
+        assertTrue(graph.addEdge(7, 9));
+        Graph.ReadSnapshot first = graph.snapshot();
+
+        assertTrue(graph.deleteNode(7));
+        assertTrue(graph.updateNodeWeight(5, 20));
+        assertTrue(graph.addEdge(5, 9));
+        Graph.ReadSnapshot second = graph.snapshot();
+        //Many nodes, so the arrays grow and the hash table of the ids is rehashed.
+        for (int id = 100; id < 10100; id++) {
+            assertTrue(graph.addNode(new Graph.Node(id, 1)));
+            assertTrue(graph.addEdge(9, id));
+        }
+        assertTrue(graph.deleteNode(5));
+
+        assertEquals(3, first.getNumNodes());
+        assertEquals(2, first.getNumEdges());
+        assertEquals(7, first.getNeighborhoodWeight(7));
+        assertEquals(3, first.getNeighborhoodWeight(5));
+        assertEquals(-1, first.getNeighborhoodWeight(100));
+        assertEquals(7, first.maxNeighborhoodWeight().getId());
+        assertEquals(2, first.degree(7));
+        List<Integer> neighbors = new ArrayList<>();
+        assertTrue(first.forEachNeighbor(7, neighbors::add));
+        assertEquals(List.of(9, 5), neighbors);
+
+        assertEquals(2, second.getNumNodes());
+        assertEquals(1, second.getNumEdges());
+        assertEquals(-1, second.getNeighborhoodWeight(7));
+        assertEquals(24, second.getNeighborhoodWeight(5));
+        assertEquals(24, second.getNeighborhoodWeight(9));
+        assertEquals(24, second.getNeighborhoodWeight(second.maxNeighborhoodWeight().getId()));
+        assertFalse(second.forEachNeighbor(7, neighbors::add));
+
+        assertEquals(10004, graph.getNeighborhoodWeight(9));
+        assertEquals(9, graph.maxNeighborhoodWeight().getId());
+        first.close();
+        second.close();
+        assertTrue(graph.addEdge(100, 101));
+        assertNull(graph.snapshotRegistry);
+        assertEquals(10001, graph.getNumNodes());
+    }
+
+    @Test
+    public void updateNodeWeightTest() {
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+        assertTrue(graph.updateNodeWeight(7, 10));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{16, 12, 14}, 7, 16, 3, 2));
+        assertTrue(graph.updateNodeWeight(7, 0));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{6, 2, 4}, 7, 6, 3, 2));
+        assertFalse(graph.updateNodeWeight(10, 3));
+
+        //A node of a large degree, in the lazy mode and with a rebuild of the heap.
+        graph.setLazyHeapCorrection(true);
+        for (int id = 100; id < 120; id++) {
+            assertTrue(graph.addNode(new Graph.Node(id, 1)));
+            assertTrue(graph.addEdge(9, id));
+        }
+        assertTrue(graph.updateNodeWeight(9, 6));
+        assertTrue(checkGraphAttributes(graph, new int[]{9, 7, 5, 100, 119}, new int[]{26, 8, 2, 7, 7}, 9, 26, 23, 22));
+        graph.setLazyHeapCorrection(false);
+        assertTrue(graph.updateNodeWeight(9, 1));
+        assertTrue(checkGraphAttributes(graph, new int[]{9, 7, 5, 100, 119}, new int[]{21, 3, 2, 2, 2}, 9, 21, 23, 22));
+        assertEquals(1, graph.maxNeighborhoodWeight().getWeight());
+    }
+
+    @Test
+    public void topKTest() {
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+
+        Graph.Node[] top = graph.topK(2);
+        assertEquals(2, top.length);
+        assertEquals(7, top[0].id);
+        assertEquals(9, top[1].id);
+
+        int[] ids = new int[5];
+        int[] weights = new int[5];
+        assertEquals(3, graph.topK(5, ids, weights));
+        assertTrue(Arrays.equals(new int[]{7, 9, 5}, Arrays.copyOf(ids, 3)));
+        assertTrue(Arrays.equals(new int[]{7, 5, 3}, Arrays.copyOf(weights, 3)));
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+    }
+
+    @Test
+    public void lazyHeapCorrectionTest() {
+        graph.setLazyHeapCorrection(true);
+        assertTrue(graph.addEdge(7, 5));
+        assertTrue(graph.addEdge(7, 9));
+        assertEquals(7, graph.getNeighborhoodWeight(7));
+        assertEquals(3, graph.numDirty);
+        assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9}, new int[]{7, 3, 5}, 7, 7, 3, 2));
+        assertEquals(0, graph.numDirty);
+
+        assertTrue(graph.deleteNode(7));
+        assertEquals(2, graph.getNeighborhoodWeight(5));
+        graph.setLazyHeapCorrection(false);
+        assertEquals(0, graph.numDirty);
+        assertTrue(checkGraphAttributes(graph, new int[]{5, 9}, new int[]{2, 4}, 9, 4, 2, 0));
+    }
+
+    @Test
+    public void parallelConstructionTest() {
+        int n = 500;
+        Graph.Node[] manyNodes = new Graph.Node[n];
+        for (int i = 0; i < n; i++) {
+            manyNodes[i] = new Graph.Node(3 * i, i % 17);
+        }
+        //Includes self loops, unknown ids and parallel edges, which are skipped or kept exactly as by addEdge.
+        Random random = new Random(1);
+        int[] node1_ids = new int[40000];
+        int[] node2_ids = new int[40000];
+        for (int i = 0; i < node1_ids.length; i++) {
+            node1_ids[i] = 3 * random.nextInt(n + 10);
+            node2_ids[i] = i % 100 == 0 ? node1_ids[i] : 3 * random.nextInt(n / 10);
+        }
+        Graph parallelGraph = new Graph(manyNodes, node1_ids, node2_ids, 4, new ForkJoinPool(4));
+        Graph sequentialGraph = new Graph(manyNodes);
+        for (int i = 0; i < node1_ids.length; i++) {
+            sequentialGraph.addEdge(node1_ids[i], node2_ids[i]);
+        }
+
+        Graph.NeighborhoodsList expected = sequentialGraph.neighborhoodsList;
+        Graph.NeighborhoodsList actual = parallelGraph.neighborhoodsList;
+        int usedEdges = expected.usedEdges;
+        assertEquals(usedEdges, actual.usedEdges);
+        assertTrue(Arrays.equals(expected.neighbors.toArray(0, usedEdges), actual.neighbors.toArray(0, usedEdges)));
+        assertTrue(Arrays.equals(expected.nextEdges.toArray(0, usedEdges), actual.nextEdges.toArray(0, usedEdges)));
+        assertTrue(Arrays.equals(expected.prevEdges.toArray(0, usedEdges), actual.prevEdges.toArray(0, usedEdges)));
+        assertTrue(Arrays.equals(expected.parallelEdges.toArray(0, usedEdges / 2),
+                actual.parallelEdges.toArray(0, usedEdges / 2)));
+        assertTrue(Arrays.equals(expected.firstEdges, actual.firstEdges));
+        assertTrue(Arrays.equals(expected.degrees, actual.degrees));
+        assertEquals(sequentialGraph.getNumEdges(), parallelGraph.getNumEdges());
+        for (int i = 0; i < n; i++) {
+            assertEquals(sequentialGraph.getNeighborhoodWeight(3 * i), parallelGraph.getNeighborhoodWeight(3 * i));
+        }
+        assertTrue(checkHeap(parallelGraph.neighborhoodWeightHeap));
+        assertEquals(sequentialGraph.getNeighborhoodWeight(sequentialGraph.maxNeighborhoodWeight().getId()),
+                parallelGraph.getNeighborhoodWeight(parallelGraph.maxNeighborhoodWeight().getId()));
+
+        //The hash table of the edges is filled too.
+        assertTrue(parallelGraph.deleteEdge(node1_ids[1], node2_ids[1]));
+        assertTrue(sequentialGraph.deleteEdge(node1_ids[1], node2_ids[1]));
+        assertTrue(parallelGraph.deleteNode(0));
+        assertTrue(sequentialGraph.deleteNode(0));
+        assertEquals(sequentialGraph.getNumEdges(), parallelGraph.getNumEdges());
+        assertEquals(sequentialGraph.getNeighborhoodWeight(3), parallelGraph.getNeighborhoodWeight(3));
+    }
+
+    @Test
+    public void snapshotTest() throws IOException {
+        graph.addNode(new Graph.Node(3, 8));
+        graph.addEdge(7, 5);
+        graph.addEdge(7, 9);
+        graph.addEdge(7, 9);
+        graph.addEdge(5, 3);
+        graph.deleteEdge(7, 9);
+        graph.deleteNode(9);
+        graph.addNode(new Graph.Node(11, 16));
+        graph.addEdge(11, 7);
+        graph.setLazyHeapCorrection(true);
+        graph.addEdge(11, 3);
+
+        Path path = Files.createTempFile("graph", ".snapshot");
+        try {
+            graph.saveSnapshot(path);
+            Graph loaded = Graph.loadSnapshot(path);
+            assertTrue(loaded.lazyHeapCorrection);
+            assertTrue(checkGraphAttributes(loaded, new int[]{7, 5, 3, 11}, new int[]{19, 11, 26, 25}, 3, 26, 4, 4));
+            assertEquals(-1, loaded.getNeighborhoodWeight(9));
+
+            //The loaded graph continues exactly as the saved one.
+            for (Graph g : new Graph[]{graph, loaded}) {
+                g.addNode(new Graph.Node(13, 1));
+                g.addEdge(13, 5);
+                g.deleteNode(7);
+                g.deleteEdge(11, 3);
+            }
+            Graph.NeighborhoodsList expected = graph.neighborhoodsList;
+            Graph.NeighborhoodsList actual = loaded.neighborhoodsList;
+            assertTrue(Arrays.equals(expected.firstEdges, actual.firstEdges));
+            assertTrue(Arrays.equals(expected.degrees, actual.degrees));
+            assertTrue(Arrays.equals(expected.neighbors.toArray(0, expected.usedEdges),
+                    actual.neighbors.toArray(0, actual.usedEdges)));
+            assertTrue(checkGraphAttributes(loaded, new int[]{5, 3, 11, 13}, new int[]{11, 10, 16, 3}, 11, 16, 4, 2));
+
+            Files.write(path, new byte[]{1, 2, 3, 4});
+            //A file that is not a snapshot is rejected.
+            assertThrows(IOException.class, () -> Graph.loadSnapshot(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void mutationLogTest() throws IOException {
+        Path path = Files.createTempFile("graph", ".log");
+        Path snapshotPath = Files.createTempFile("graph", ".snapshot");
+        try {
+            Graph.MutationLog log = new Graph.MutationLog(path, 2);
+            graph.setMutationLog(log);
+            graph.addEdge(7, 5);
+            graph.addEdges(new int[]{7, 9, 9}, new int[]{9, 9, 5});
+            assertFalse(graph.addEdge(7, 8));
+            assertEquals(Graph.MutationLog.RECORD_SIZE * 2, log.getCommittedPosition());
+            log.commit();
+            graph.saveSnapshot(snapshotPath);
+            long snapshotPosition = log.getCommittedPosition();
+
+            graph.addNode(new Graph.Node(3, 8));
+            graph.addEdge(3, 5);
+            graph.deleteEdge(7, 9);
+            graph.deleteNodes(new int[]{7, 7});
+            graph.deleteNode(9);
+            log.close();
+            assertEquals(Graph.MutationLog.RECORD_SIZE * 8, Files.size(path));
+            //A partial record of a crash during a write is ignored.
+            Files.write(path, new byte[]{1, 0, 0}, StandardOpenOption.APPEND);
+
+            Graph replayed = new Graph(nodes);
+            long end = Graph.MutationLog.replay(path, 0, replayed);
+            assertEquals(Graph.MutationLog.RECORD_SIZE * 8, end);
+            assertTrue(checkGraphAttributes(replayed, new int[]{5, 3}, new int[]{10, 10}, 5, 10, 2, 1));
+
+            Graph restored = Graph.loadSnapshot(snapshotPath);
+            Graph.MutationLog.replay(path, snapshotPosition, restored);
+            assertTrue(checkGraphAttributes(restored, new int[]{5, 3}, new int[]{10, 10}, 5, 10, 2, 1));
+        } finally {
+            Files.delete(path);
+            Files.delete(snapshotPath);
+        }
+    }
+
+    @Test
+    public void edgeStreamIngestorTest() throws IOException {
+        graph.addNode(new Graph.Node(-3, 8));
+        Path path = Files.createTempFile("edges", ".txt");
+        try {
+            //Tiny buffers, so ints and lines are split between reads.
+            int[] numBatches = new int[1];
+            EdgeStreamIngestor ingestor = new EdgeStreamIngestor(graph, 2, 8, i -> numBatches[0] += 1);
+            Files.write(path, ("# comment\n7 5\n\n  9\t7\r\n5 5\n7 8\n7 x\n1 2 3\n-3,5\n"
+                    + "99999999999 7\n9 -3").getBytes());
+            ingestor.ingestText(path);
+            assertEquals(6, ingestor.edgesRead);
+            assertEquals(4, ingestor.edgesAdded);
+            assertEquals(1, ingestor.rejectedSelfLoops);
+            assertEquals(1, ingestor.rejectedUnknownIds);
+            assertEquals(0, ingestor.rejectedDuplicates);
+            assertEquals(3, ingestor.malformedLines);
+            assertEquals(3, numBatches[0]);
+            assertTrue(checkGraphAttributes(graph, new int[]{7, 5, 9, -3}, new int[]{7, 11, 13, 14}, -3, 14, 4, 4));
+
+            ByteBuffer binary = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+            binary.putInt(7).putInt(-3).putInt(9).putInt(9).put(new byte[]{1, 2, 3, 4});
+            Files.write(path, binary.array());
+            EdgeStreamIngestor binaryIngestor = new EdgeStreamIngestor(graph, 2, 8, null);
+            binaryIngestor.ingestBinary(path, ByteOrder.LITTLE_ENDIAN);
+            assertEquals(2, binaryIngestor.edgesRead);
+            assertEquals(1, binaryIngestor.edgesAdded);
+            assertEquals(1, binaryIngestor.rejectedSelfLoops);
+            assertEquals(15, graph.getNeighborhoodWeight(-3));
+
+            //In the simple-graph mode, an edge that is already in the graph is counted as a duplicate.
+            graph.setSimpleGraph(true);
+            Files.write(path, "7 5\n5 8\n9 5\n".getBytes());
+            EdgeStreamIngestor simpleIngestor = new EdgeStreamIngestor(graph, 2, 8, null);
+            simpleIngestor.ingestText(path);
+            assertEquals(1, simpleIngestor.edgesAdded);
+            assertEquals(1, simpleIngestor.rejectedUnknownIds);
+            assertEquals(1, simpleIngestor.rejectedDuplicates);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void statsTest() throws JMException {
+        if (!Graph.STATS_ENABLED) {
+            assertNull(graph.stats);
+            //The counters are off.
+            assertThrows(IllegalStateException.class, () -> graph.registerStatsMBean("statsTest"));
+            return;
+        }
+        graph.stats.reset();
+        graph.addEdge(7, 5);
+        graph.addEdge(7, 9);
+        graph.addEdge(7, 7);
+        graph.getNeighborhoodWeight(5);
+        graph.maxNeighborhoodWeight();
+        graph.deleteNode(7);
+        assertEquals(3, graph.stats.addEdgeCalls);
+        assertEquals(1, graph.stats.weightQueries);
+        assertEquals(1, graph.stats.maxQueries);
+        assertEquals(1, graph.stats.deletedNodes);
+        assertEquals(2, graph.stats.neighborsVisited);
+        assertEquals(2, graph.stats.maxNeighborsVisited);
+        assertTrue(graph.stats.idLookups >= 6);
+        assertTrue(graph.stats.idProbes >= graph.stats.idLookups);
+        assertTrue(graph.stats.edgeLookups >= 2);
+        assertTrue(graph.stats.sifts > 0);
+
+        ObjectName name = graph.registerStatsMBean("statsTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(3L, server.getAttribute(name, "AddEdgeCalls"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "AddEdgeCalls"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void concurrentGraphTest() throws InterruptedException {
+        int n = 200;
+        Graph.Node[] manyNodes = new Graph.Node[n];
+        for (int i = 0; i < n; i++) {
+            manyNodes[i] = new Graph.Node(i, i);
+        }
+        ConcurrentGraph concurrentGraph = new ConcurrentGraph(manyNodes, 8);
+        Graph sequentialGraph = new Graph(manyNodes);
+
+        //Every thread adds its own edges, and the sequential graph gets the same edges.
+        int numThreads = 4;
+        int edgesPerThread = 2000;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < edgesPerThread; i++) {
+                    concurrentGraph.addEdge(random.nextInt(n), random.nextInt(n));
+                }
+            });
+            Random random = new Random(seed);
+            for (int i = 0; i < edgesPerThread; i++) {
+                sequentialGraph.addEdge(random.nextInt(n), random.nextInt(n));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int id = 0; id < n; id += 3) {
+            assertTrue(concurrentGraph.deleteNode(id));
+            sequentialGraph.deleteNode(id);
+        }
+        assertFalse(concurrentGraph.deleteNode(0));
+        assertFalse(concurrentGraph.addEdge(0, 1));
+
+        concurrentGraph.flush();
+        assertEquals(sequentialGraph.getNumNodes(), concurrentGraph.getNumNodes());
+        assertEquals(sequentialGraph.getNumEdges(), concurrentGraph.getNumEdges());
+        for (int id = 0; id < n; id++) {
+            assertEquals(sequentialGraph.getNeighborhoodWeight(id), concurrentGraph.getNeighborhoodWeight(id));
+        }
+        assertEquals(sequentialGraph.getNeighborhoodWeight(sequentialGraph.maxNeighborhoodWeight().getId()),
+                concurrentGraph.getNeighborhoodWeight(concurrentGraph.maxNeighborhoodWeight().getId()));
+    }
+
+    @Test
+    public void compactTest() {
+        int n = 5000;
+        Graph.Node[] manyNodes = new Graph.Node[n];
+        for (int i = 0; i < n; i++) {
+            manyNodes[i] = new Graph.Node(i, i % 10 + 1);
+        }
+        Graph compacted = new Graph(manyNodes, 4, true);
+        Graph reference = new Graph(manyNodes);
+        reference.setCompactionRatio(0);
+        for (Graph g : new Graph[]{compacted, reference}) {
+            g.setMaxDegreeTracking(true);
+            for (int i = 0; i < n; i++) {
+                g.addEdge(i, (i + 1) % n);
+                g.addEdge(i, (i + 5) % n);
+                g.addEdge(i, (i + 5) % n);
+            }
+        }
+        Graph.ReadSnapshot snapshot = compacted.snapshot();
+
+        //Deleting 80% of the nodes compacts the graph automatically.
+        int[] deletedIds = new int[n - n / 5];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (i % 5 != 0) {
+                deletedIds[j++] = i;
+            }
+        }
+        compacted.deleteNodes(deletedIds);
+        reference.deleteNodes(deletedIds);
+        assertEquals(n / 5, compacted.vertices.length);
+        assertEquals(n, reference.vertices.length);
+        assertEquals(2 * compacted.getNumEdges(), compacted.neighborhoodsList.usedEdges);
+        assertEquals(2 * (n / 5), compacted.getNumEdges());
+
+        //The compacted graph keeps working like the reference graph.
+        assertTrue(compacted.deleteEdge(0, 5));
+        assertTrue(reference.deleteEdge(0, 5));
+        assertTrue(compacted.addNode(new Graph.Node(-1, 50)));
+        assertTrue(reference.addNode(new Graph.Node(-1, 50)));
+        assertTrue(compacted.addEdge(-1, 10));
+        assertTrue(reference.addEdge(-1, 10));
+        assertTrue(compacted.deleteNode(15));
+        assertTrue(reference.deleteNode(15));
+        assertEquals(reference.getNumNodes(), compacted.getNumNodes());
+        assertEquals(reference.getNumEdges(), compacted.getNumEdges());
+        for (int id = -1; id < n; id++) {
+            assertEquals(reference.getNeighborhoodWeight(id), compacted.getNeighborhoodWeight(id));
+            assertEquals(reference.degree(id), compacted.degree(id));
+        }
+        assertEquals(reference.getNeighborhoodWeight(reference.maxNeighborhoodWeight().getId()),
+                compacted.getNeighborhoodWeight(compacted.maxNeighborhoodWeight().getId()));
+        assertEquals(reference.degree(reference.maxDegree().getId()), compacted.degree(compacted.maxDegree().getId()));
+
+        //The snapshot from before the compaction still sees the old graph.
+        assertEquals(n, snapshot.getNumNodes());
+        assertEquals(3 * n, snapshot.getNumEdges());
+        assertEquals(2 + 1 + 3 + 2 * 7 + 2 * 7, snapshot.getNeighborhoodWeight(1));
+        snapshot.close();
+    }
+
+    @Test
+    public void shardedGraphTest() throws InterruptedException {
+        int n = 200;
+        Graph.Node[] manyNodes = new Graph.Node[n];
+        for (int i = 0; i < n; i++) {
+            manyNodes[i] = new Graph.Node(i, i);
+        }
+        ShardedGraph shardedGraph = new ShardedGraph(manyNodes, 3);
+        Graph sequentialGraph = new Graph(manyNodes);
+
+        //Every thread adds its own edges and deletes its own nodes. A deleted node takes its edges with it,
+        //whenever they were added, so the sequential graph adds all the edges first.
+        int numThreads = 4;
+        int edgesPerThread = 2000;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < edgesPerThread; i++) {
+                    shardedGraph.addEdge(random.nextInt(n), random.nextInt(n));
+                    if (i % 100 == 0) {
+                        shardedGraph.deleteNode(seed + numThreads * i / 100);
+                    }
+                }
+            });
+            Random random = new Random(seed);
+            for (int i = 0; i < edgesPerThread; i++) {
+                sequentialGraph.addEdge(random.nextInt(n), random.nextInt(n));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int id = 0; id < numThreads * edgesPerThread / 100; id++) {
+            sequentialGraph.deleteNode(id);
+        }
+        boolean[] sent = shardedGraph.addEdges(new int[]{100, 100, 0, 300}, new int[]{101, 100, 101, 101});
+        assertTrue(Arrays.equals(new boolean[]{true, false, true, false}, sent));
+        sequentialGraph.addEdge(100, 101);
+        assertFalse(shardedGraph.deleteNode(0));
+        assertFalse(shardedGraph.deleteNode(300));
+
+        shardedGraph.flush();
+        assertEquals(sequentialGraph.getNumNodes(), shardedGraph.getNumNodes());
+        assertEquals(sequentialGraph.getNumEdges(), shardedGraph.getNumEdges());
+        for (int id = 0; id < n; id++) {
+            assertEquals(sequentialGraph.getNeighborhoodWeight(id), shardedGraph.getNeighborhoodWeight(id));
+        }
+        assertEquals(sequentialGraph.getNeighborhoodWeight(sequentialGraph.maxNeighborhoodWeight().getId()),
+                shardedGraph.getNeighborhoodWeight(shardedGraph.maxNeighborhoodWeight().getId()));
+
+        //Closing twice does nothing the second time, and a closed graph takes no more mutations.
+        shardedGraph.close();
+        assertEquals(0, shardedGraph.pendingBatches.get());
+        shardedGraph.close();
+        shardedGraph.flush();
+        assertThrows(IllegalStateException.class, () -> shardedGraph.addEdge(100, 101));
+        assertThrows(IllegalStateException.class, () -> shardedGraph.deleteNode(100));
+    }
+
+    @Test
+    public void graphServerTest() throws Exception {
+        Path directory = Files.createTempDirectory("graph-server");
+        Graph servedGraph = new Graph(nodes);
+        GraphServer server = new GraphServer(servedGraph,
+                UnixDomainSocketAddress.of(directory.resolve("socket")));
+
+        //The frames are pipelined: all of them are sent before any response is received.
+        GraphServer.Client client = new GraphServer.Client(server.getAddress());
+        client.send(new int[]{GraphServer.ADD_EDGE, 7, 5, GraphServer.ADD_EDGE, 7, 9,
+                GraphServer.ADD_EDGE, 7, 8}, 3);
+        client.send(new int[]{GraphServer.GET_NEIGHBORHOOD_WEIGHT, 7, 0,
+                GraphServer.MAX_NEIGHBORHOOD_WEIGHT, 0, 0}, 2);
+        client.send(new int[]{GraphServer.DELETE_NODE, 7, 0, GraphServer.ADD_NODE, 7, 10, GraphServer.NUM_NODES, 0, 0,
+                GraphServer.NUM_EDGES, 0, 0, GraphServer.GET_NEIGHBORHOOD_WEIGHT, 8, 0}, 5);
+        int[] results = new int[5];
+        assertEquals(3, client.receive(results));
+        assertTrue(Arrays.equals(new int[]{1, 1, 0}, Arrays.copyOf(results, 3)));
+        assertEquals(2, client.receive(results));
+        assertTrue(Arrays.equals(new int[]{7, 7}, Arrays.copyOf(results, 2)));
+        assertEquals(5, client.receive(results));
+        assertTrue(Arrays.equals(new int[]{1, 1, 3, 0, -1}, results));
+
+        //A second connection sees the changes of the first, and a malformed frame closes the connection.
+        GraphServer.Client otherClient = new GraphServer.Client(server.getAddress());
+        int[] weight = otherClient.call(new int[]{GraphServer.GET_NEIGHBORHOOD_WEIGHT, 7, 0}, 1);
+        assertTrue(Arrays.equals(new int[]{10}, weight));
+        assertThrows(EOFException.class, () -> otherClient.call(new int[]{GraphServer.NUM_OPCODES, 0, 0}, 1));
+        client.close();
+        otherClient.close();
+        server.close();
+        assertFalse(Files.exists(directory.resolve("socket")));
+        Files.delete(directory);
+        assertEquals(7, servedGraph.maxNeighborhoodWeight().getId());
+    }
+
     @Test
     public void testNeighborhoodsList() {
         Graph.NeighborhoodsList neighborhoodsList = graph.neighborhoodsList;
         assertEquals(0, neighborhoodsList.numEdges);
-        Arrays.stream(neighborhoodsList.arrNeighborsLists).forEach(list -> assertEquals(0,list.length));
+        Arrays.stream(neighborhoodsList.degrees).forEach(degree -> assertEquals(0, degree));
         checkGraphMaxHeap();
         assertTrue(graph.addEdge(5,7));
         checkGraphMaxHeap();
-        Graph.LinkedList<Graph.NeighborhoodsList.NeighborNode> arrNeighborsListOf5 = neighborhoodsList.arrNeighborsLists[getNListIndex(5)];
-        Graph.LinkedList<Graph.NeighborhoodsList.NeighborNode> arrNeighborsListOf7 = neighborhoodsList.arrNeighborsLists[getNListIndex(7)];
-        assertEquals(1, arrNeighborsListOf5.length);
-        assertEquals(1, arrNeighborsListOf7.length);
-        assertEquals(7, arrNeighborsListOf5.retrieveFirstNode().item.node_id);
-        assertEquals(5, arrNeighborsListOf7.retrieveFirstNode().item.node_id);
+        int firstEdgeOf5 = neighborhoodsList.firstEdges[getNListIndex(5)];
+        int firstEdgeOf7 = neighborhoodsList.firstEdges[getNListIndex(7)];
+        assertEquals(1, neighborhoodsList.degrees[getNListIndex(5)]);
+        assertEquals(1, neighborhoodsList.degrees[getNListIndex(7)]);
+        assertEquals(getNListIndex(7), neighborhoodsList.neighbors.get(firstEdgeOf5));
+        assertEquals(getNListIndex(5), neighborhoodsList.neighbors.get(firstEdgeOf7));
+        assertEquals(firstEdgeOf5 ^ 1, firstEdgeOf7);
 
         graph.deleteNode(5);
         checkGraphMaxHeap();
         assertEquals(4, graph.maxNeighborhoodWeight().weight);
-        arrNeighborsListOf7 = neighborhoodsList.arrNeighborsLists[getNListIndex(7)];
-        assertEquals(0, arrNeighborsListOf7.length);
+        assertEquals(0, neighborhoodsList.degrees[getNListIndex(7)]);
+        assertEquals(Graph.NeighborhoodsList.NIL, neighborhoodsList.firstEdges[getNListIndex(7)]);
     }
 
     private boolean checkGraphMaxHeap() {
@@ -99,18 +829,13 @@ class GraphTest {
     }
 
     private int getNListIndex(int node_id) {
-        return graph.tableIdToRepresentation.find(node_id).item.nodeNListIndex;
+        return graph.tableIdToRepresentation.find(node_id);
     }
 
     private boolean checkHeap(Graph.MaxHeap heap) {
         boolean flag = true;
-        for (int i = 0; i < heap.getSize(); i++) {
-            if (heap.left(i) < heap.getSize()) {
-                flag &= heap.heapArr[i].key >= heap.heapArr[heap.left(i)].key;
-            }
-            if (heap.right(i) < heap.getSize()) {
-                flag &= heap.heapArr[i].key >= heap.heapArr[heap.right(i)].key;
-            }
+        for (int i = 1; i < heap.getSize(); i++) {
+            flag &= heap.keyAt(heap.parent(i)) >= heap.keyAt(i);
         }
         return flag;
     }